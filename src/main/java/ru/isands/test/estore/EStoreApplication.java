@@ -1,15 +1,30 @@
 package ru.isands.test.estore;
 
+import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.servers.Server;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 @OpenAPIDefinition(servers = {@Server(url = "/", description = "EStore Server")})
 public class EStoreApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(EStoreApplication.class, args);
     }
+
+    /**
+     * Незагруженные ленивые связи сериализуются как {"id": ...} без обращения к БД
+     */
+    @Bean
+    public Hibernate5Module hibernate5Module() {
+        Hibernate5Module module = new Hibernate5Module();
+        module.disable(Hibernate5Module.Feature.FORCE_LAZY_LOADING);
+        module.enable(Hibernate5Module.Feature.SERIALIZE_IDENTIFIER_FOR_LAZY_NOT_LOADED_OBJECTS);
+        return module;
+    }
 }
@@ -0,0 +1,103 @@
+package ru.isands.test.estore.analytics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.isands.test.estore.datasource.ReadRouting;
+import ru.isands.test.estore.util.TransactionHooks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш результатов аналитических запросов с ограничением размера.
+ * Каждая запись относится к области (должность, магазин), номер поколения области входит в ключ.
+ * Сброс области увеличивает поколение: старые записи перестают находиться и вытесняются по размеру,
+ * а результат, посчитанный во время записи покупки, не попадет под новый ключ.
+ * Результаты считаются по основной БД: сброс происходит после фиксации на ней, и отстающая реплика
+ * положила бы под новое поколение устаревший результат.
+ */
+@Component
+public class AnalyticsCache {
+
+    private final Cache<List<Object>, Optional<Object>> cache;
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    @Autowired
+    public AnalyticsCache(MeterRegistry meterRegistry,
+                          @Value("${analytics.cache.max-size: 10000}") long maxSize,
+                          @Value("${analytics.cache.ttl.ms: 600000}") long ttlMs) {
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build(), "analytics");
+        Gauge.builder("estore.analytics.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Доля запросов аналитики, обслуженных из кэша")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Область результатов по должности
+     */
+    public static String position(Long positionId) {
+        return "position:" + positionId;
+    }
+
+    /**
+     * Область результатов по названию должности
+     */
+    public static String positionName(String positionName) {
+        return "positionName:" + positionName;
+    }
+
+    /**
+     * Область результатов по магазину
+     */
+    public static String shop(Long shopId) {
+        return "shop:" + shopId;
+    }
+
+    /**
+     * Получить результат из кэша или посчитать его
+     *
+     * @param scope область, при сбросе которой результат устаревает
+     * @param key   название запроса и нормализованные параметры
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String scope, List<Object> key, Supplier<T> loader) {
+        AtomicLong generation = generations.get(scope);
+        List<Object> cacheKey = Arrays.asList(scope, generation == null ? 0L : generation.get(), globalGeneration.get(), key);
+        return (T) cache.get(cacheKey, k -> Optional.ofNullable(ReadRouting.onPrimary(loader))).orElse(null);
+    }
+
+    /**
+     * Сбросить области после фиксации текущей транзакции
+     */
+    public void invalidate(String... scopes) {
+        TransactionHooks.afterCommit(() -> {
+            for (String scope : scopes) {
+                generations.computeIfAbsent(scope, s -> new AtomicLong()).incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Сбросить все результаты после фиксации текущей транзакции
+     */
+    public void invalidateAll() {
+        TransactionHooks.afterCommit(globalGeneration::incrementAndGet);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.isands.test.estore.analytics;
+
+import ru.isands.test.estore.dto.BestEmployeeDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Продажи сотрудников по дням в памяти: количество проданных товаров и выручка
+ * за каждый день, в который у сотрудника были продажи.
+ */
+public class EmployeeLeaderboard {
+
+    /**
+     * Сортировка по сумме продаж
+     */
+    public static final Comparator<BestEmployeeDTO> BY_TOTAL_SALES = Comparator
+            .comparing(BestEmployeeDTO::getTotalSales, Comparator.reverseOrder())
+            .thenComparing(BestEmployeeDTO::getEmployeeId);
+
+    /**
+     * Сортировка по количеству проданных товаров
+     */
+    public static final Comparator<BestEmployeeDTO> BY_ITEMS_SOLD = Comparator
+            .comparing(BestEmployeeDTO::getItemsSold, Comparator.reverseOrder())
+            .thenComparing(BestEmployeeDTO::getEmployeeId);
+
+    private final Map<Long, Sales> sales = new ConcurrentHashMap<>();
+    private volatile Map<Long, EmployeeInfo> employees = Collections.emptyMap();
+
+    /**
+     * Учесть продажи сотрудника за день
+     */
+    public void add(long employeeId, long epochDay, long itemsSold, long revenue) {
+        sales.computeIfAbsent(employeeId, id -> new Sales()).add(epochDay, itemsSold, revenue);
+    }
+
+    /**
+     * Заменить сведения о сотрудниках
+     */
+    public void setEmployees(Map<Long, EmployeeInfo> employees) {
+        this.employees = employees;
+    }
+
+    /**
+     * Страница рейтинга сотрудников должности с продажами начиная с указанного дня
+     */
+    public List<BestEmployeeDTO> rank(Long positionId, long fromEpochDay, Comparator<BestEmployeeDTO> order, long offset, int limit) {
+        List<BestEmployeeDTO> ranked = new ArrayList<>();
+        for (Map.Entry<Long, EmployeeInfo> entry : employees.entrySet()) {
+            EmployeeInfo info = entry.getValue();
+            Sales employeeSales = sales.get(entry.getKey());
+            if (employeeSales == null || !info.positionId.equals(positionId)) {
+                continue;
+            }
+            long[] total = employeeSales.since(fromEpochDay);
+            if (total[0] > 0) {
+                ranked.add(new BestEmployeeDTO(entry.getKey(), info.firstName, info.lastName, info.positionName, total[0], total[1]));
+            }
+        }
+        return page(ranked, order, offset, limit);
+    }
+
+    /**
+     * Страница рейтинга из набора сотрудников по заданному порядку.
+     * В куче держится не больше offset + limit лучших сотрудников.
+     */
+    public static List<BestEmployeeDTO> page(Iterable<BestEmployeeDTO> ranked, Comparator<BestEmployeeDTO> order, long offset, int limit) {
+        long bound = offset + limit;
+        PriorityQueue<BestEmployeeDTO> top = new PriorityQueue<>(order.reversed());
+        for (BestEmployeeDTO employee : ranked) {
+            top.add(employee);
+            if (top.size() > bound) {
+                top.poll();
+            }
+        }
+        List<BestEmployeeDTO> result = new ArrayList<>(top);
+        result.sort(order);
+        return offset >= result.size() ? Collections.emptyList() : result.subList((int) offset, result.size());
+    }
+
+    /**
+     * Сведения о сотрудниках
+     */
+    public Map<Long, EmployeeInfo> getEmployees() {
+        return employees;
+    }
+
+    /**
+     * Сведения о сотруднике, выводимые в рейтинге
+     */
+    public static final class EmployeeInfo {
+        final String firstName;
+        final String lastName;
+        final Long positionId;
+        final String positionName;
+
+        public EmployeeInfo(String firstName, String lastName, Long positionId, String positionName) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.positionId = positionId;
+            this.positionName = positionName;
+        }
+    }
+
+    private static final class Sales {
+        private final TreeMap<Long, long[]> days = new TreeMap<>();
+
+        synchronized void add(long epochDay, long itemsSold, long revenue) {
+            long[] day = days.computeIfAbsent(epochDay, d -> new long[2]);
+            day[0] += itemsSold;
+            day[1] += revenue;
+        }
+
+        synchronized long[] since(long fromEpochDay) {
+            long[] total = new long[2];
+            for (long[] day : days.tailMap(fromEpochDay, true).values()) {
+                total[0] += day[0];
+                total[1] += day[1];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ru.isands.test.estore.analytics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.dao.repo.EmployeeRepository;
+import ru.isands.test.estore.dto.BestEmployeeDTO;
+import ru.isands.test.estore.util.DateUtils;
+import ru.isands.test.estore.util.SnapshotRebuilder;
+import ru.isands.test.estore.util.TransactionHooks;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Рейтинг сотрудников по продажам в памяти.
+ * Строится из дневных итогов store_sales_daily при старте, дополняется каждой покупкой после фиксации
+ * транзакции и перестраивается после импорта или изменения покупок. Пока рейтинг не построен
+ * или устарел, запросы выполняются по колоночному хранилищу покупок, если оно загружено, иначе к БД.
+ * Период отсчитывается с точностью до дня.
+ */
+@Service
+public class EmployeeLeaderboardService {
+
+    private static final String SALES_SQL = "SELECT employee_id, day, SUM(count), SUM(revenue) " +
+            "FROM store_sales_daily GROUP BY employee_id, day";
+
+    private static final String EMPLOYEES_SQL = "SELECT e.id_, e.firstname, e.lastname, e.position_id, t.name " +
+            "FROM employee e JOIN employee_position t ON t.id = e.position_id";
+
+    private final EmployeeRepository employeeRepository;
+    private final PurchaseAnalyticsService purchaseAnalyticsService;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final SnapshotRebuilder<EmployeeLeaderboard, Sale> snapshots;
+
+    @Value("${leaderboard.enabled: true}")
+    private boolean enabled;
+
+    @Autowired
+    public EmployeeLeaderboardService(EmployeeRepository employeeRepository, PurchaseAnalyticsService purchaseAnalyticsService, DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.employeeRepository = employeeRepository;
+        this.purchaseAnalyticsService = purchaseAnalyticsService;
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(10_000);
+        this.snapshots = new SnapshotRebuilder<>(streamingJdbcTemplate, transactionManager, sale -> sale.purchaseId,
+                (board, sale) -> board.add(sale.employeeId, sale.epochDay, 1, sale.price));
+    }
+
+    /**
+     * Страница лучших сотрудников должности по сумме продаж начиная с дня
+     */
+    public List<BestEmployeeDTO> getBestEmployeesByTotalSales(LocalDate startDay, Long positionId, Pageable pageable) {
+        EmployeeLeaderboard current = readyBoard();
+        if (current == null) {
+            if (purchaseAnalyticsService.isReady()) {
+                return rankFromPurchases(startDay, positionId, EmployeeLeaderboard.BY_TOTAL_SALES, pageable);
+            }
+            return employeeRepository.findBestEmployeesByTotalSales(startDay, positionId, pageable);
+        }
+        return current.rank(positionId, startDay.toEpochDay(), EmployeeLeaderboard.BY_TOTAL_SALES, offset(pageable), limit(pageable));
+    }
+
+    /**
+     * Страница лучших сотрудников должности по количеству проданных товаров начиная с дня
+     */
+    public List<BestEmployeeDTO> getBestEmployeesByItemSold(LocalDate startDay, Long positionId, Pageable pageable) {
+        EmployeeLeaderboard current = readyBoard();
+        if (current == null) {
+            if (purchaseAnalyticsService.isReady()) {
+                return rankFromPurchases(startDay, positionId, EmployeeLeaderboard.BY_ITEMS_SOLD, pageable);
+            }
+            return employeeRepository.findBestEmployeesByItemSold(startDay, positionId, pageable);
+        }
+        return current.rank(positionId, startDay.toEpochDay(), EmployeeLeaderboard.BY_ITEMS_SOLD, offset(pageable), limit(pageable));
+    }
+
+    /**
+     * Учесть покупку после фиксации текущей транзакции
+     */
+    public void onPurchase(Purchase purchase) {
+        snapshots.add(new Sale(purchase.getId(), purchase.getEmployee().getId(),
+                DateUtils.toLocalDate(purchase.getPurchaseDate()).toEpochDay(), purchase.getPrice() == null ? 0 : purchase.getPrice()));
+    }
+
+    /**
+     * Пометить рейтинг устаревшим после фиксации текущей транзакции; до перестроения запросы идут в БД
+     */
+    public void requestRebuild() {
+        snapshots.requestRebuild();
+    }
+
+    /**
+     * Перечитать сведения о сотрудниках после фиксации текущей транзакции
+     */
+    public void refreshEmployees() {
+        TransactionHooks.afterCommit(() -> {
+            EmployeeLeaderboard current = snapshots.current();
+            if (current != null) {
+                current.setEmployees(loadEmployees());
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${leaderboard.rebuild.check.ms: 1000}")
+    public void rebuildIfStale() {
+        if (snapshots.isStale()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Перестроить рейтинг по store_sales_daily в снимке БД; покупки, зафиксированные во время построения,
+     * добавляются, если не попали в снимок
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        snapshots.rebuild(() -> {
+            EmployeeLeaderboard next = new EmployeeLeaderboard();
+            streamingJdbcTemplate.query(SALES_SQL, (RowCallbackHandler) rs ->
+                    next.add(rs.getLong(1), rs.getDate(2).toLocalDate().toEpochDay(), rs.getLong(3), rs.getLong(4)));
+            next.setEmployees(loadEmployees());
+            return next;
+        });
+    }
+
+    private List<BestEmployeeDTO> rankFromPurchases(LocalDate startDay, Long positionId, Comparator<BestEmployeeDTO> order, Pageable pageable) {
+        Map<Long, EmployeeLeaderboard.EmployeeInfo> employees = loadEmployees();
+        List<Long> employeeIds = new ArrayList<>();
+        for (Map.Entry<Long, EmployeeLeaderboard.EmployeeInfo> entry : employees.entrySet()) {
+            if (entry.getValue().positionId.equals(positionId)) {
+                employeeIds.add(entry.getKey());
+            }
+        }
+        Map<Long, long[]> totals = purchaseAnalyticsService.aggregate(PurchaseColumnStore.Dimension.EMPLOYEE,
+                new PurchaseColumnStore.Filter().from(startDay.toEpochDay()).in(PurchaseColumnStore.Dimension.EMPLOYEE, employeeIds));
+        List<BestEmployeeDTO> ranked = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : totals.entrySet()) {
+            EmployeeLeaderboard.EmployeeInfo info = employees.get(entry.getKey());
+            ranked.add(new BestEmployeeDTO(entry.getKey(), info.firstName, info.lastName, info.positionName, entry.getValue()[0], entry.getValue()[1]));
+        }
+        return EmployeeLeaderboard.page(ranked, order, offset(pageable), limit(pageable));
+    }
+
+    private static long offset(Pageable pageable) {
+        return pageable.isPaged() ? pageable.getOffset() : 0;
+    }
+
+    /**
+     * Размер страницы; без постраничного вывода - весь рейтинг
+     */
+    private static int limit(Pageable pageable) {
+        return pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+    }
+
+    private EmployeeLeaderboard readyBoard() {
+        return snapshots.ready();
+    }
+
+    private Map<Long, EmployeeLeaderboard.EmployeeInfo> loadEmployees() {
+        Map<Long, EmployeeLeaderboard.EmployeeInfo> employees = new HashMap<>();
+        streamingJdbcTemplate.query(EMPLOYEES_SQL, (RowCallbackHandler) rs -> employees.put(rs.getLong(1),
+                new EmployeeLeaderboard.EmployeeInfo(rs.getString(2), rs.getString(3), rs.getLong(4), rs.getString(5))));
+        return Collections.unmodifiableMap(employees);
+    }
+
+    private static final class Sale {
+        final Long purchaseId;
+        final long employeeId;
+        final long epochDay;
+        final long price;
+
+        Sale(Long purchaseId, long employeeId, long epochDay, long price) {
+            this.purchaseId = purchaseId;
+            this.employeeId = employeeId;
+            this.epochDay = epochDay;
+            this.price = price;
+        }
+    }
+}
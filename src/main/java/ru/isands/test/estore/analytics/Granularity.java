@@ -0,0 +1,31 @@
+package ru.isands.test.estore.analytics;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Шаг группировки продаж по периодам
+ */
+public enum Granularity {
+    DAY("day", ChronoUnit.DAYS),
+    WEEK("week", ChronoUnit.WEEKS),
+    MONTH("month", ChronoUnit.MONTHS);
+
+    private final String field;
+    private final ChronoUnit unit;
+
+    Granularity(String field, ChronoUnit unit) {
+        this.field = field;
+        this.unit = unit;
+    }
+
+    /**
+     * Поле date_trunc, с которого начинается период
+     */
+    public String field() {
+        return field;
+    }
+
+    public ChronoUnit unit() {
+        return unit;
+    }
+}
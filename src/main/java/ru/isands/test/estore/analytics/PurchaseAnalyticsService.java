@@ -0,0 +1,139 @@
+package ru.isands.test.estore.analytics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.util.DateUtils;
+import ru.isands.test.estore.util.SnapshotRebuilder;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Необязательное колоночное хранилище покупок в памяти для группировок по всей истории без запросов к БД.
+ * Загружается потоковым чтением store_purchase при старте, дополняется каждой покупкой после фиксации
+ * транзакции и перезагружается после импорта или изменения покупок. Пока хранилище не загружено,
+ * isReady() возвращает false и вызывающий код обращается к БД.
+ */
+@Service
+public class PurchaseAnalyticsService {
+
+    private static final String PURCHASES_SQL = "SELECT p.id, p.shop_id, p.employee_id, p.elecro_id, i.etype_id, p.type_id, " +
+            "p.purchase_date, COALESCE(p.price, 0) FROM store_purchase p JOIN store_electro_item i ON i.id = p.elecro_id";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final SnapshotRebuilder<PurchaseColumnStore, Row> snapshots;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    @Value("${purchase.store.enabled: false}")
+    private boolean enabled;
+
+    @Autowired
+    public PurchaseAnalyticsService(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(10_000);
+        this.snapshots = new SnapshotRebuilder<>(streamingJdbcTemplate, transactionManager, row -> row.purchaseId,
+                (store, row) -> row.appendTo(store));
+    }
+
+    /**
+     * Загружено ли хранилище и соответствует ли оно БД
+     */
+    public boolean isReady() {
+        return enabled && snapshots.ready() != null;
+    }
+
+    /**
+     * Количество покупок и выручка по группам измерения groupBy
+     *
+     * @return ID группы -> {количество, выручка}
+     */
+    public Map<Long, long[]> aggregate(PurchaseColumnStore.Dimension groupBy, PurchaseColumnStore.Filter filter) {
+        PurchaseColumnStore current = snapshots.current();
+        if (current == null) {
+            throw new IllegalStateException("Хранилище покупок не загружено");
+        }
+        return current.aggregate(groupBy, filter, pool);
+    }
+
+    /**
+     * Дописать покупку после фиксации текущей транзакции
+     */
+    public void onPurchase(Purchase purchase) {
+        if (!enabled) {
+            return;
+        }
+        snapshots.add(new Row(purchase.getId(), purchase.getShop().getId(), purchase.getEmployee().getId(),
+                purchase.getElectroItem().getId(), purchase.getElectroItem().getEType().getId(), purchase.getPurchaseType().getId(),
+                DateUtils.toLocalDate(purchase.getPurchaseDate()).toEpochDay(), purchase.getPrice() == null ? 0 : purchase.getPrice()));
+    }
+
+    /**
+     * Пометить хранилище устаревшим после фиксации текущей транзакции
+     */
+    public void requestReload() {
+        snapshots.requestRebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${purchase.store.reload.check.ms: 5000}")
+    public void reloadIfStale() {
+        if (enabled && snapshots.isStale()) {
+            reload();
+        }
+    }
+
+    /**
+     * Загрузить покупки из store_purchase в новое хранилище в снимке БД.
+     * Покупки, зафиксированные во время загрузки, дописываются, если не попали в снимок.
+     */
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        snapshots.rebuild(() -> {
+            PurchaseColumnStore next = new PurchaseColumnStore();
+            streamingJdbcTemplate.query(PURCHASES_SQL, (RowCallbackHandler) rs -> next.append(rs.getLong(2), rs.getLong(3),
+                    rs.getLong(4), rs.getLong(5), rs.getLong(6), DateUtils.toLocalDate(rs.getTimestamp(7)).toEpochDay(), rs.getLong(8)));
+            return next;
+        });
+    }
+
+    private static final class Row {
+        final Long purchaseId;
+        final long shopId;
+        final long employeeId;
+        final long itemId;
+        final long electroTypeId;
+        final long purchaseTypeId;
+        final long epochDay;
+        final long price;
+
+        Row(Long purchaseId, long shopId, long employeeId, long itemId, long electroTypeId, long purchaseTypeId, long epochDay, long price) {
+            this.purchaseId = purchaseId;
+            this.shopId = shopId;
+            this.employeeId = employeeId;
+            this.itemId = itemId;
+            this.electroTypeId = electroTypeId;
+            this.purchaseTypeId = purchaseTypeId;
+            this.epochDay = epochDay;
+            this.price = price;
+        }
+
+        void appendTo(PurchaseColumnStore store) {
+            store.append(shopId, employeeId, itemId, electroTypeId, purchaseTypeId, epochDay, price);
+        }
+    }
+}
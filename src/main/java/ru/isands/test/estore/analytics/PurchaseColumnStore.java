@@ -0,0 +1,240 @@
+package ru.isands.test.estore.analytics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Покупки в памяти по колонкам: коды словарей магазина, сотрудника, товара, типа товара и способа оплаты,
+ * день покупки и цена продажи из покупки. Строки дописываются под монитором хранилища и публикуются увеличением размера,
+ * агрегаты считаются без блокировок по блокам строк в пуле fork-join.
+ */
+public class PurchaseColumnStore {
+
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Измерение, по которому группируются и фильтруются покупки
+     */
+    public enum Dimension {
+        SHOP, EMPLOYEE, ITEM, ELECTRO_TYPE, PURCHASE_TYPE
+    }
+
+    private final Dictionary[] dictionaries = new Dictionary[Dimension.values().length];
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int size;
+
+    public PurchaseColumnStore() {
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = new Dictionary();
+        }
+    }
+
+    /**
+     * Количество строк
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Дописать покупку
+     */
+    public synchronized void append(long shopId, long employeeId, long itemId, long electroTypeId, long purchaseTypeId, long epochDay, long price) {
+        int row = size;
+        Chunk[] current = chunks;
+        if (row == current.length * CHUNK_SIZE) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new Chunk();
+            chunks = current;
+        }
+        Chunk chunk = current[row / CHUNK_SIZE];
+        int index = row % CHUNK_SIZE;
+        chunk.codes[Dimension.SHOP.ordinal()][index] = dictionaries[Dimension.SHOP.ordinal()].encode(shopId);
+        chunk.codes[Dimension.EMPLOYEE.ordinal()][index] = dictionaries[Dimension.EMPLOYEE.ordinal()].encode(employeeId);
+        chunk.codes[Dimension.ITEM.ordinal()][index] = dictionaries[Dimension.ITEM.ordinal()].encode(itemId);
+        chunk.codes[Dimension.ELECTRO_TYPE.ordinal()][index] = dictionaries[Dimension.ELECTRO_TYPE.ordinal()].encode(electroTypeId);
+        chunk.codes[Dimension.PURCHASE_TYPE.ordinal()][index] = dictionaries[Dimension.PURCHASE_TYPE.ordinal()].encode(purchaseTypeId);
+        chunk.days[index] = (int) epochDay;
+        chunk.prices[index] = price;
+        size = row + 1;
+    }
+
+    /**
+     * Количество покупок и выручка по группам измерения groupBy среди строк, прошедших фильтр
+     *
+     * @return ID группы -> {количество, выручка}, только непустые группы
+     */
+    public Map<Long, long[]> aggregate(Dimension groupBy, Filter filter, ForkJoinPool pool) {
+        int rows = size;
+        Chunk[] current = chunks;
+        Dictionary groups = dictionaries[groupBy.ordinal()];
+        int cardinality = groups.size();
+        boolean[][] allowed = new boolean[dictionaries.length][];
+        for (Map.Entry<Dimension, Collection<Long>> entry : filter.ids.entrySet()) {
+            allowed[entry.getKey().ordinal()] = dictionaries[entry.getKey().ordinal()].mask(entry.getValue());
+        }
+        Query query = new Query(current, rows, groupBy.ordinal(), cardinality, allowed, filter.fromDay, filter.toDay);
+        long[][] totals = pool.invoke(new AggregateTask(query, 0, (rows + CHUNK_SIZE - 1) / CHUNK_SIZE));
+
+        Map<Long, long[]> result = new LinkedHashMap<>();
+        for (int code = 0; code < cardinality; code++) {
+            if (totals[0][code] > 0) {
+                result.put(groups.id(code), new long[]{totals[0][code], totals[1][code]});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Фильтр строк: диапазон дней и допустимые ID по измерениям
+     */
+    public static final class Filter {
+        private final Map<Dimension, Collection<Long>> ids = new HashMap<>();
+        private int fromDay = Integer.MIN_VALUE;
+        private int toDay = Integer.MAX_VALUE;
+
+        public Filter from(long epochDay) {
+            this.fromDay = (int) epochDay;
+            return this;
+        }
+
+        public Filter to(long epochDay) {
+            this.toDay = (int) epochDay;
+            return this;
+        }
+
+        public Filter in(Dimension dimension, Collection<Long> values) {
+            ids.put(dimension, values);
+            return this;
+        }
+    }
+
+    private static final class Query {
+        final Chunk[] chunks;
+        final int rows;
+        final int groupBy;
+        final int cardinality;
+        final boolean[][] allowed;
+        final int fromDay;
+        final int toDay;
+
+        Query(Chunk[] chunks, int rows, int groupBy, int cardinality, boolean[][] allowed, int fromDay, int toDay) {
+            this.chunks = chunks;
+            this.rows = rows;
+            this.groupBy = groupBy;
+            this.cardinality = cardinality;
+            this.allowed = allowed;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+    }
+
+    private static final class AggregateTask extends RecursiveTask<long[][]> {
+        private final Query query;
+        private final int fromChunk;
+        private final int toChunk;
+
+        AggregateTask(Query query, int fromChunk, int toChunk) {
+            this.query = query;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected long[][] compute() {
+            if (toChunk - fromChunk <= 1) {
+                long[][] totals = new long[2][query.cardinality];
+                if (fromChunk < toChunk) {
+                    scan(query.chunks[fromChunk], Math.min(CHUNK_SIZE, query.rows - fromChunk * CHUNK_SIZE), totals);
+                }
+                return totals;
+            }
+            int middle = (fromChunk + toChunk) >>> 1;
+            AggregateTask left = new AggregateTask(query, fromChunk, middle);
+            left.fork();
+            long[][] right = new AggregateTask(query, middle, toChunk).compute();
+            long[][] totals = left.join();
+            for (int code = 0; code < query.cardinality; code++) {
+                totals[0][code] += right[0][code];
+                totals[1][code] += right[1][code];
+            }
+            return totals;
+        }
+
+        private void scan(Chunk chunk, int rows, long[][] totals) {
+            int[] groups = chunk.codes[query.groupBy];
+            row:
+            for (int i = 0; i < rows; i++) {
+                int day = chunk.days[i];
+                if (day < query.fromDay || day > query.toDay) {
+                    continue;
+                }
+                for (int dimension = 0; dimension < query.allowed.length; dimension++) {
+                    boolean[] mask = query.allowed[dimension];
+                    if (mask != null) {
+                        int code = chunk.codes[dimension][i];
+                        if (code >= mask.length || !mask[code]) {
+                            continue row;
+                        }
+                    }
+                }
+                totals[0][groups[i]]++;
+                totals[1][groups[i]] += chunk.prices[i];
+            }
+        }
+    }
+
+    private static final class Chunk {
+        final int[][] codes = new int[Dimension.values().length][CHUNK_SIZE];
+        final int[] days = new int[CHUNK_SIZE];
+        final long[] prices = new long[CHUNK_SIZE];
+    }
+
+    /**
+     * Словарь ID -> плотный код; коды выдаются по порядку и не меняются
+     */
+    private static final class Dictionary {
+        private final Map<Long, Integer> codes = new HashMap<>();
+        private volatile long[] ids = new long[16];
+        private volatile int size;
+
+        synchronized int encode(long id) {
+            Integer code = codes.get(id);
+            if (code != null) {
+                return code;
+            }
+            int next = size;
+            if (next == ids.length) {
+                ids = Arrays.copyOf(ids, next * 2);
+            }
+            ids[next] = id;
+            codes.put(id, next);
+            size = next + 1;
+            return next;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long id(int code) {
+            return ids[code];
+        }
+
+        synchronized boolean[] mask(Collection<Long> values) {
+            boolean[] mask = new boolean[size];
+            for (Long value : values) {
+                Integer code = codes.get(value);
+                if (code != null) {
+                    mask[code] = true;
+                }
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package ru.isands.test.estore.analytics;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Куб продаж: набор кубоидов - итогов количества и выручки, сгруппированных по заданным сочетаниям измерений.
+ * Запрос отвечается по самому маленькому кубоиду, содержащему все измерения группировки и фильтров.
+ * Время хранится как эпохальный день: день покупки для DAY, первое число месяца для MONTH.
+ */
+public class SalesCube {
+
+    /**
+     * Измерение куба и выражения SQL для него: по дневным итогам store_sales_daily r и employee e
+     * и по покупкам store_purchase p, store_electro_item i и employee e. ITEM нет в дневных итогах,
+     * поэтому кубоиды и запросы с ним считаются по покупкам.
+     */
+    public enum Dimension {
+        SHOP("r.shop_id", "p.shop_id"),
+        ELECTRO_TYPE("r.electro_type_id", "i.etype_id"),
+        ITEM(null, "p.elecro_id"),
+        POSITION("e.position_id", "e.position_id"),
+        PURCHASE_TYPE("r.purchase_type_id", "p.type_id"),
+        DAY("r.day", "CAST(p.purchase_date AS date)"),
+        MONTH("CAST(date_trunc('month', r.day) AS date)", "CAST(date_trunc('month', p.purchase_date) AS date)");
+
+        private final String dailySql;
+        private final String purchaseSql;
+
+        Dimension(String dailySql, String purchaseSql) {
+            this.dailySql = dailySql;
+            this.purchaseSql = purchaseSql;
+        }
+
+        /**
+         * Выражение по store_sales_daily или null, если измерения нет в дневных итогах
+         */
+        public String dailySql() {
+            return dailySql;
+        }
+
+        public String purchaseSql() {
+            return purchaseSql;
+        }
+
+        public boolean isTime() {
+            return this == DAY || this == MONTH;
+        }
+
+        /**
+         * Измерение по имени без учета регистра и подчеркиваний: electroType, electro_type, ELECTRO_TYPE
+         */
+        public static Dimension of(String name) {
+            String normalized = name.trim().replace("_", "");
+            for (Dimension dimension : values()) {
+                if (dimension.name().replace("_", "").equalsIgnoreCase(normalized)) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестное измерение: " + name + ", допустимые: " + Arrays.toString(values()));
+        }
+    }
+
+    /**
+     * Значение измерения MONTH для дня
+     */
+    public static long monthOf(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+    }
+
+    private final List<Cuboid> cuboids = new ArrayList<>();
+
+    public SalesCube(Collection<List<Dimension>> definitions) {
+        for (List<Dimension> dimensions : definitions) {
+            cuboids.add(new Cuboid(dimensions));
+        }
+    }
+
+    public List<Cuboid> cuboids() {
+        return cuboids;
+    }
+
+    /**
+     * Учесть покупку во всех кубоидах
+     *
+     * @param fact значения измерений по Dimension.ordinal(); MONTH вычисляется из DAY
+     */
+    public void add(long[] fact, long count, long revenue) {
+        for (Cuboid cuboid : cuboids) {
+            cuboid.add(cuboid.project(fact), count, revenue);
+        }
+    }
+
+    /**
+     * Самый маленький кубоид, которым можно ответить на запрос, или null
+     */
+    public Cuboid find(Query query) {
+        Cuboid best = null;
+        for (Cuboid cuboid : cuboids) {
+            if (cuboid.covers(query) && (best == null || cuboid.size() < best.size())) {
+                best = cuboid;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Запрос к кубу: измерения группировки, допустимые значения измерений и диапазон дней
+     */
+    public static final class Query {
+        private final List<Dimension> groupBy;
+        private final Map<Dimension, Set<Long>> filters;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        public Query(List<Dimension> groupBy, Map<Dimension, Set<Long>> filters, LocalDate from, LocalDate to) {
+            this.groupBy = groupBy;
+            this.filters = filters;
+            this.from = from;
+            this.to = to;
+        }
+
+        public List<Dimension> groupBy() {
+            return groupBy;
+        }
+
+        public Map<Dimension, Set<Long>> filters() {
+            return filters;
+        }
+
+        public LocalDate from() {
+            return from;
+        }
+
+        public LocalDate to() {
+            return to;
+        }
+
+        /**
+         * Самое мелкое время, нужное запросу: DAY, MONTH или null, если время не используется.
+         * Диапазон из целых месяцев отвечается помесячными итогами.
+         */
+        Dimension timeLevel() {
+            boolean byDay = groupBy.contains(Dimension.DAY)
+                    || (from != null && from.getDayOfMonth() != 1)
+                    || (to != null && !to.equals(to.withDayOfMonth(to.lengthOfMonth())));
+            if (byDay) {
+                return Dimension.DAY;
+            }
+            return groupBy.contains(Dimension.MONTH) || from != null || to != null ? Dimension.MONTH : null;
+        }
+    }
+
+    /**
+     * Итоги по одному сочетанию измерений; не более одного измерения времени
+     */
+    public static final class Cuboid {
+        private final Dimension[] dimensions;
+        private final Set<Dimension> dimensionSet;
+        private final Dimension time;
+        private final Map<Key, long[]> cells = new ConcurrentHashMap<>();
+
+        Cuboid(List<Dimension> dimensions) {
+            this.dimensions = dimensions.toArray(new Dimension[0]);
+            this.dimensionSet = dimensions.isEmpty() ? EnumSet.noneOf(Dimension.class) : EnumSet.copyOf(dimensions);
+            this.time = dimensionSet.contains(Dimension.DAY) ? Dimension.DAY : dimensionSet.contains(Dimension.MONTH) ? Dimension.MONTH : null;
+        }
+
+        public List<Dimension> dimensions() {
+            return Arrays.asList(dimensions);
+        }
+
+        public int size() {
+            return cells.size();
+        }
+
+        /**
+         * Добавить итоги к ячейке; values - значения измерений в порядке кубоида
+         */
+        public void add(long[] values, long count, long revenue) {
+            cells.merge(new Key(values), new long[]{count, revenue}, (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]});
+        }
+
+        long[] project(long[] fact) {
+            long[] values = new long[dimensions.length];
+            for (int i = 0; i < dimensions.length; i++) {
+                values[i] = dimensions[i] == Dimension.MONTH ? monthOf(fact[Dimension.DAY.ordinal()]) : fact[dimensions[i].ordinal()];
+            }
+            return values;
+        }
+
+        boolean covers(Query query) {
+            for (Dimension dimension : query.groupBy()) {
+                if (!dimension.isTime() && !dimensionSet.contains(dimension)) {
+                    return false;
+                }
+            }
+            for (Dimension dimension : query.filters().keySet()) {
+                if (!dimensionSet.contains(dimension)) {
+                    return false;
+                }
+            }
+            Dimension level = query.timeLevel();
+            return level == null || time == Dimension.DAY || (level == Dimension.MONTH && time == Dimension.MONTH);
+        }
+
+        /**
+         * Свернуть ячейки до измерений группировки запроса
+         *
+         * @return значения измерений группировки -> {количество, выручка}
+         */
+        public Map<Key, long[]> answer(Query query) {
+            List<Dimension> groupBy = query.groupBy();
+            int[] positions = new int[groupBy.size()];
+            for (int i = 0; i < positions.length; i++) {
+                Dimension dimension = groupBy.get(i);
+                positions[i] = indexOf(dimension.isTime() ? time : dimension);
+            }
+            int[] filterPositions = new int[query.filters().size()];
+            List<Set<Long>> filterValues = new ArrayList<>();
+            int f = 0;
+            for (Map.Entry<Dimension, Set<Long>> entry : query.filters().entrySet()) {
+                filterPositions[f++] = indexOf(entry.getKey());
+                filterValues.add(entry.getValue());
+            }
+            int timePosition = time == null ? -1 : indexOf(time);
+            long fromDay = query.from() == null ? Long.MIN_VALUE : query.from().toEpochDay();
+            long toDay = query.to() == null ? Long.MAX_VALUE : query.to().toEpochDay();
+
+            Map<Key, long[]> result = new HashMap<>();
+            cell:
+            for (Map.Entry<Key, long[]> entry : cells.entrySet()) {
+                long[] values = entry.getKey().values;
+                if (timePosition >= 0 && (values[timePosition] < fromDay || values[timePosition] > toDay)) {
+                    continue;
+                }
+                for (int i = 0; i < filterPositions.length; i++) {
+                    if (!filterValues.get(i).contains(values[filterPositions[i]])) {
+                        continue cell;
+                    }
+                }
+                long[] projected = new long[positions.length];
+                for (int i = 0; i < positions.length; i++) {
+                    long value = values[positions[i]];
+                    projected[i] = groupBy.get(i) == Dimension.MONTH && time == Dimension.DAY ? monthOf(value) : value;
+                }
+                long[] totals = entry.getValue();
+                result.merge(new Key(projected), new long[]{totals[0], totals[1]}, (a, b) -> {
+                    a[0] += b[0];
+                    a[1] += b[1];
+                    return a;
+                });
+            }
+            return result;
+        }
+
+        private int indexOf(Dimension dimension) {
+            for (int i = 0; i < dimensions.length; i++) {
+                if (dimensions[i] == dimension) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Кубоид " + dimensions() + " не содержит измерение " + dimension);
+        }
+    }
+
+    /**
+     * Значения измерений ячейки
+     */
+    public static final class Key implements Comparable<Key> {
+        private final long[] values;
+
+        public Key(long[] values) {
+            this.values = values;
+        }
+
+        public long[] values() {
+            return values;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof Key && Arrays.equals(values, ((Key) o).values));
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            for (int i = 0; i < values.length; i++) {
+                int c = Long.compare(values[i], other.values[i]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+    }
+}
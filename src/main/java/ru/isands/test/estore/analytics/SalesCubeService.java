@@ -0,0 +1,355 @@
+package ru.isands.test.estore.analytics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.dto.CubeResultDTO;
+import ru.isands.test.estore.dto.CubeRowDTO;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+import ru.isands.test.estore.util.DateUtils;
+import ru.isands.test.estore.util.SnapshotRebuilder;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Куб продаж в памяти для произвольных срезов по магазину, типу товара, товару, должности, способу оплаты и времени.
+ * Кубоиды задаются настройкой cube.cuboids, строятся при старте группировкой дневных итогов store_sales_daily,
+ * а кубоиды с товаром - группировкой покупок store_purchase, дополняются каждой покупкой после фиксации транзакции
+ * и перестраиваются после изменения покупок или должностей.
+ * Запросы, которые не покрывает ни один кубоид или приходящие до построения куба, выполняются в БД: по дневным итогам,
+ * а с товаром - по покупкам. Выручка в обоих случаях - сумма сохраненных цен продажи, поэтому количество и выручка
+ * совпадают с отчетами по store_sales_daily.
+ */
+@Service
+public class SalesCubeService {
+
+    private static final String DAILY_SOURCE = "daily";
+    private static final String PURCHASES_SOURCE = "purchases";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SnapshotRebuilder<SalesCube, Fact> snapshots;
+
+    @Value("${cube.enabled: false}")
+    private boolean enabled;
+
+    @Value("${cube.cuboids: shop,purchase_type,month;electro_type,position,month;shop,electro_type,day}")
+    private String cuboidsConfig;
+
+    @Value("${cube.max.rows: 10000}")
+    private int maxRows;
+
+    private List<List<SalesCube.Dimension>> definitions;
+
+    @Autowired
+    public SalesCubeService(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(10_000);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(streamingJdbcTemplate);
+        this.snapshots = new SnapshotRebuilder<>(streamingJdbcTemplate, transactionManager, fact -> fact.purchaseId,
+                (cube, fact) -> cube.add(fact.values, 1, fact.price));
+    }
+
+    @PostConstruct
+    void parseCuboids() {
+        definitions = new ArrayList<>();
+        for (String cuboid : cuboidsConfig.split(";")) {
+            if (cuboid.trim().isEmpty()) {
+                continue;
+            }
+            List<SalesCube.Dimension> dimensions = new ArrayList<>();
+            for (String name : cuboid.split(",")) {
+                SalesCube.Dimension dimension = SalesCube.Dimension.of(name);
+                if (dimensions.contains(dimension) || (dimension.isTime() && dimensions.stream().anyMatch(SalesCube.Dimension::isTime))) {
+                    throw new IllegalStateException("Недопустимый кубоид в cube.cuboids: " + cuboid);
+                }
+                dimensions.add(dimension);
+            }
+            definitions.add(dimensions);
+        }
+    }
+
+    /**
+     * Количество продаж и выручка в разрезе измерений groupBy с фильтрами по ID и диапазону дней
+     *
+     * @param groupBy имена измерений: shop, electroType, item, position, purchaseType, day, month
+     * @param filters допустимые ID по измерениям; пустые и null списки не фильтруют
+     */
+    public CubeResultDTO getSales(List<String> groupBy, Map<String, List<Long>> filters, LocalDate from, LocalDate to) {
+        SalesCube.Query query = toQuery(groupBy, filters, from, to);
+        SalesCube current = readyCube();
+        SalesCube.Cuboid cuboid = current == null ? null : current.find(query);
+        Map<SalesCube.Key, long[]> totals;
+        String source;
+        if (cuboid != null) {
+            totals = cuboid.answer(query);
+            source = cuboidName(cuboid.dimensions());
+        } else {
+            totals = queryDatabase(query);
+            source = fromDaily(query.groupBy(), query.filters().keySet()) ? DAILY_SOURCE : PURCHASES_SOURCE;
+        }
+        if (totals.size() > maxRows) {
+            throw new RequestLimitExceededException("Слишком много строк в ответе: " + totals.size() + ", максимум: " + maxRows
+                    + ". Уменьшите число измерений или добавьте фильтры");
+        }
+
+        List<CubeRowDTO> rows = new ArrayList<>();
+        for (Map.Entry<SalesCube.Key, long[]> entry : new TreeMap<>(totals).entrySet()) {
+            long[] values = entry.getKey().values();
+            List<Object> keys = new ArrayList<>();
+            for (int i = 0; i < values.length; i++) {
+                keys.add(formatKey(query.groupBy().get(i), values[i]));
+            }
+            rows.add(new CubeRowDTO(keys, entry.getValue()[0], entry.getValue()[1]));
+        }
+        List<String> names = new ArrayList<>();
+        for (SalesCube.Dimension dimension : query.groupBy()) {
+            names.add(dimension.name().toLowerCase());
+        }
+        return new CubeResultDTO(names, source, rows);
+    }
+
+    /**
+     * Учесть покупку после фиксации текущей транзакции
+     */
+    public void onPurchase(Purchase purchase) {
+        if (!enabled) {
+            return;
+        }
+        long[] values = new long[SalesCube.Dimension.values().length];
+        values[SalesCube.Dimension.SHOP.ordinal()] = purchase.getShop().getId();
+        values[SalesCube.Dimension.ELECTRO_TYPE.ordinal()] = purchase.getElectroItem().getEType().getId();
+        values[SalesCube.Dimension.ITEM.ordinal()] = purchase.getElectroItem().getId();
+        values[SalesCube.Dimension.POSITION.ordinal()] = purchase.getEmployee().getPosition().getId();
+        values[SalesCube.Dimension.PURCHASE_TYPE.ordinal()] = purchase.getPurchaseType().getId();
+        values[SalesCube.Dimension.DAY.ordinal()] = DateUtils.toLocalDate(purchase.getPurchaseDate()).toEpochDay();
+        snapshots.add(new Fact(purchase.getId(), values, purchase.getPrice() == null ? 0 : purchase.getPrice()));
+    }
+
+    /**
+     * Пометить куб устаревшим после фиксации текущей транзакции; до перестроения запросы идут в БД
+     */
+    public void requestRebuild() {
+        snapshots.requestRebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${cube.rebuild.check.ms: 5000}")
+    public void rebuildIfStale() {
+        if (enabled && snapshots.isStale()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Перестроить кубоиды группировкой store_sales_daily или store_purchase в одном снимке БД.
+     * Дневные итоги покупки фиксируются в ее транзакции, поэтому снимок содержит итоги ровно тех покупок, которые в нем видны.
+     * Покупки, зафиксированные во время построения, добавляются, если не попали в снимок.
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        snapshots.rebuild(() -> {
+            SalesCube next = new SalesCube(definitions);
+            for (SalesCube.Cuboid cuboid : next.cuboids()) {
+                List<SalesCube.Dimension> dimensions = cuboid.dimensions();
+                streamingJdbcTemplate.query(groupingSql(dimensions, Collections.emptyMap(), false, false),
+                        (RowCallbackHandler) rs -> cuboid.add(readKey(rs, dimensions), rs.getLong(dimensions.size() + 1),
+                                rs.getLong(dimensions.size() + 2)));
+            }
+            return next;
+        });
+    }
+
+    private SalesCube readyCube() {
+        return enabled ? snapshots.ready() : null;
+    }
+
+    private Map<SalesCube.Key, long[]> queryDatabase(SalesCube.Query query) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        int i = 0;
+        for (Map.Entry<SalesCube.Dimension, Set<Long>> entry : query.filters().entrySet()) {
+            params.addValue("f" + i++, entry.getValue());
+        }
+        if (query.from() != null) {
+            params.addValue("from", Date.valueOf(query.from()));
+        }
+        if (query.to() != null) {
+            params.addValue("to", Date.valueOf(query.to()));
+            params.addValue("toExclusive", Date.valueOf(query.to().plusDays(1)));
+        }
+        List<SalesCube.Dimension> dimensions = query.groupBy();
+        String sql = groupingSql(dimensions, query.filters(), query.from() != null, query.to() != null);
+        Map<SalesCube.Key, long[]> result = new LinkedHashMap<>();
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> {
+            long count = rs.getLong(dimensions.size() + 1);
+            if (count > 0) {
+                result.put(new SalesCube.Key(readKey(rs, dimensions)), new long[]{count, rs.getLong(dimensions.size() + 2)});
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Можно ли посчитать группировку по дневным итогам: все измерения группировки и фильтров есть в store_sales_daily
+     */
+    static boolean fromDaily(Collection<SalesCube.Dimension> groupBy, Collection<SalesCube.Dimension> filters) {
+        for (SalesCube.Dimension dimension : groupBy) {
+            if (dimension.dailySql() == null) {
+                return false;
+            }
+        }
+        for (SalesCube.Dimension dimension : filters) {
+            if (dimension.dailySql() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Группировка по store_sales_daily, если она покрывает измерения, иначе по store_purchase с сохраненной ценой продажи.
+     * Конец периода для покупок задается полуинтервалом, чтобы условие шло по индексу и секциям purchase_date.
+     */
+    static String groupingSql(List<SalesCube.Dimension> dimensions, Map<SalesCube.Dimension, Set<Long>> filters, boolean from, boolean to) {
+        boolean daily = fromDaily(dimensions, filters.keySet());
+        StringBuilder select = new StringBuilder("SELECT ");
+        StringBuilder groupBy = new StringBuilder();
+        for (int i = 0; i < dimensions.size(); i++) {
+            select.append(sql(dimensions.get(i), daily)).append(", ");
+            groupBy.append(i == 0 ? " GROUP BY " : ", ").append(i + 1);
+        }
+        boolean position = dimensions.contains(SalesCube.Dimension.POSITION) || filters.containsKey(SalesCube.Dimension.POSITION);
+        if (daily) {
+            select.append("COALESCE(SUM(r.count), 0), COALESCE(SUM(r.revenue), 0) FROM store_sales_daily r");
+            if (position) {
+                select.append(" JOIN employee e ON e.id_ = r.employee_id");
+            }
+        } else {
+            select.append("COUNT(*), COALESCE(SUM(p.price), 0) FROM store_purchase p");
+            if (dimensions.contains(SalesCube.Dimension.ELECTRO_TYPE) || filters.containsKey(SalesCube.Dimension.ELECTRO_TYPE)) {
+                select.append(" JOIN store_electro_item i ON i.id = p.elecro_id");
+            }
+            if (position) {
+                select.append(" JOIN employee e ON e.id_ = p.employee_id");
+            }
+        }
+        List<String> conditions = new ArrayList<>();
+        int i = 0;
+        for (SalesCube.Dimension dimension : filters.keySet()) {
+            conditions.add(sql(dimension, daily) + " IN (:f" + i++ + ")");
+        }
+        if (from) {
+            conditions.add(daily ? "r.day >= :from" : "p.purchase_date >= :from");
+        }
+        if (to) {
+            conditions.add(daily ? "r.day <= :to" : "p.purchase_date < :toExclusive");
+        }
+        if (!conditions.isEmpty()) {
+            select.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return select.append(groupBy).toString();
+    }
+
+    private static String sql(SalesCube.Dimension dimension, boolean daily) {
+        return daily ? dimension.dailySql() : dimension.purchaseSql();
+    }
+
+    private static long[] readKey(ResultSet rs, List<SalesCube.Dimension> dimensions) throws SQLException {
+        long[] values = new long[dimensions.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = dimensions.get(i).isTime() ? rs.getDate(i + 1).toLocalDate().toEpochDay() : rs.getLong(i + 1);
+        }
+        return values;
+    }
+
+    private static Object formatKey(SalesCube.Dimension dimension, long value) {
+        if (dimension == SalesCube.Dimension.DAY) {
+            return LocalDate.ofEpochDay(value).toString();
+        }
+        if (dimension == SalesCube.Dimension.MONTH) {
+            return YearMonth.from(LocalDate.ofEpochDay(value)).toString();
+        }
+        return value;
+    }
+
+    private static String cuboidName(List<SalesCube.Dimension> dimensions) {
+        List<String> names = new ArrayList<>();
+        for (SalesCube.Dimension dimension : dimensions) {
+            names.add(dimension.name().toLowerCase());
+        }
+        return String.join(",", names);
+    }
+
+    private static SalesCube.Query toQuery(List<String> groupBy, Map<String, List<Long>> filters, LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new RequestLimitExceededException("Начало периода " + from + " позже конца " + to);
+        }
+        try {
+            List<SalesCube.Dimension> dimensions = new ArrayList<>();
+            if (groupBy != null) {
+                for (String name : groupBy) {
+                    SalesCube.Dimension dimension = SalesCube.Dimension.of(name);
+                    if (!dimensions.contains(dimension)) {
+                        dimensions.add(dimension);
+                    }
+                }
+            }
+            Map<SalesCube.Dimension, Set<Long>> values = new EnumMap<>(SalesCube.Dimension.class);
+            for (Map.Entry<String, List<Long>> entry : filters.entrySet()) {
+                if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                    SalesCube.Dimension dimension = SalesCube.Dimension.of(entry.getKey());
+                    if (dimension.isTime()) {
+                        throw new IllegalArgumentException("Время фильтруется параметрами from и to");
+                    }
+                    values.put(dimension, new HashSet<>(entry.getValue()));
+                }
+            }
+            return new SalesCube.Query(dimensions, values, from, to);
+        } catch (IllegalArgumentException e) {
+            throw new RequestLimitExceededException(e.getMessage());
+        }
+    }
+
+    private static final class Fact {
+        final Long purchaseId;
+        final long[] values;
+        final long price;
+
+        Fact(Long purchaseId, long[] values, long price) {
+            this.purchaseId = purchaseId;
+            this.values = values;
+            this.price = price;
+        }
+    }
+}
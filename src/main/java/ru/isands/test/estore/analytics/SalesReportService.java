@@ -0,0 +1,151 @@
+package ru.isands.test.estore.analytics;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.isands.test.estore.dto.SalesPeriodDTO;
+import ru.isands.test.estore.dto.ShopRevenueDTO;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отчеты по дневным итогам продаж
+ */
+@Service
+public class SalesReportService {
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    @Value("${analytics.range.max.periods: 1000}")
+    private long maxPeriods;
+
+    @Autowired
+    public SalesReportService(DataSource dataSource, PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(1_000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Продажи сотрудников по периодам внутри диапазона дней
+     *
+     * @param employeeId сотрудник или null для всех сотрудников
+     * @param positionId должность или null для всех должностей
+     */
+    public List<SalesPeriodDTO> getEmployeeSales(LocalDate from, LocalDate to, Granularity granularity, Long employeeId, Long positionId) {
+        List<Object> args = rangeArgs(from, to, granularity);
+        StringBuilder where = new StringBuilder();
+        if (employeeId != null) {
+            where.append(" AND r.employee_id = ?");
+            args.add(employeeId);
+        }
+        if (positionId != null) {
+            where.append(" AND r.employee_id IN (SELECT id_ FROM employee WHERE position_id = ?)");
+            args.add(positionId);
+        }
+        return periods("employee_id", where.toString(), granularity, args);
+    }
+
+    /**
+     * Продажи магазинов по периодам внутри диапазона дней
+     *
+     * @param shopId магазин или null для всех магазинов
+     */
+    public List<SalesPeriodDTO> getShopSales(LocalDate from, LocalDate to, Granularity granularity, Long shopId) {
+        List<Object> args = rangeArgs(from, to, granularity);
+        String where = "";
+        if (shopId != null) {
+            where = " AND r.shop_id = ?";
+            args.add(shopId);
+        }
+        return periods("shop_id", where, granularity, args);
+    }
+
+    /**
+     * Группировка по периоду и колонке column. Условие по day ограничивает чтение диапазоном
+     * первичного ключа или индексов (employee_id, day) и (shop_id, day), а не всей историей.
+     */
+    private List<SalesPeriodDTO> periods(String column, String where, Granularity granularity, List<Object> args) {
+        String period = "CAST(date_trunc('" + granularity.field() + "', r.day) AS date)";
+        String sql = "SELECT " + period + ", r." + column + ", SUM(r.count), SUM(r.revenue) " +
+                "FROM store_sales_daily r WHERE r.day >= ? AND r.day <= ?" + where +
+                " GROUP BY 1, 2 ORDER BY 1, 2";
+        return readOnlyTransaction.execute(status -> streamingJdbcTemplate.query(sql, (rs, rowNum) -> new SalesPeriodDTO(
+                rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getLong(3), rs.getLong(4)), args.toArray()));
+    }
+
+    private List<Object> rangeArgs(LocalDate from, LocalDate to, Granularity granularity) {
+        if (from.isAfter(to)) {
+            throw new RequestLimitExceededException("Начало периода " + from + " позже конца " + to);
+        }
+        long periods = granularity.unit().between(from, to) + 1;
+        if (periods > maxPeriods) {
+            throw new RequestLimitExceededException("Слишком много периодов: " + periods + ", максимум: " + maxPeriods);
+        }
+        List<Object> args = new ArrayList<>();
+        args.add(Date.valueOf(from));
+        args.add(Date.valueOf(to));
+        return args;
+    }
+
+    /**
+     * Записать в поток JSON-массив выручки всех магазинов по всем способам оплаты за период.
+     * Итоги группируются одним запросом по диапазону дней store_sales_daily, названия подставляются после группировки.
+     *
+     * @param from первый день периода включительно или null
+     * @param to   последний день периода включительно или null
+     */
+    public void writeShopRevenueReport(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        List<Object> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        if (from != null) {
+            where.append(where.length() == 0 ? " WHERE " : " AND ").append("day >= ?");
+            args.add(Date.valueOf(from));
+        }
+        if (to != null) {
+            where.append(where.length() == 0 ? " WHERE " : " AND ").append("day <= ?");
+            args.add(Date.valueOf(to));
+        }
+        String sql = "SELECT r.shop_id, s.name, s.address, r.purchase_type_id, t.name, r.items_sold, r.total_sales " +
+                "FROM (SELECT shop_id, purchase_type_id, SUM(count) AS items_sold, SUM(revenue) AS total_sales " +
+                "FROM store_sales_daily" + where + " GROUP BY shop_id, purchase_type_id) r " +
+                "JOIN store_shop s ON s.id = r.shop_id " +
+                "JOIN store_purchase_type t ON t.id = r.purchase_type_id " +
+                "ORDER BY r.shop_id, r.purchase_type_id";
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> streamingJdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                    try {
+                        generator.writeObject(new ShopRevenueDTO(rs.getLong(1), rs.getString(2), rs.getString(3),
+                                rs.getLong(4), rs.getString(5), rs.getLong(6), rs.getLong(7)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, args.toArray()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package ru.isands.test.estore.analytics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.util.DateUtils;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Дневные итоги продаж в store_sales_daily по дню, магазину, сотруднику, типу товара и способу оплаты.
+ * Покупка учитывается в итогах в своей транзакции, импорт и изменение покупок пересчитывают затронутые дни.
+ * Выручка считается по цене продажи, сохраненной в покупке, поэтому пересчет не зависит от текущих цен товаров.
+ * Запись покупки и пересчет дня согласуются рекомендательной блокировкой дня: покупки разных дней и покупки
+ * одного дня между собой не ждут друг друга, пересчет дня ждет завершения записей этого дня и задерживает новые.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final String UPSERT_SQL = "INSERT INTO store_sales_daily " +
+            "(day, shop_id, employee_id, electro_type_id, purchase_type_id, count, revenue) VALUES (?, ?, ?, ?, ?, 1, ?) " +
+            "ON CONFLICT (day, shop_id, employee_id, electro_type_id, purchase_type_id) DO UPDATE SET " +
+            "count = store_sales_daily.count + 1, revenue = store_sales_daily.revenue + EXCLUDED.revenue";
+
+    private static final String DELETE_SQL = "DELETE FROM store_sales_daily WHERE day >= ? AND day < ?";
+
+    private static final String INSERT_SQL = "INSERT INTO store_sales_daily " +
+            "(day, shop_id, employee_id, electro_type_id, purchase_type_id, count, revenue) " +
+            "SELECT CAST(p.purchase_date AS date), p.shop_id, p.employee_id, i.etype_id, p.type_id, COUNT(*), COALESCE(SUM(p.price), 0) " +
+            "FROM store_purchase p JOIN store_electro_item i ON i.id = p.elecro_id " +
+            "WHERE p.purchase_date >= ? AND p.purchase_date < ? " +
+            "GROUP BY CAST(p.purchase_date AS date), p.shop_id, p.employee_id, i.etype_id, p.type_id";
+
+    /**
+     * Пространство рекомендательных блокировок дневных итогов; второй ключ - номер дня от 1970-01-01
+     */
+    private static final int DAY_LOCK_SPACE = 0x5a1e5;
+
+    private static final String RECORD_LOCK_SQL = "SELECT pg_advisory_xact_lock_shared(" + DAY_LOCK_SPACE + ", ?)";
+
+    private static final String REBUILD_LOCK_SQL = "SELECT pg_advisory_xact_lock(" + DAY_LOCK_SPACE + ", CAST(d AS int)) " +
+            "FROM generate_series(CAST(? AS bigint), CAST(? AS bigint)) AS d ORDER BY d";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+
+    @Value("${rollup.rebuild.threads: 4}")
+    private int rebuildThreads;
+
+    @Autowired
+    public SalesRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Учесть покупку в дневных итогах в текущей транзакции
+     */
+    public void record(Purchase purchase) {
+        LocalDate day = DateUtils.toLocalDate(purchase.getPurchaseDate());
+        jdbcTemplate.query(RECORD_LOCK_SQL, rs -> null, (int) day.toEpochDay());
+        jdbcTemplate.update(UPSERT_SQL,
+                Date.valueOf(day),
+                purchase.getShop().getId(),
+                purchase.getEmployee().getId(),
+                purchase.getElectroItem().getEType().getId(),
+                purchase.getPurchaseType().getId(),
+                purchase.getPrice() == null ? 0 : purchase.getPrice());
+    }
+
+    /**
+     * Пересчитать дневные итоги с from по to включительно в текущей транзакции.
+     * Блокировки дней держатся до конца транзакции, поэтому несколько вызовов в одной транзакции
+     * передают дни по возрастанию.
+     */
+    public void rebuildDays(LocalDate from, LocalDate to) {
+        rebuildRange(from, to.plusDays(1));
+    }
+
+    /**
+     * Пересчитать все итоги по store_purchase: месяцы пересчитываются параллельно, каждый в своей транзакции
+     *
+     * @return количество пересчитанных месяцев
+     */
+    public synchronized int rebuildAll() {
+        List<LocalDate> months = months();
+        if (months.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM store_sales_daily");
+            return 0;
+        }
+        LocalDate end = months.get(months.size() - 1).plusMonths(1);
+        jdbcTemplate.update("DELETE FROM store_sales_daily WHERE day < ? OR day >= ?", Date.valueOf(months.get(0)), Date.valueOf(end));
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(rebuildThreads, months.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (LocalDate month : months) {
+                futures.add(pool.submit(() -> chunkTransaction.executeWithoutResult(status ->
+                        rebuildRange(month, month.plusMonths(1)))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Пересчет дневных итогов прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Ошибка пересчета дневных итогов", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return months.size();
+    }
+
+    /**
+     * Построить итоги при первом запуске, если покупки есть, а итогов еще нет
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void buildOnStartup() {
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM store_sales_daily) " +
+                "AND EXISTS (SELECT 1 FROM store_purchase)", Boolean.class);
+        if (Boolean.TRUE.equals(empty)) {
+            rebuildAll();
+        }
+    }
+
+    private void rebuildRange(LocalDate from, LocalDate toExclusive) {
+        jdbcTemplate.query(REBUILD_LOCK_SQL, rs -> null, from.toEpochDay(), toExclusive.toEpochDay() - 1);
+        jdbcTemplate.update(DELETE_SQL, Date.valueOf(from), Date.valueOf(toExclusive));
+        jdbcTemplate.update(INSERT_SQL, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(toExclusive.atStartOfDay()));
+    }
+
+    private List<LocalDate> months() {
+        List<LocalDate> months = new ArrayList<>();
+        jdbcTemplate.query("SELECT MIN(purchase_date), MAX(purchase_date) FROM store_purchase", (RowCallbackHandler) rs -> {
+            Timestamp min = rs.getTimestamp(1);
+            Timestamp max = rs.getTimestamp(2);
+            if (min == null || max == null) {
+                return;
+            }
+            LocalDate last = max.toLocalDateTime().toLocalDate().withDayOfMonth(1);
+            for (LocalDate month = min.toLocalDateTime().toLocalDate().withDayOfMonth(1); !month.isAfter(last); month = month.plusMonths(1)) {
+                months.add(month);
+            }
+        });
+        return months;
+    }
+}
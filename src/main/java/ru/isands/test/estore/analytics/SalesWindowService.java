@@ -0,0 +1,149 @@
+package ru.isands.test.estore.analytics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.dto.SalesWindowDTO;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+import ru.isands.test.estore.util.TransactionHooks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Продажи за последние минуты по магазинам и типам товаров в памяти, без обращений к БД.
+ * Для каждой пары магазин - тип товара хранится кольцо из минутных корзин, окно ограничено длиной кольца.
+ * Текущая минута входит в окно неполной.
+ */
+@Service
+public class SalesWindowService {
+
+    private static final long BUCKET_MS = 60_000;
+
+    private final Map<Key, SlidingWindowCounter> counters = new ConcurrentHashMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    @Value("${sales.window.minutes: 60}")
+    private int windowMinutes;
+
+    @Value("${sales.window.sse.timeout.ms: 1800000}")
+    private long sseTimeout;
+
+    /**
+     * Учесть покупку после фиксации текущей транзакции
+     */
+    public void onPurchase(Purchase purchase) {
+        Key key = new Key(purchase.getShop().getId(), purchase.getElectroItem().getEType().getId());
+        long price = purchase.getPrice() == null ? 0 : purchase.getPrice();
+        TransactionHooks.afterCommit(() -> counters
+                .computeIfAbsent(key, k -> new SlidingWindowCounter(windowMinutes))
+                .add(currentBucket(), 1, price));
+    }
+
+    /**
+     * Продажи за последние minutes минут по парам магазин - тип товара
+     *
+     * @param shopId        магазин или null для всех магазинов
+     * @param electroTypeId тип товара или null для всех типов
+     */
+    public List<SalesWindowDTO> getSales(Long shopId, Long electroTypeId, int minutes) {
+        if (minutes < 1 || minutes > windowMinutes) {
+            throw new RequestLimitExceededException("Окно должно быть от 1 до " + windowMinutes + " минут, запрошено: " + minutes);
+        }
+        long bucket = currentBucket();
+        List<SalesWindowDTO> result = new ArrayList<>();
+        for (Map.Entry<Key, SlidingWindowCounter> entry : counters.entrySet()) {
+            Key key = entry.getKey();
+            if ((shopId != null && !shopId.equals(key.shopId)) || (electroTypeId != null && !electroTypeId.equals(key.electroTypeId))) {
+                continue;
+            }
+            long count = entry.getValue().count(bucket, minutes);
+            if (count > 0) {
+                long revenue = entry.getValue().revenue(bucket, minutes);
+                result.add(new SalesWindowDTO(key.shopId, key.electroTypeId, minutes, count, revenue,
+                        (double) count / minutes, (double) revenue / minutes));
+            }
+        }
+        result.sort(Comparator.comparing(SalesWindowDTO::getShopId).thenComparing(SalesWindowDTO::getElectroTypeId));
+        return result;
+    }
+
+    /**
+     * Подписаться на периодическую рассылку продаж за последние minutes минут
+     */
+    public SseEmitter subscribe(Long shopId, Long electroTypeId, int minutes) {
+        List<SalesWindowDTO> initial = getSales(shopId, electroTypeId, minutes);
+        SseEmitter emitter = new SseEmitter(sseTimeout);
+        Subscription subscription = new Subscription(emitter, shopId, electroTypeId, minutes);
+        subscriptions.add(subscription);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+        emitter.onError(e -> subscriptions.remove(subscription));
+        send(subscription, initial);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${sales.window.push.ms: 5000}")
+    public void push() {
+        for (Subscription subscription : subscriptions) {
+            send(subscription, getSales(subscription.shopId, subscription.electroTypeId, subscription.minutes));
+        }
+    }
+
+    private void send(Subscription subscription, List<SalesWindowDTO> sales) {
+        try {
+            subscription.emitter.send(SseEmitter.event().name("sales").data(sales));
+        } catch (IOException | IllegalStateException e) {
+            subscriptions.remove(subscription);
+            subscription.emitter.completeWithError(e);
+        }
+    }
+
+    private static long currentBucket() {
+        return System.currentTimeMillis() / BUCKET_MS;
+    }
+
+    private static final class Key {
+        final Long shopId;
+        final Long electroTypeId;
+
+        Key(Long shopId, Long electroTypeId) {
+            this.shopId = shopId;
+            this.electroTypeId = electroTypeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return shopId.equals(that.shopId) && electroTypeId.equals(that.electroTypeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * shopId.hashCode() + electroTypeId.hashCode();
+        }
+    }
+
+    private static final class Subscription {
+        final SseEmitter emitter;
+        final Long shopId;
+        final Long electroTypeId;
+        final int minutes;
+
+        Subscription(SseEmitter emitter, Long shopId, Long electroTypeId, int minutes) {
+            this.emitter = emitter;
+            this.shopId = shopId;
+            this.electroTypeId = electroTypeId;
+            this.minutes = minutes;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.isands.test.estore.analytics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счетчик продаж в скользящем окне: кольцо корзин фиксированной длительности.
+ * Каждая ячейка хранит в одном long номер корзины (старшие 24 бита) и значение (младшие 40 бит),
+ * поэтому устаревшая ячейка сбрасывается и увеличивается одним CAS без блокировок.
+ * Количество и выручка хранятся в отдельных кольцах и могут на мгновение расходиться на одну покупку.
+ */
+public class SlidingWindowCounter {
+
+    private static final int VALUE_BITS = 40;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long STAMP_MASK = (1L << (Long.SIZE - VALUE_BITS)) - 1;
+
+    private final AtomicLongArray counts;
+    private final AtomicLongArray revenue;
+
+    public SlidingWindowCounter(int buckets) {
+        this.counts = new AtomicLongArray(buckets);
+        this.revenue = new AtomicLongArray(buckets);
+    }
+
+    /**
+     * Учесть продажу в корзине bucket
+     */
+    public void add(long bucket, long count, long amount) {
+        add(counts, bucket, count);
+        add(revenue, bucket, amount);
+    }
+
+    /**
+     * Количество продаж в последних buckets корзинах, заканчивая корзиной bucket
+     */
+    public long count(long bucket, int buckets) {
+        return sum(counts, bucket, buckets);
+    }
+
+    /**
+     * Выручка в последних buckets корзинах, заканчивая корзиной bucket
+     */
+    public long revenue(long bucket, int buckets) {
+        return sum(revenue, bucket, buckets);
+    }
+
+    private static void add(AtomicLongArray ring, long bucket, long delta) {
+        int index = (int) (bucket % ring.length());
+        long stamp = bucket & STAMP_MASK;
+        while (true) {
+            long word = ring.get(index);
+            long next = (word >>> VALUE_BITS) == stamp
+                    ? (stamp << VALUE_BITS) | (((word & VALUE_MASK) + delta) & VALUE_MASK)
+                    : (stamp << VALUE_BITS) | (delta & VALUE_MASK);
+            if (ring.compareAndSet(index, word, next)) {
+                return;
+            }
+        }
+    }
+
+    private static long sum(AtomicLongArray ring, long bucket, int buckets) {
+        long total = 0;
+        for (int i = 0; i < Math.min(buckets, ring.length()); i++) {
+            long current = bucket - i;
+            long word = ring.get((int) (current % ring.length()));
+            if ((word >>> VALUE_BITS) == (current & STAMP_MASK)) {
+                total += word & VALUE_MASK;
+            }
+        }
+        return total;
+    }
+}
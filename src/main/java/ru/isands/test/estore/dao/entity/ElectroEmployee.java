@@ -21,14 +21,14 @@ public class ElectroEmployee implements Serializable {
     /**
      * Идентификатор сотрудника
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "employeeId")
     private Employee employee;
 
     /**
      * Идентификатор тип электроники
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "electroTypeId")
     private ElectroType electroType;
 
@@ -9,7 +9,10 @@ import java.io.Serializable;
 @Getter
 @Setter
 @Entity
-@Table(name = "store_electroItem")
+@Table(name = "store_electroItem", indexes = {
+        @Index(name = "store_electro_item_type_price_idx", columnList = "etypeId, price, id"),
+        @Index(name = "store_electro_item_price_idx", columnList = "price, id")
+})
 public class ElectroItem implements Serializable {
     /**
      * Идентификатор электротовара
@@ -28,7 +31,7 @@ public class ElectroItem implements Serializable {
     /**
      * Ссылка на тип товара
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "etypeId", nullable = false)
     private ElectroType eType;
 
@@ -39,9 +42,10 @@ public class ElectroItem implements Serializable {
     private Long price;
 
     /**
-     * Общее количество товара в наличии
+     * Общее количество товара в наличии, сумма остатков по магазинам.
+     * Изменяется только запросами ElectroItemRepository вместе с остатками store_eshop
      */
-    @Column(name = "count", nullable = false)
+    @Column(name = "count", nullable = false, updatable = false)
     private Integer count;
 
     /**
@@ -57,4 +61,11 @@ public class ElectroItem implements Serializable {
     @Column(name = "description", columnDefinition = "TEXT")
     private String description;
 
+    /**
+     * Версия записи для оптимистической блокировки
+     */
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
 }
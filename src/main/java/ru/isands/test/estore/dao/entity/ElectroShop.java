@@ -9,7 +9,9 @@ import java.io.Serializable;
 @Getter
 @Setter
 @Entity
-@Table(name = "store_eshop")
+@Table(name = "store_eshop", indexes = {
+        @Index(name = "store_eshop_item_shop_count_idx", columnList = "electroItemId, shopId, count")
+})
 public class ElectroShop implements Serializable {
 
     /**
@@ -21,14 +23,14 @@ public class ElectroShop implements Serializable {
     /**
      * Идентификатор магазина
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shopId")
     private Shop shop;
 
     /**
      * Идентификатор электротовара
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "electroItemId")
     private ElectroItem electroItem;
 
@@ -37,4 +39,11 @@ public class ElectroShop implements Serializable {
      */
     @Column(name = "count", nullable = false)
     private Integer count;
+
+    /**
+     * Версия записи для оптимистической блокировки
+     */
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 }
@@ -48,14 +48,14 @@ public class Employee implements Serializable {
     /**
      * Ссылка на должность сотрудника
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "positionId", nullable = false)
     private PositionType position;
 
     /**
      * Ссылка на магазин, где работает сотрудник
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shopId")
     private Shop shop;
 
@@ -65,4 +65,11 @@ public class Employee implements Serializable {
     @Column(name = "gender", nullable = false)
     private boolean gender;
 
+    /**
+     * Версия записи для оптимистической блокировки
+     */
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
 }
\ No newline at end of file
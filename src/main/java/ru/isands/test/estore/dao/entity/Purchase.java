@@ -10,35 +10,38 @@ import java.util.Date;
 @Getter
 @Setter
 @Entity
-@Table(name = "store_purchase")
+@Table(name = "store_purchase", indexes = {
+        @Index(name = "store_purchase_date_id_idx", columnList = "purchaseDate, id"),
+        @Index(name = "store_purchase_employee_date_idx", columnList = "employeeId, purchaseDate")
+})
 public class Purchase implements Serializable {
 
     /**
-     * Идентификатор покупки
+     * Идентификатор покупки; первичный ключ секционированной таблицы - (id, purchaseDate)
      */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Column(name = "id", unique = true, nullable = false)
+    @Column(name = "id", nullable = false)
     private Long id;
 
     /**
      * Идентификатор товара
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "elecroId", nullable = false)
     private ElectroItem electroItem;
 
     /**
      * Идентификатор сотрудника
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "employeeId", nullable = false)
     private Employee employee;
 
     /**
      * Идентификатор магазина
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "shopId", nullable = false)
     private Shop shop;
 
@@ -51,8 +54,14 @@ public class Purchase implements Serializable {
     /**
      * Способ оплаты
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "typeId", nullable = false)
     private PurchaseType purchaseType;
 
+    /**
+     * Цена товара в рублях на момент продажи; выручка в итогах считается по ней, а не по текущей цене товара
+     */
+    @Column(name = "price")
+    private Long price;
+
 }
\ No newline at end of file
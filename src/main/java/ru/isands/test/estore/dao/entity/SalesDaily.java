@@ -0,0 +1,35 @@
+package ru.isands.test.estore.dao.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "store_sales_daily", indexes = {
+        @Index(name = "store_sales_daily_employee_day_idx", columnList = "employee_id, day"),
+        @Index(name = "store_sales_daily_shop_day_idx", columnList = "shop_id, day")
+})
+public class SalesDaily implements Serializable {
+
+    /**
+     * День, магазин, сотрудник, тип товара и способ оплаты
+     */
+    @EmbeddedId
+    private SalesDailyPK id;
+
+    /**
+     * Количество проданных товаров
+     */
+    @Column(name = "count", nullable = false)
+    private long count;
+
+    /**
+     * Выручка в рублях по цене на момент продажи
+     */
+    @Column(name = "revenue", nullable = false)
+    private long revenue;
+}
@@ -0,0 +1,60 @@
+package ru.isands.test.estore.dao.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+@Getter
+@Setter
+@Embeddable
+public class SalesDailyPK implements Serializable {
+
+    @Column(name = "day", nullable = false)
+    private LocalDate day;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Column(name = "employee_id", nullable = false)
+    private Long employeeId;
+
+    @Column(name = "electro_type_id", nullable = false)
+    private Long electroTypeId;
+
+    @Column(name = "purchase_type_id", nullable = false)
+    private Long purchaseTypeId;
+
+
+    public SalesDailyPK() {
+    }
+
+    public SalesDailyPK(LocalDate day, Long shopId, Long employeeId, Long electroTypeId, Long purchaseTypeId) {
+        this.day = day;
+        this.shopId = shopId;
+        this.employeeId = employeeId;
+        this.electroTypeId = electroTypeId;
+        this.purchaseTypeId = purchaseTypeId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SalesDailyPK that = (SalesDailyPK) o;
+        return Objects.equals(day, that.day) &&
+                Objects.equals(shopId, that.shopId) &&
+                Objects.equals(employeeId, that.employeeId) &&
+                Objects.equals(electroTypeId, that.electroTypeId) &&
+                Objects.equals(purchaseTypeId, that.purchaseTypeId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(day, shopId, employeeId, electroTypeId, purchaseTypeId);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.isands.test.estore.dao.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "store_stock_ledger")
+public class StockLedgerCheckpoint implements Serializable {
+
+    /**
+     * Идентификатор журнала остатков
+     */
+    @Id
+    @Column(name = "id", unique = true, nullable = false)
+    private Integer id;
+
+    /**
+     * Номер последнего сегмента журнала, изменения которого записаны в store_eshop
+     */
+    @Column(name = "segment", nullable = false)
+    private Long segment;
+}
@@ -1,8 +1,20 @@
 package ru.isands.test.estore.dao.repo;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import ru.isands.test.estore.dao.entity.ElectroEmployee;
 import ru.isands.test.estore.dao.entity.ElectroEmployeePK;
 
+import java.util.Optional;
+
 public interface ElectroEmployeeRepository extends JpaRepository<ElectroEmployee, ElectroEmployeePK> {
+
+    @Override
+    @EntityGraph(attributePaths = {"employee", "employee.position", "employee.shop", "electroType"})
+    Page<ElectroEmployee> findAll(Pageable pageable);
+
+    @EntityGraph(attributePaths = {"employee", "employee.position", "employee.shop", "electroType"})
+    Optional<ElectroEmployee> findWithAssociationsById(ElectroEmployeePK id);
 }
@@ -0,0 +1,27 @@
+package ru.isands.test.estore.dao.repo;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запросы каталога электротоваров по фильтрам ElectroItemSpecifications
+ */
+public interface ElectroItemCatalogRepository {
+
+    /**
+     * Строки каталога, отсортированные по цене и ID, после ключа (afterPrice, afterId); ключ null для первой страницы.
+     * Из pageable используется только размер страницы
+     */
+    List<ElectroItemRowDTO> findCatalogRows(Specification<ElectroItem> spec, boolean descending,
+                                            Long afterPrice, Long afterId, Pageable pageable);
+
+    /**
+     * Количество товаров по ID типа электроники
+     */
+    Map<Long, Long> countByElectroType(Specification<ElectroItem> spec);
+}
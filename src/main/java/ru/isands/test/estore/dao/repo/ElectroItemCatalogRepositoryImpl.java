@@ -0,0 +1,74 @@
+package ru.isands.test.estore.dao.repo;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ElectroItemCatalogRepositoryImpl implements ElectroItemCatalogRepository {
+
+    private final EntityManager entityManager;
+
+    public ElectroItemCatalogRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<ElectroItemRowDTO> findCatalogRows(Specification<ElectroItem> spec, boolean descending,
+                                                   Long afterPrice, Long afterId, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ElectroItemRowDTO> query = cb.createQuery(ElectroItemRowDTO.class);
+        Root<ElectroItem> root = query.from(ElectroItem.class);
+        Path<Long> price = root.get("price");
+        Path<Long> id = root.get("id");
+        query.select(cb.construct(ElectroItemRowDTO.class, id, root.get("name"), root.get("eType").get("id"),
+                price, root.get("count"), root.get("archive")));
+
+        Predicate where = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (afterPrice != null && afterId != null) {
+            // Нестрогая граница по цене отдельным условием позволяет начать просмотр индекса с ключа курсора
+            Predicate after = descending
+                    ? cb.and(cb.lessThanOrEqualTo(price, afterPrice),
+                    cb.or(cb.lessThan(price, afterPrice), cb.lessThan(id, afterId)))
+                    : cb.and(cb.greaterThanOrEqualTo(price, afterPrice),
+                    cb.or(cb.greaterThan(price, afterPrice), cb.greaterThan(id, afterId)));
+            where = where == null ? after : cb.and(where, after);
+        }
+        if (where != null) {
+            query.where(where);
+        }
+        query.orderBy(descending ? cb.desc(price) : cb.asc(price), descending ? cb.desc(id) : cb.asc(id));
+        return entityManager.createQuery(query)
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+
+    @Override
+    public Map<Long, Long> countByElectroType(Specification<ElectroItem> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<ElectroItem> root = query.from(ElectroItem.class);
+        Expression<Long> electroTypeId = root.get("eType").get("id");
+        query.multiselect(electroTypeId, cb.count(root)).groupBy(electroTypeId).orderBy(cb.asc(electroTypeId));
+        Predicate where = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (where != null) {
+            query.where(where);
+        }
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        for (Object[] row : entityManager.createQuery(query).getResultList()) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+}
@@ -1,8 +1,68 @@
 package ru.isands.test.estore.dao.repo;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
 
-public interface ElectroItemRepository extends JpaRepository<ElectroItem, Long> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+public interface ElectroItemRepository extends JpaRepository<ElectroItem, Long>, ElectroItemCatalogRepository {
+
+    @EntityGraph(attributePaths = "eType")
+    Optional<ElectroItem> findWithAssociationsById(Long id);
+
+    @EntityGraph(attributePaths = "eType")
+    List<ElectroItem> findByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT new ru.isands.test.estore.dto.ElectroItemRowDTO(" +
+            "i.id, i.name, i.eType.id, i.price, i.count, i.archive) " +
+            "FROM ElectroItem i",
+            countQuery = "SELECT COUNT(i) FROM ElectroItem i")
+    Page<ElectroItemRowDTO> findRows(Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.ElectroItemRowDTO(" +
+            "i.id, i.name, i.eType.id, i.price, i.count, i.archive) " +
+            "FROM ElectroItem i WHERE i.id > :id ORDER BY i.id")
+    List<ElectroItemRowDTO> scrollRowsAfter(@Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.ElectroItemRowDTO(" +
+            "i.id, i.name, i.eType.id, i.price, i.count, i.archive) " +
+            "FROM ElectroItem i WHERE i.id IN :ids")
+    List<ElectroItemRowDTO> findRowsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT i.id, i.description FROM ElectroItem i WHERE i.id IN :ids")
+    List<Object[]> findDescriptions(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ElectroItem i SET i.count = i.count + :delta WHERE i.id = :id")
+    int adjustCount(@Param("id") Long id, @Param("delta") int delta);
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE store_electro_item i SET count = s.total " +
+            "FROM (SELECT i2.id, COALESCE(SUM(e.count), 0) AS total " +
+            "FROM store_electro_item i2 LEFT JOIN store_eshop e ON e.electro_item_id = i2.id " +
+            "GROUP BY i2.id) s " +
+            "WHERE i.id = s.id AND i.count <> s.total", nativeQuery = true)
+    int reconcileCounts();
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE store_electro_item i SET count = s.total " +
+            "FROM (SELECT i2.id, COALESCE(SUM(e.count), 0) AS total " +
+            "FROM store_electro_item i2 LEFT JOIN store_eshop e ON e.electro_item_id = i2.id " +
+            "WHERE i2.id IN (:ids) " +
+            "GROUP BY i2.id) s " +
+            "WHERE i.id = s.id AND i.count <> s.total", nativeQuery = true)
+    int reconcileCounts(@Param("ids") Collection<Long> ids);
 }
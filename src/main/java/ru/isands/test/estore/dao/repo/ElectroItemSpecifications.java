@@ -0,0 +1,69 @@
+package ru.isands.test.estore.dao.repo;
+
+import org.springframework.data.jpa.domain.Specification;
+import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dao.entity.ElectroShop;
+
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.util.Collection;
+
+/**
+ * Фильтры каталога электротоваров; пустое значение фильтра означает отсутствие условия.
+ * Составные индексы store_electro_item (etype_id, price, id), (price, id) и store_eshop (electro_item_id, shop_id, count)
+ * покрывают эти условия вместе с сортировкой по цене.
+ */
+public final class ElectroItemSpecifications {
+
+    private ElectroItemSpecifications() {
+    }
+
+    /**
+     * Товар одного из типов электроники
+     */
+    public static Specification<ElectroItem> hasElectroType(Collection<Long> electroTypeIds) {
+        return (root, query, cb) -> electroTypeIds == null || electroTypeIds.isEmpty()
+                ? null
+                : root.get("eType").get("id").in(electroTypeIds);
+    }
+
+    /**
+     * Цена в диапазоне, границы включаются
+     */
+    public static Specification<ElectroItem> priceBetween(Long minPrice, Long maxPrice) {
+        return (root, query, cb) -> {
+            if (minPrice != null && maxPrice != null) {
+                return cb.between(root.get("price"), minPrice, maxPrice);
+            }
+            if (minPrice != null) {
+                return cb.greaterThanOrEqualTo(root.get("price"), minPrice);
+            }
+            return maxPrice == null ? null : cb.lessThanOrEqualTo(root.get("price"), maxPrice);
+        };
+    }
+
+    /**
+     * Признак архива
+     */
+    public static Specification<ElectroItem> isArchive(Boolean archive) {
+        return (root, query, cb) -> archive == null ? null : cb.equal(root.get("archive"), archive);
+    }
+
+    /**
+     * Товар есть в наличии в магазине: подзапрос EXISTS по store_eshop, чтобы строки товара не повторялись
+     */
+    public static Specification<ElectroItem> inStockAt(Long shopId) {
+        return (root, query, cb) -> {
+            if (shopId == null) {
+                return null;
+            }
+            Subquery<Long> stock = query.subquery(Long.class);
+            Root<ElectroShop> electroShop = stock.from(ElectroShop.class);
+            stock.select(electroShop.get("electroItem").get("id"))
+                    .where(cb.equal(electroShop.get("electroItem").get("id"), root.get("id")),
+                            cb.equal(electroShop.get("shop").get("id"), shopId),
+                            cb.greaterThan(electroShop.get("count"), 0));
+            return cb.exists(stock);
+        };
+    }
+}
@@ -1,14 +1,47 @@
 package ru.isands.test.estore.dao.repo;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ru.isands.test.estore.dao.entity.ElectroShop;
 import ru.isands.test.estore.dao.entity.ElectroShopPK;
+import ru.isands.test.estore.dto.ElectroShopRowDTO;
+import ru.isands.test.estore.dto.StockCountDTO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface ElectroShopRepository extends JpaRepository<ElectroShop, ElectroShopPK> {
+    @EntityGraph(attributePaths = {"shop", "electroItem", "electroItem.eType"})
+    Optional<ElectroShop> findWithAssociationsById(ElectroShopPK id);
+
+    @Query(value = "SELECT new ru.isands.test.estore.dto.ElectroShopRowDTO(e.id.shop, e.id.electroItem, e.count) " +
+            "FROM ElectroShop e",
+            countQuery = "SELECT COUNT(e) FROM ElectroShop e")
+    Page<ElectroShopRowDTO> findRows(Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.ElectroShopRowDTO(e.id.shop, e.id.electroItem, e.count) " +
+            "FROM ElectroShop e " +
+            "ORDER BY e.id.electroItem, e.id.shop")
+    List<ElectroShopRowDTO> scrollRows(Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.ElectroShopRowDTO(e.id.shop, e.id.electroItem, e.count) " +
+            "FROM ElectroShop e " +
+            "WHERE e.id.electroItem >= :electroItemId AND (e.id.electroItem > :electroItemId OR e.id.shop > :shopId) " +
+            "ORDER BY e.id.electroItem, e.id.shop")
+    List<ElectroShopRowDTO> scrollRowsAfter(@Param("electroItemId") Long electroItemId, @Param("shopId") Long shopId, Pageable pageable);
+
     @Query("SELECT COUNT(e) > 0 " +
             "FROM ElectroShop e " +
             "WHERE e.shop.id = :shopId AND e.electroItem.id = :itemId AND e.count > 0")
     boolean isItemAvailable(@Param("shopId") Long shopId, @Param("itemId") Long itemId);
+
+    @Query("SELECT new ru.isands.test.estore.dto.StockCountDTO(e.shop.id, e.electroItem.id, e.count) " +
+            "FROM ElectroShop e " +
+            "WHERE e.shop.id IN :shopIds AND e.electroItem.id IN :itemIds")
+    List<StockCountDTO> findCounts(@Param("shopIds") Collection<Long> shopIds, @Param("itemIds") Collection<Long> itemIds);
 }
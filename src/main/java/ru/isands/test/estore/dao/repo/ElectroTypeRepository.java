@@ -1,7 +1,17 @@
 package ru.isands.test.estore.dao.repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import ru.isands.test.estore.dao.entity.ElectroType;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+
 public interface ElectroTypeRepository extends JpaRepository<ElectroType, Long> {
+
+    @Query("SELECT t.id FROM ElectroType t WHERE t.name = :name")
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    List<Long> findIdsByName(@Param("name") String name);
 }
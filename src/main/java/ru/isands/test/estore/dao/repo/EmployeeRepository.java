@@ -1,48 +1,81 @@
 package ru.isands.test.estore.dao.repo;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ru.isands.test.estore.dao.entity.Employee;
 import ru.isands.test.estore.dto.BestEmployeeDTO;
+import ru.isands.test.estore.dto.EmployeeRowDTO;
 
-import java.util.Date;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface EmployeeRepository extends JpaRepository<Employee, Long> {
 
+    @EntityGraph(attributePaths = {"position", "shop"})
+    Optional<Employee> findWithAssociationsById(Long id);
+
+    @EntityGraph(attributePaths = {"position", "shop"})
+    List<Employee> findByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT new ru.isands.test.estore.dto.EmployeeRowDTO(" +
+            "e.id, e.lastName, e.firstName, e.patronymic, e.birthDate, e.position.id, e.shop.id, e.gender) " +
+            "FROM Employee e",
+            countQuery = "SELECT COUNT(e) FROM Employee e")
+    Page<EmployeeRowDTO> findRows(Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.EmployeeRowDTO(" +
+            "e.id, e.lastName, e.firstName, e.patronymic, e.birthDate, e.position.id, e.shop.id, e.gender) " +
+            "FROM Employee e WHERE e.id > :id ORDER BY e.id")
+    List<EmployeeRowDTO> scrollRowsAfter(@Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.EmployeeRowDTO(" +
+            "e.id, e.lastName, e.firstName, e.patronymic, e.birthDate, e.position.id, e.shop.id, e.gender) " +
+            "FROM Employee e WHERE e.id IN :ids")
+    List<EmployeeRowDTO> findRowsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT e.id FROM Employee e WHERE e.position.name = :positionName")
+    List<Long> findIdsByPositionName(@Param("positionName") String positionName);
+
     @Query("SELECT new ru.isands.test.estore.dto.BestEmployeeDTO(" +
             "e.id, e.firstName, e.lastName, e.position.name, " +
-            "COUNT(p.electroItem.id) AS itemsSold, SUM(p.electroItem.price) AS totalSales) " +
-            "FROM Employee e " +
-            "JOIN Purchase p ON p.employee.id = e.id " +
-            "WHERE p.purchaseDate >= :startDate AND e.position.id = :positionId " +
+            "SUM(r.count) AS itemsSold, SUM(r.revenue) AS totalSales) " +
+            "FROM SalesDaily r " +
+            "JOIN Employee e ON e.id = r.id.employeeId " +
+            "WHERE r.id.day >= :startDay AND e.position.id = :positionId " +
             "GROUP BY e.id, e.firstName, e.lastName, e.position.name " +
-            "ORDER BY totalSales DESC")
-    List<BestEmployeeDTO> findBestEmployeesByTotalSales(@Param("startDate") Date startDate, @Param("positionId") Long positionId);
+            "ORDER BY totalSales DESC, e.id")
+    List<BestEmployeeDTO> findBestEmployeesByTotalSales(@Param("startDay") LocalDate startDay, @Param("positionId") Long positionId, Pageable pageable);
 
     @Query("SELECT new ru.isands.test.estore.dto.BestEmployeeDTO(" +
             "e.id, e.firstName, e.lastName, e.position.name, " +
-            "COUNT(p.electroItem.id) AS itemsSold, SUM(p.electroItem.price) AS totalSales) " +
-            "FROM Employee e " +
-            "JOIN Purchase p ON p.employee.id = e.id " +
-            "WHERE p.purchaseDate >= :startDate AND e.position.id = :positionId " +
+            "SUM(r.count) AS itemsSold, SUM(r.revenue) AS totalSales) " +
+            "FROM SalesDaily r " +
+            "JOIN Employee e ON e.id = r.id.employeeId " +
+            "WHERE r.id.day >= :startDay AND e.position.id = :positionId " +
             "GROUP BY e.id, e.firstName, e.lastName, e.position.name " +
-            "ORDER BY itemsSold DESC")
-    List<BestEmployeeDTO> findBestEmployeesByItemSold(@Param("startDate") Date startDate, @Param("positionId") Long positionId);
+            "ORDER BY itemsSold DESC, e.id")
+    List<BestEmployeeDTO> findBestEmployeesByItemSold(@Param("startDay") LocalDate startDay, @Param("positionId") Long positionId, Pageable pageable);
 
     @Query("SELECT new ru.isands.test.estore.dto.BestEmployeeDTO(" +
             "e.id, e.firstName, e.lastName, e.position.name, " +
-            "COUNT(p.electroItem.id) AS itemsSold, " +
-            "SUM(p.electroItem.price) AS totalSales) " +
-            "FROM Employee e " +
-            "JOIN Purchase p ON p.employee.id = e.id " +
-            "WHERE e.position.name = :empoyeePosition AND p.electroItem.eType.name = :electoItem " +
+            "SUM(r.count) AS itemsSold, " +
+            "SUM(r.revenue) AS totalSales) " +
+            "FROM SalesDaily r " +
+            "JOIN Employee e ON e.id = r.id.employeeId " +
+            "JOIN ElectroType t ON t.id = r.id.electroTypeId " +
+            "WHERE e.position.name = :empoyeePosition AND t.name = :electoItem " +
             "GROUP BY e.id, e.firstName, e.lastName, e.position.name " +
-            "ORDER BY itemsSold DESC")
+            "ORDER BY itemsSold DESC, e.id")
     List<BestEmployeeDTO> findBestJuniorConsultantBySmartWatches(
             @Param("empoyeePosition") String empoyeePosition,
-            @Param("electoItem") String electoItem);
+            @Param("electoItem") String electoItem,
+            Pageable pageable);
 
 
 }
\ No newline at end of file
@@ -1,8 +1,43 @@
 package ru.isands.test.estore.dao.repo;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.dto.PurchaseRowDTO;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
 
 public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
 
+    @EntityGraph(attributePaths = {"electroItem", "electroItem.eType", "employee", "employee.position", "employee.shop", "shop", "purchaseType"})
+    Optional<Purchase> findWithAssociationsById(Long id);
+
+    @EntityGraph(attributePaths = {"electroItem", "electroItem.eType", "employee", "employee.position", "employee.shop", "shop", "purchaseType"})
+    List<Purchase> findByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT new ru.isands.test.estore.dto.PurchaseRowDTO(" +
+            "p.id, p.electroItem.id, p.employee.id, p.shop.id, p.purchaseType.id, p.purchaseDate) " +
+            "FROM Purchase p",
+            countQuery = "SELECT COUNT(p) FROM Purchase p")
+    Page<PurchaseRowDTO> findRows(Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.PurchaseRowDTO(" +
+            "p.id, p.electroItem.id, p.employee.id, p.shop.id, p.purchaseType.id, p.purchaseDate) " +
+            "FROM Purchase p " +
+            "ORDER BY p.purchaseDate DESC, p.id DESC")
+    List<PurchaseRowDTO> scrollRows(Pageable pageable);
+
+    @Query("SELECT new ru.isands.test.estore.dto.PurchaseRowDTO(" +
+            "p.id, p.electroItem.id, p.employee.id, p.shop.id, p.purchaseType.id, p.purchaseDate) " +
+            "FROM Purchase p " +
+            "WHERE p.purchaseDate <= :purchaseDate AND (p.purchaseDate < :purchaseDate OR p.id < :id) " +
+            "ORDER BY p.purchaseDate DESC, p.id DESC")
+    List<PurchaseRowDTO> scrollRowsAfter(@Param("purchaseDate") Date purchaseDate, @Param("id") Long id, Pageable pageable);
 }
@@ -11,10 +11,11 @@ import java.util.List;
 public interface ShopRepository extends JpaRepository<Shop, Long> {
 
     @Query("SELECT new ru.isands.test.estore.dto.ShopDto(" +
-            "s.id, s.name, s.address, p.purchaseType.name, SUM(p.electroItem.price)) " +
-            "FROM Shop s " +
-            "JOIN Purchase p ON p.shop.id = s.id " +
-            "WHERE s.id = :id AND p.purchaseType.name = :purchaseType " +
-            "GROUP BY s.id, s.name, s.address, p.purchaseType.name")
+            "s.id, s.name, s.address, t.name, SUM(r.revenue)) " +
+            "FROM SalesDaily r " +
+            "JOIN Shop s ON s.id = r.id.shopId " +
+            "JOIN PurchaseType t ON t.id = r.id.purchaseTypeId " +
+            "WHERE s.id = :id AND t.name = :purchaseType " +
+            "GROUP BY s.id, s.name, s.address, t.name")
     List<ShopDto> findShopsByPurchaseType(@Param("id") Long id, @Param("purchaseType") String purchaseType);
 }
@@ -0,0 +1,7 @@
+package ru.isands.test.estore.dao.repo;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.isands.test.estore.dao.entity.StockLedgerCheckpoint;
+
+public interface StockLedgerCheckpointRepository extends JpaRepository<StockLedgerCheckpoint, Integer> {
+}
@@ -0,0 +1,41 @@
+package ru.isands.test.estore.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Соединения транзакций только для чтения берутся из реплики, пока она доступна и чтение не закреплено
+ * за основной БД через ReadRouting, остальные - из основной БД.
+ * Используется через LazyConnectionDataSourceProxy: соединение запрашивается при первом запросе,
+ * когда признак readOnly текущей транзакции уже установлен.
+ */
+class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    ReadReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Route.PRIMARY, primary);
+        targets.put(Route.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadRouting.isPrimaryForced()
+                && replicaLagMonitor.isAvailable()
+                ? Route.REPLICA
+                : Route.PRIMARY;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.isands.test.estore.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Принудительное чтение с основной БД для кода, которому нельзя видеть отставание реплики: перестроения снимков
+ * в памяти, которые потом дополняются покупками после фиксации, заполнение кэша аналитики и выгрузки, читающие
+ * один снимок из нескольких соединений. Действует в текущем потоке на соединения, полученные внутри вызова;
+ * без настроенной реплики ничего не меняет.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Integer> PRIMARY_DEPTH = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Выполнить действие, направляя транзакции только для чтения на основную БД
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Integer depth = PRIMARY_DEPTH.get();
+        PRIMARY_DEPTH.set(depth == null ? 1 : depth + 1);
+        try {
+            return action.get();
+        } finally {
+            if (depth == null) {
+                PRIMARY_DEPTH.remove();
+            } else {
+                PRIMARY_DEPTH.set(depth);
+            }
+        }
+    }
+
+    /**
+     * Выполнить действие без результата, направляя транзакции только для чтения на основную БД
+     */
+    public static void runOnPrimary(Runnable action) {
+        onPrimary(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    static boolean isPrimaryForced() {
+        return PRIMARY_DEPTH.get() != null;
+    }
+}
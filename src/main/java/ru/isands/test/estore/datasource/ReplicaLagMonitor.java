@@ -0,0 +1,89 @@
+package ru.isands.test.estore.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Периодическая проверка реплики: доступна ли она и насколько отстает от основной БД.
+ * Реплика, которая не отвечает или отстает больше maxLagMs, не используется до следующей успешной проверки.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    /**
+     * Отставание в секундах: 0, если БД не в режиме восстановления (не standby) или весь полученный WAL уже применен,
+     * иначе время с последней примененной транзакции
+     */
+    private static final String LAG_SQL = "SELECT CASE " +
+            "WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long maxLagMs;
+
+    private volatile boolean available;
+    private volatile long lagMs = -1;
+
+    /**
+     * @param maxLagMs допустимое отставание; 0 или меньше - отставание не ограничено, проверяется только доступность
+     */
+    public ReplicaLagMonitor(DataSource replicaDataSource, long maxLagMs, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.jdbcTemplate.setQueryTimeout(1);
+        this.maxLagMs = maxLagMs;
+        Gauge.builder("estore.replica.lag", this, monitor -> monitor.lagMs)
+                .description("Отставание реплики в миллисекундах, -1 если реплика недоступна")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("estore.replica.available", this, monitor -> monitor.available ? 1 : 0)
+                .description("Используется ли реплика для транзакций только для чтения")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Можно ли сейчас направлять чтение на реплику
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Scheduled(fixedDelayString = "${replica.lag.check.ms: 1000}")
+    public void check() {
+        try {
+            Double lag = jdbcTemplate.queryForObject(LAG_SQL, Double.class);
+            update(lag == null ? 0 : Math.round(lag * 1000), null);
+        } catch (DataAccessException e) {
+            update(-1, e.getMessage());
+        }
+    }
+
+    /**
+     * Учесть результат проверки
+     *
+     * @param lagMs отставание или -1, если реплика не ответила
+     * @param error причина, по которой реплика не ответила
+     */
+    void update(long lagMs, String error) {
+        boolean wasAvailable = available;
+        this.lagMs = lagMs;
+        available = lagMs >= 0 && (maxLagMs <= 0 || lagMs <= maxLagMs);
+        if (wasAvailable && !available) {
+            if (lagMs < 0) {
+                log.warn("Реплика недоступна, чтение переключено на основную БД: {}", error);
+            } else {
+                log.warn("Реплика отстает на {} мс при допустимых {} мс, чтение переключено на основную БД", lagMs, maxLagMs);
+            }
+        }
+        if (!wasAvailable && available) {
+            log.info("Чтение в транзакциях только для чтения направляется на реплику, отставание {} мс", lagMs);
+        }
+    }
+}
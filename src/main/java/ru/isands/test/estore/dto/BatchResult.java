@@ -0,0 +1,21 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Объекты по списку ID в порядке запроса; missingIds - ID, для которых объект не найден
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResult<T> {
+
+    private List<T> content;
+    private List<Long> missingIds;
+}
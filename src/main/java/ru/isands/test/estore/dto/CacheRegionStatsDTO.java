@@ -0,0 +1,19 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheRegionStatsDTO {
+
+    private String region;
+    private Long hitCount;
+    private Long missCount;
+    private Long putCount;
+    private Long elementCount;
+}
@@ -0,0 +1,26 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CubeResultDTO {
+
+    /**
+     * Измерения группировки в порядке значений строк
+     */
+    private List<String> groupBy;
+
+    /**
+     * Кубоид, по которому получен ответ, daily при запросе к дневным итогам store_sales_daily или purchases при запросе к store_purchase
+     */
+    private String source;
+    private List<CubeRowDTO> rows;
+}
@@ -0,0 +1,22 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CubeRowDTO {
+
+    /**
+     * Значения измерений группировки: ID, день yyyy-MM-dd или месяц yyyy-MM
+     */
+    private List<Object> keys;
+    private Long itemsSold;
+    private Long totalSales;
+}
@@ -0,0 +1,24 @@
+package ru.isands.test.estore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Страница каталога по курсору; facets считаются только для первой страницы, без учета фильтра по типу
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ElectroItemCatalogDTO {
+
+    private CursorPage<ElectroItemRowDTO> items;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<ElectroTypeFacetDTO> facets;
+}
@@ -0,0 +1,41 @@
+package ru.isands.test.estore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.isands.test.estore.dao.entity.ElectroType;
+
+/**
+ * Электротовар в списке; тип и описание добавляются по expand=electroType,description
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ElectroItemRowDTO {
+
+    private Long id;
+    private String name;
+    @JsonProperty("eTypeId")
+    private Long eTypeId;
+    private Long price;
+    private Integer count;
+    private boolean archive;
+
+    @JsonProperty("eType")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ElectroType eType;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String description;
+
+    public ElectroItemRowDTO(Long id, String name, Long eTypeId, Long price, Integer count, boolean archive) {
+        this.id = id;
+        this.name = name;
+        this.eTypeId = eTypeId;
+        this.price = price;
+        this.count = count;
+        this.archive = archive;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.isands.test.estore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.isands.test.estore.dao.entity.Shop;
+
+/**
+ * Остаток товара в магазине в списке; магазин и товар добавляются по expand=shop,electroItem
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ElectroShopRowDTO {
+
+    private Long shopId;
+    private Long electroItemId;
+    private Integer count;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Shop shop;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ElectroItemRowDTO electroItem;
+
+    public ElectroShopRowDTO(Long shopId, Long electroItemId, Integer count) {
+        this.shopId = shopId;
+        this.electroItemId = electroItemId;
+        this.count = count;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Количество товаров каталога одного типа электроники
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ElectroTypeFacetDTO {
+
+    private Long electroTypeId;
+    private String name;
+    private long count;
+}
@@ -0,0 +1,45 @@
+package ru.isands.test.estore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.isands.test.estore.dao.entity.PositionType;
+import ru.isands.test.estore.dao.entity.Shop;
+
+import java.util.Date;
+
+/**
+ * Сотрудник в списке; должность и магазин добавляются по expand=position,shop
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class EmployeeRowDTO {
+
+    private Long id;
+    private String lastName;
+    private String firstName;
+    private String patronymic;
+    private Date birthDate;
+    private Long positionId;
+    private Long shopId;
+    private boolean gender;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private PositionType position;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Shop shop;
+
+    public EmployeeRowDTO(Long id, String lastName, String firstName, String patronymic, Date birthDate, Long positionId, Long shopId, boolean gender) {
+        this.id = id;
+        this.lastName = lastName;
+        this.firstName = firstName;
+        this.patronymic = patronymic;
+        this.birthDate = birthDate;
+        this.positionId = positionId;
+        this.shopId = shopId;
+        this.gender = gender;
+    }
+}
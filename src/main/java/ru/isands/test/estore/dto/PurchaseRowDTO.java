@@ -0,0 +1,47 @@
+package ru.isands.test.estore.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.isands.test.estore.dao.entity.PurchaseType;
+import ru.isands.test.estore.dao.entity.Shop;
+
+import java.util.Date;
+
+/**
+ * Покупка в списке; связанные объекты добавляются по expand=electroItem,employee,shop,purchaseType
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class PurchaseRowDTO {
+
+    private Long id;
+    private Long electroItemId;
+    private Long employeeId;
+    private Long shopId;
+    private Long purchaseTypeId;
+    private Date purchaseDate;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ElectroItemRowDTO electroItem;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private EmployeeRowDTO employee;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Shop shop;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private PurchaseType purchaseType;
+
+    public PurchaseRowDTO(Long id, Long electroItemId, Long employeeId, Long shopId, Long purchaseTypeId, Date purchaseDate) {
+        this.id = id;
+        this.electroItemId = electroItemId;
+        this.employeeId = employeeId;
+        this.shopId = shopId;
+        this.purchaseTypeId = purchaseTypeId;
+        this.purchaseDate = purchaseDate;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesPeriodDTO {
+
+    /**
+     * Первый день периода: день, понедельник недели или первое число месяца
+     */
+    private LocalDate period;
+
+    /**
+     * ID сотрудника или магазина
+     */
+    private Long id;
+    private Long itemsSold;
+    private Long totalSales;
+}
@@ -0,0 +1,21 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesWindowDTO {
+
+    private Long shopId;
+    private Long electroTypeId;
+    private int minutes;
+    private long itemsSold;
+    private long totalSales;
+    private double itemsPerMinute;
+    private double salesPerMinute;
+}
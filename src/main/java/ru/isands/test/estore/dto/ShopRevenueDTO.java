@@ -0,0 +1,21 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ShopRevenueDTO {
+
+    private Long shopId;
+    private String shopName;
+    private String shopAddress;
+    private Long purchaseTypeId;
+    private String purchaseType;
+    private Long itemsSold;
+    private Long totalSales;
+}
@@ -0,0 +1,17 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockCountDTO {
+
+    private Long shopId;
+    private Long electroItemId;
+    private Integer count;
+}
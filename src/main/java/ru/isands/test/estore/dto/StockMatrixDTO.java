@@ -0,0 +1,22 @@
+package ru.isands.test.estore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Остатки товаров в магазинах: counts[i][j] - остаток товара itemIds[j] в магазине shopIds[i]
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockMatrixDTO {
+
+    private List<Long> shopIds;
+    private List<Long> itemIds;
+    private int[][] counts;
+}
@@ -0,0 +1,7 @@
+package ru.isands.test.estore.exeption;
+
+public class RequestLimitExceededException extends RuntimeException {
+    public RequestLimitExceededException(String message) {
+        super(message);
+    }
+}
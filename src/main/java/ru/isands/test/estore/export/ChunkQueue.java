@@ -0,0 +1,103 @@
+package ru.isands.test.estore.export;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Ограниченная очередь блоков байтов от одного писателя к одному читателю.
+ * Писатель блокируется, когда очередь заполнена, поэтому память на таблицу не превышает capacity блоков.
+ */
+class ChunkQueue {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks;
+    private final int chunkSize;
+    private volatile Throwable failure;
+
+    ChunkQueue(int capacity, int chunkSize) {
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Поток писателя; close() передает остаток буфера и признак конца
+     */
+    OutputStream output() {
+        return new OutputStream() {
+            private byte[] buffer = new byte[chunkSize];
+            private int size;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (size == buffer.length) {
+                    flushChunk();
+                }
+                buffer[size++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                while (length > 0) {
+                    if (size == buffer.length) {
+                        flushChunk();
+                    }
+                    int count = Math.min(length, buffer.length - size);
+                    System.arraycopy(bytes, offset, buffer, size, count);
+                    size += count;
+                    offset += count;
+                    length -= count;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (size > 0) {
+                    flushChunk();
+                }
+                put(END);
+            }
+
+            private void flushChunk() throws IOException {
+                byte[] chunk = size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+                put(chunk);
+                buffer = new byte[chunkSize];
+                size = 0;
+            }
+        };
+    }
+
+    /**
+     * Завершить очередь с ошибкой писателя
+     */
+    void fail(Throwable e) throws InterruptedException {
+        failure = e;
+        chunks.put(END);
+    }
+
+    /**
+     * Переписать блоки в out до признака конца
+     */
+    void drainTo(OutputStream out) throws IOException, InterruptedException {
+        byte[] chunk;
+        while ((chunk = chunks.take()) != END) {
+            out.write(chunk);
+        }
+        if (failure != null) {
+            throw new IOException("Ошибка выгрузки таблицы", failure);
+        }
+    }
+
+    private void put(byte[] chunk) throws IOException {
+        try {
+            chunks.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Выгрузка таблицы прервана");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.isands.test.estore.export;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVWriter;
+import ru.isands.test.estore.util.CsvRows;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Строки в формате импорта: разделитель ";", кавычки только при необходимости, экранирование из CsvRows.parser(),
+ * которым читают файлы импорта, даты dd.MM.yyyy и dd.MM.yyyy HH:mm
+ */
+class CsvRowWriter implements RowWriter {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+
+    private final List<ExportTable.Column> columns;
+    private final CSVWriter csvWriter;
+    private final String[] values;
+
+    CsvRowWriter(List<ExportTable.Column> columns, OutputStream out, Charset charset) {
+        CSVParser parser = CsvRows.parser();
+        this.columns = columns;
+        this.csvWriter = new CSVWriter(new BufferedWriter(new OutputStreamWriter(out, charset), 1 << 16), parser.getSeparator(),
+                parser.getQuotechar(), parser.getEscape(), CSVWriter.DEFAULT_LINE_END);
+        this.values = new String[columns.size()];
+    }
+
+    @Override
+    public void header() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).name();
+        }
+        csvWriter.writeNext(values, false);
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value(rs, i + 1, columns.get(i).type());
+        }
+        csvWriter.writeNext(values, false);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        csvWriter.flush();
+    }
+
+    private static String value(ResultSet rs, int index, ExportTable.Column.Type type) throws SQLException {
+        switch (type) {
+            case DATE:
+                Date date = rs.getDate(index);
+                return date == null ? "" : date.toLocalDate().format(DATE);
+            case TIMESTAMP:
+                Timestamp timestamp = rs.getTimestamp(index);
+                return timestamp == null ? "" : timestamp.toLocalDateTime().format(TIMESTAMP);
+            case BOOLEAN:
+                boolean value = rs.getBoolean(index);
+                return rs.wasNull() ? "" : String.valueOf(value);
+            default:
+                String text = rs.getString(index);
+                return text == null ? "" : text;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.isands.test.estore.export;
+
+import java.util.Arrays;
+
+/**
+ * Формат выгрузки таблицы
+ */
+public enum ExportFormat {
+    /**
+     * .csv с разделителем ";" и строкой заголовка, как у файлов импорта
+     */
+    CSV("csv", "text/csv"),
+    /**
+     * Объект JSON на строку, UTF-8
+     */
+    NDJSON("ndjson", "application/x-ndjson");
+
+    private final String extension;
+    private final String mediaType;
+
+    ExportFormat(String extension, String mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Формат по имени без учета регистра
+     */
+    public static ExportFormat of(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name.trim())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный формат: " + name + ", допустимые: " + Arrays.toString(values()));
+    }
+}
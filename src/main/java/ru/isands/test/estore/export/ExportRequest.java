@@ -0,0 +1,51 @@
+package ru.isands.test.estore.export;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Проверенные параметры выгрузки: таблица, формат, кодировка .csv и запрос с фильтром диапазона
+ */
+public class ExportRequest {
+
+    private final ExportTable table;
+    private final ExportFormat format;
+    private final Charset charset;
+    private final String sql;
+    private final Map<String, Object> params;
+
+    ExportRequest(ExportTable table, ExportFormat format, Charset charset, String sql, Map<String, Object> params) {
+        this.table = table;
+        this.format = format;
+        this.charset = charset;
+        this.sql = sql;
+        this.params = params;
+    }
+
+    public ExportTable table() {
+        return table;
+    }
+
+    public ExportFormat format() {
+        return format;
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * Имя файла выгрузки: имя файла импорта с расширением формата
+     */
+    public String fileName() {
+        return table.fileName() + "." + format.extension();
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    Map<String, Object> params() {
+        return params;
+    }
+}
@@ -0,0 +1,147 @@
+package ru.isands.test.estore.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Потоковая выгрузка таблиц в .csv формата импорта или NDJSON.
+ * Строки читаются курсором JDBC с fetch size в транзакции только для чтения и сразу пишутся в поток,
+ * поэтому память не зависит от размера таблицы.
+ */
+@Service
+public class ExportService {
+
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JsonFactory jsonFactory;
+
+    @Autowired
+    public ExportService(DataSource dataSource, PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(10_000);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Проверить параметры выгрузки до начала ответа
+     *
+     * @param fromId   нижняя граница ID первой колонки включительно
+     * @param toId     верхняя граница ID первой колонки включительно
+     * @param from     первый день для таблиц с датой
+     * @param to       последний день для таблиц с датой
+     * @param encoding кодировка .csv; NDJSON всегда в UTF-8
+     */
+    public ExportRequest prepare(String table, String format, String encoding, Long fromId, Long toId, LocalDate from, LocalDate to) {
+        ExportTable exportTable;
+        ExportFormat exportFormat;
+        Charset charset;
+        try {
+            exportTable = ExportTable.of(table);
+            exportFormat = ExportFormat.of(format);
+            charset = exportFormat == ExportFormat.NDJSON ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new RequestLimitExceededException(e.getMessage());
+        }
+        if (fromId != null && toId != null && fromId > toId) {
+            throw new RequestLimitExceededException("Недопустимый диапазон ID: fromId = " + fromId + " больше toId = " + toId);
+        }
+        if ((from != null || to != null) && exportTable.dateColumn() == null) {
+            throw new RequestLimitExceededException("Таблица " + exportTable.fileName() + " не поддерживает фильтр по датам");
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new RequestLimitExceededException("Недопустимый период: from = " + from + " позже to = " + to);
+        }
+
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        if (fromId != null) {
+            conditions.add(exportTable.keyColumn() + " >= :fromId");
+            params.put("fromId", fromId);
+        }
+        if (toId != null) {
+            conditions.add(exportTable.keyColumn() + " <= :toId");
+            params.put("toId", toId);
+        }
+        if (from != null) {
+            conditions.add(exportTable.dateColumn() + " >= :from");
+            params.put("from", Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            conditions.add(exportTable.dateColumn() + " < :to");
+            params.put("to", Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        String sql = conditions.isEmpty() ? exportTable.sql() : exportTable.sql() + " WHERE " + String.join(" AND ", conditions);
+        return new ExportRequest(exportTable, exportFormat, charset, sql, params);
+    }
+
+    /**
+     * Записать строки таблицы в поток; поток не закрывается
+     *
+     * @return количество записанных строк
+     */
+    public long write(ExportRequest request, OutputStream out) throws IOException {
+        long[] rows = new long[1];
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try {
+                    rows[0] = writeRows(request, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    /**
+     * Записать строки таблицы в поток в текущей транзакции
+     */
+    long writeRows(ExportRequest request, OutputStream out) throws IOException {
+        List<ExportTable.Column> columns = request.table().columns();
+        RowWriter writer = request.format() == ExportFormat.NDJSON
+                ? new NdjsonRowWriter(columns, out, jsonFactory)
+                : new CsvRowWriter(columns, out, request.charset());
+        writer.header();
+        long[] rows = new long[1];
+        try {
+            streamingJdbcTemplate.query(request.sql(), request.params(), (RowCallbackHandler) rs -> {
+                try {
+                    writer.row(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        return rows[0];
+    }
+}
@@ -0,0 +1,137 @@
+package ru.isands.test.estore.export;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Таблица выгрузки: запрос SQL и колонки в порядке .csv, который читает импорт соответствующей сущности.
+ * Имя таблицы совпадает с именем файла импорта без расширения.
+ */
+public enum ExportTable {
+    ELECTRO_TYPE("ElectroType", "SELECT id, name FROM store_electro_type", "id", null,
+            Column.number("id"), Column.text("name")),
+    POSITION_TYPE("PositionType", "SELECT id, name FROM employee_position", "id", null,
+            Column.number("id"), Column.text("name")),
+    PURCHASE_TYPE("PurchaseType", "SELECT id, name FROM store_purchase_type", "id", null,
+            Column.number("id"), Column.text("name")),
+    SHOP("Shop", "SELECT id, name, address FROM store_shop", "id", null,
+            Column.number("id"), Column.text("name"), Column.text("address")),
+    ELECTRO_ITEM("ElectroItem", "SELECT id, name, etype_id, price, count, archive, description FROM store_electro_item", "id", null,
+            Column.number("id"), Column.text("name"), Column.number("electroTypeId"), Column.number("price"),
+            Column.number("count"), Column.bool("archive"), Column.text("description")),
+    EMPLOYEE("Employee", "SELECT id_, lastname, firstname, patronymic, birth_date, position_id, shop_id, gender FROM employee", "id_", null,
+            Column.number("id"), Column.text("lastName"), Column.text("firstName"), Column.text("patronymic"),
+            Column.date("birthDate"), Column.number("positionId"), Column.number("shopId"), Column.bool("gender")),
+    PURCHASE("Purchase", "SELECT id, elecro_id, employee_id, purchase_date, type_id, shop_id, price FROM store_purchase", "id", "purchase_date",
+            Column.number("id"), Column.number("electroItemId"), Column.number("employeeId"), Column.timestamp("purchaseDate"),
+            Column.number("purchaseTypeId"), Column.number("shopId"), Column.number("price")),
+    ELECTRO_EMPLOYEE("ElectroEmployee", "SELECT employee_id, electro_type_id FROM store_electro_employee", "employee_id", null,
+            Column.number("employeeId"), Column.number("electroTypeId")),
+    ELECTRO_SHOP("ElectroShop", "SELECT shop_id, electro_item_id, count FROM store_eshop", "shop_id", null,
+            Column.number("shopId"), Column.number("electroItemId"), Column.number("count"));
+
+    private final String fileName;
+    private final String sql;
+    private final String keyColumn;
+    private final String dateColumn;
+    private final List<Column> columns;
+
+    ExportTable(String fileName, String sql, String keyColumn, String dateColumn, Column... columns) {
+        this.fileName = fileName;
+        this.sql = sql;
+        this.keyColumn = keyColumn;
+        this.dateColumn = dateColumn;
+        this.columns = Arrays.asList(columns);
+    }
+
+    /**
+     * Имя файла импорта без расширения
+     */
+    public String fileName() {
+        return fileName;
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    /**
+     * Колонка первого поля, по которой фильтруется диапазон ID
+     */
+    public String keyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * Колонка даты для фильтра по датам; null, если таблица его не поддерживает
+     */
+    public String dateColumn() {
+        return dateColumn;
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    /**
+     * Таблица по имени файла импорта или имени константы без учета регистра и подчеркиваний: electroShop, ELECTRO_SHOP
+     */
+    public static ExportTable of(String name) {
+        String normalized = name.trim().replace("_", "");
+        for (ExportTable table : values()) {
+            if (table.fileName.equalsIgnoreCase(normalized)) {
+                return table;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестная таблица: " + name + ", допустимые: " + Arrays.toString(values()));
+    }
+
+    /**
+     * Колонка выгрузки: имя поля в NDJSON и заголовке .csv и тип значения в ResultSet
+     */
+    public static final class Column {
+
+        /**
+         * Тип значения колонки
+         */
+        public enum Type {
+            NUMBER, TEXT, BOOLEAN, DATE, TIMESTAMP
+        }
+
+        private final String name;
+        private final Type type;
+
+        private Column(String name, Type type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        static Column number(String name) {
+            return new Column(name, Type.NUMBER);
+        }
+
+        static Column text(String name) {
+            return new Column(name, Type.TEXT);
+        }
+
+        static Column bool(String name) {
+            return new Column(name, Type.BOOLEAN);
+        }
+
+        static Column date(String name) {
+            return new Column(name, Type.DATE);
+        }
+
+        static Column timestamp(String name) {
+            return new Column(name, Type.TIMESTAMP);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public Type type() {
+            return type;
+        }
+    }
+}
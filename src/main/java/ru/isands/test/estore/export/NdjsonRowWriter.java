@@ -0,0 +1,81 @@
+package ru.isands.test.estore.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Объект JSON на строку в UTF-8, даты в ISO-8601, пустые значения как null
+ */
+class NdjsonRowWriter implements RowWriter {
+
+    private final List<ExportTable.Column> columns;
+    private final JsonGenerator generator;
+
+    NdjsonRowWriter(List<ExportTable.Column> columns, OutputStream out, JsonFactory jsonFactory) throws IOException {
+        this.columns = columns;
+        this.generator = jsonFactory.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .setRootValueSeparator(null);
+    }
+
+    @Override
+    public void header() {
+    }
+
+    @Override
+    public void row(ResultSet rs) throws SQLException, IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < columns.size(); i++) {
+            ExportTable.Column column = columns.get(i);
+            generator.writeFieldName(column.name());
+            write(rs, i + 1, column.type());
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        generator.flush();
+    }
+
+    private void write(ResultSet rs, int index, ExportTable.Column.Type type) throws SQLException, IOException {
+        switch (type) {
+            case NUMBER:
+                long number = rs.getLong(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(number);
+                }
+                break;
+            case BOOLEAN:
+                boolean value = rs.getBoolean(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeBoolean(value);
+                }
+                break;
+            case DATE:
+                Date date = rs.getDate(index);
+                generator.writeString(date == null ? null : date.toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE));
+                break;
+            case TIMESTAMP:
+                Timestamp timestamp = rs.getTimestamp(index);
+                generator.writeString(timestamp == null ? null : timestamp.toLocalDateTime().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                break;
+            default:
+                generator.writeString(rs.getString(index));
+        }
+    }
+}
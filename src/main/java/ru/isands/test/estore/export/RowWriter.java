@@ -0,0 +1,18 @@
+package ru.isands.test.estore.export;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Запись строк ResultSet в поток выгрузки. finish() сбрасывает буферы, но не закрывает поток:
+ * он может принадлежать ответу или элементу архива
+ */
+interface RowWriter {
+
+    void header() throws IOException;
+
+    void row(ResultSet rs) throws SQLException, IOException;
+
+    void finish() throws IOException;
+}
@@ -0,0 +1,154 @@
+package ru.isands.test.estore.export;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.isands.test.estore.datasource.ReadRouting;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Архив .zip со всеми таблицами в .csv, который принимает импорт без изменений.
+ * Таблицы читаются параллельно из одного снимка БД (pg_export_snapshot), поэтому ссылки между файлами согласованы.
+ * Снимок экспортируется и импортируется на основной БД: при настроенной реплике соединения потоков
+ * иначе могли бы попасть на разные серверы, где снимок другого сервера не существует.
+ * Каждая таблица пишется в свою ограниченную очередь блоков, поток ответа переписывает очереди в элементы архива по порядку.
+ */
+@Service
+public class ZipExportService {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ExportService exportService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+
+    @Value("${zip.export.threads: 4}")
+    private int threads;
+
+    @Value("${zip.export.queue.chunks: 16}")
+    private int queueChunks;
+
+    @Value("${zip.export.compression.level: 1}")
+    private int compressionLevel;
+
+    @Autowired
+    public ZipExportService(ExportService exportService, DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.exportService = exportService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Проверить кодировку до начала ответа и подготовить выгрузку всех таблиц в .csv
+     */
+    public List<ExportRequest> prepare(String encoding) {
+        List<ExportRequest> requests = new ArrayList<>();
+        for (ExportTable table : ExportTable.values()) {
+            requests.add(exportService.prepare(table.fileName(), ExportFormat.CSV.name(), encoding, null, null, null, null));
+        }
+        return requests;
+    }
+
+    /**
+     * Записать архив в поток
+     */
+    public void write(List<ExportRequest> requests, OutputStream out) throws IOException {
+        CompletableFuture<String> snapshot = new CompletableFuture<>();
+        CountDownLatch imported = new CountDownLatch(requests.size());
+        List<ChunkQueue> queues = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, requests.size())) + 1);
+        try {
+            pool.submit(() -> holdSnapshot(snapshot, imported));
+            for (ExportRequest request : requests) {
+                ChunkQueue queue = new ChunkQueue(queueChunks, CHUNK_SIZE);
+                queues.add(queue);
+                pool.submit(() -> exportTable(request, queue, snapshot, imported));
+            }
+
+            ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, CHUNK_SIZE));
+            zip.setLevel(compressionLevel);
+            for (int i = 0; i < requests.size(); i++) {
+                zip.putNextEntry(new ZipEntry(requests.get(i).fileName()));
+                queues.get(i).drainTo(zip);
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Выгрузка архива прервана");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Открыть транзакцию, экспортировать ее снимок и держать ее, пока все таблицы не начнут чтение из снимка
+     */
+    private void holdSnapshot(CompletableFuture<String> snapshot, CountDownLatch imported) {
+        try {
+            ReadRouting.runOnPrimary(() -> snapshotTransaction.executeWithoutResult(status -> {
+                snapshot.complete(jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class));
+                try {
+                    imported.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        } catch (RuntimeException e) {
+            snapshot.completeExceptionally(e);
+        }
+    }
+
+    private void exportTable(ExportRequest request, ChunkQueue queue, CompletableFuture<String> snapshot, CountDownLatch imported) {
+        boolean[] counted = new boolean[1];
+        try {
+            String snapshotId = snapshot.get();
+            ReadRouting.runOnPrimary(() -> snapshotTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET TRANSACTION SNAPSHOT '" + snapshotId.replace("'", "''") + "'");
+                imported.countDown();
+                counted[0] = true;
+                try {
+                    OutputStream output = queue.output();
+                    exportService.writeRows(request, output);
+                    output.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RuntimeException e) {
+            try {
+                queue.fail(e instanceof ExecutionException ? e.getCause() : e);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            if (!counted[0]) {
+                imported.countDown();
+            }
+        }
+    }
+}
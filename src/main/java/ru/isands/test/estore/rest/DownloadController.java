@@ -0,0 +1,42 @@
+package ru.isands.test.estore.rest;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.isands.test.estore.export.ExportRequest;
+import ru.isands.test.estore.export.ZipExportService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/estore/api/download")
+public class DownloadController {
+    private final ZipExportService zipExportService;
+
+    @Autowired
+    public DownloadController(ZipExportService zipExportService) {
+        this.zipExportService = zipExportService;
+    }
+
+    @GetMapping("/zip")
+    @Operation(summary = "Выгрузить все таблицы в zip архив для импорта", responses = {
+            @ApiResponse(description = "Zip архив с файлами .csv всех таблиц из одного снимка БД", responseCode = "200"),
+            @ApiResponse(description = "Неподдерживаемая кодировка", responseCode = "400")
+    })
+    public ResponseEntity<StreamingResponseBody> downloadZip(@RequestParam(value = "encoding", defaultValue = "Windows-1251") String encoding) {
+        List<ExportRequest> requests = zipExportService.prepare(encoding);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("estore.zip").build().toString())
+                .body(out -> zipExportService.write(requests, out));
+    }
+}
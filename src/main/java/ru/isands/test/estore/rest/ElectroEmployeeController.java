@@ -49,7 +49,7 @@ public class ElectroEmployeeController {
     })
     public ResponseEntity<ElectroEmployee> getElectroEmployeeById(@PathVariable Long employeeId, @PathVariable Long electroTypeId) {
         ElectroEmployeePK id = new ElectroEmployeePK(employeeId, electroTypeId);
-        ElectroEmployee electroEmployee = electroEmployeeService.getElectroEmployeeById(id);
+        ElectroEmployee electroEmployee = electroEmployeeService.getElectroEmployeeWithAssociationsById(id);
         return electroEmployee != null ? ResponseEntity.ok(electroEmployee) : ResponseEntity.notFound().build();
     }
 
@@ -10,10 +10,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dto.BatchResult;
+import ru.isands.test.estore.dto.CursorPage;
+import ru.isands.test.estore.dto.ElectroItemCatalogDTO;
 import ru.isands.test.estore.dto.ElectroItemDTO;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
 import ru.isands.test.estore.service.ElectroItemService;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @Tag(name = "ElectroItem", description = "Сервис для управления электротоварами")
@@ -33,13 +38,73 @@ public class ElectroItemController {
      */
     @GetMapping
     @Operation(summary = "Получить электротовары с постраничным выводом", responses = {
-            @ApiResponse(description = "Список электротоваров на указанной странице")
+            @ApiResponse(description = "Список электротоваров на указанной странице; expand=electroType,description добавляет тип и описание")
     })
-    public ResponseEntity<Page<ElectroItem>> getAllElectroItems(Pageable pageable) {
-        Page<ElectroItem> electroItems = electroItemService.getAllElectroItems(pageable);
+    public ResponseEntity<Page<ElectroItemRowDTO>> getAllElectroItems(Pageable pageable, @RequestParam(value = "expand", required = false) List<String> expand) {
+        Page<ElectroItemRowDTO> electroItems = electroItemService.getElectroItemRows(pageable, expand);
         return ResponseEntity.ok(electroItems);
     }
 
+    /**
+     * Получить список электротоваров по курсору
+     */
+    @GetMapping("/scroll")
+    @Operation(summary = "Получить список электротоваров по курсору", responses = {
+            @ApiResponse(description = "Страница электротоваров без общего количества; nextCursor передается в cursor для следующей страницы. expand как в списке")
+    })
+    public ResponseEntity<CursorPage<ElectroItemRowDTO>> scrollElectroItems(@RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = "20") int size, @RequestParam(value = "expand", required = false) List<String> expand) {
+        return ResponseEntity.ok(electroItemService.scrollElectroItemRows(cursor, size, expand));
+    }
+
+    /**
+     * Каталог электротоваров с фильтрами
+     */
+    @GetMapping("/catalog")
+    @Operation(summary = "Получить каталог электротоваров с фильтрами и сортировкой по цене", responses = {
+            @ApiResponse(description = "Страница товаров по курсору (nextCursor передается в cursor) и, для первой страницы, количество товаров по типам. " +
+                    "Фильтры electroType, minPrice, maxPrice, archive и shop (товар в наличии в магазине) необязательны, expand как в списке"),
+            @ApiResponse(responseCode = "400", description = "Недопустимые фильтры, направление сортировки, размер страницы или курсор")
+    })
+    public ResponseEntity<ElectroItemCatalogDTO> getCatalog(@RequestParam(value = "electroType", required = false) List<Long> electroTypeIds,
+                                                            @RequestParam(value = "minPrice", required = false) Long minPrice,
+                                                            @RequestParam(value = "maxPrice", required = false) Long maxPrice,
+                                                            @RequestParam(value = "archive", required = false) Boolean archive,
+                                                            @RequestParam(value = "shop", required = false) Long shopId,
+                                                            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                                            @RequestParam(value = "size", defaultValue = "20") int size,
+                                                            @RequestParam(value = "expand", required = false) List<String> expand) {
+        return ResponseEntity.ok(electroItemService.getCatalog(electroTypeIds, minPrice, maxPrice, archive, shopId, direction, cursor, size, expand));
+    }
+
+    /**
+     * Полнотекстовый поиск электротоваров
+     */
+    @GetMapping("/search")
+    @Operation(summary = "Найти электротовары по названию и описанию", responses = {
+            @ApiResponse(description = "Электротовары в порядке релевантности; каждое слово q ищется как префикс. Фильтры electroType и archive необязательны, expand как в списке"),
+            @ApiResponse(responseCode = "400", description = "Пустой запрос или недопустимые limit и page")
+    })
+    public ResponseEntity<List<ElectroItemRowDTO>> searchElectroItems(@RequestParam("q") String query,
+                                                                      @RequestParam(value = "electroType", required = false) List<Long> electroTypeIds,
+                                                                      @RequestParam(value = "archive", required = false) Boolean archive,
+                                                                      @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                                      @RequestParam(value = "page", defaultValue = "0") int page,
+                                                                      @RequestParam(value = "expand", required = false) List<String> expand) {
+        return ResponseEntity.ok(electroItemService.searchElectroItemRows(query, electroTypeIds, archive, limit, page, expand));
+    }
+
+    /**
+     * Пересчитать общее количество товаров по остаткам в магазинах
+     */
+    @PostMapping("/reconcile")
+    @Operation(summary = "Пересчитать общее количество товаров", responses = {
+            @ApiResponse(description = "Количество товаров, у которых было исправлено расхождение")
+    })
+    public ResponseEntity<Integer> reconcileCounts() {
+        return ResponseEntity.ok(electroItemService.reconcileCounts());
+    }
+
     /**
      * Получить электротовар по ID
      */
@@ -48,10 +113,34 @@ public class ElectroItemController {
             @ApiResponse(description = "Информация об электротоваре по ID")
     })
     public ResponseEntity<ElectroItem> getElectroItemById(@PathVariable Long id) {
-        ElectroItem electroItem = electroItemService.getElectroItemById(id);
+        ElectroItem electroItem = electroItemService.getElectroItemWithAssociationsById(id);
         return electroItem != null ? ResponseEntity.ok(electroItem) : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Получить электротовары по списку ID
+     */
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получить электротовары по списку ID", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ids и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<ElectroItem>> getElectroItemsByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(electroItemService.getElectroItemBatch(ids));
+    }
+
+    /**
+     * Получить электротовары по списку ID в теле запроса
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получить электротовары по списку ID в теле запроса", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ID и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<ElectroItem>> getElectroItemsBatch(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(electroItemService.getElectroItemBatch(ids));
+    }
+
     /**
      * Создать новый электротовар
      */
@@ -12,12 +12,16 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.ElectroShop;
 import ru.isands.test.estore.dao.entity.ElectroShopPK;
+import ru.isands.test.estore.dto.CursorPage;
 import ru.isands.test.estore.dto.ElectroShopDTO;
+import ru.isands.test.estore.dto.ElectroShopRowDTO;
+import ru.isands.test.estore.dto.StockMatrixDTO;
 import ru.isands.test.estore.service.ElectroItemService;
 import ru.isands.test.estore.service.ElectroShopService;
 import ru.isands.test.estore.service.ShopService;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @Tag(name = "ElectroShop", description = "Сервис для управления связями электротоваров и магазинов")
@@ -36,13 +40,24 @@ public class ElectroShopController {
      */
     @GetMapping
     @Operation(summary = "Получить связи с постраничным выводом", responses = {
-            @ApiResponse(description = "Список связей электротоваров и магазинов на указанной странице")
+            @ApiResponse(description = "Список связей электротоваров и магазинов на указанной странице; expand=shop,electroItem добавляет магазин и товар")
     })
-    public ResponseEntity<Page<ElectroShop>> getAllElectroShops(Pageable pageable) {
-        Page<ElectroShop> electroShops = electroShopService.getAllElectroShops(pageable);
+    public ResponseEntity<Page<ElectroShopRowDTO>> getAllElectroShops(Pageable pageable, @RequestParam(value = "expand", required = false) List<String> expand) {
+        Page<ElectroShopRowDTO> electroShops = electroShopService.getElectroShopRows(pageable, expand);
         return ResponseEntity.ok(electroShops);
     }
 
+    /**
+     * Получить список связей электротоваров и магазинов по курсору
+     */
+    @GetMapping("/scroll")
+    @Operation(summary = "Получить список связей электротоваров и магазинов по курсору", responses = {
+            @ApiResponse(description = "Страница связей электротоваров и магазинов без общего количества; nextCursor передается в cursor для следующей страницы. expand как в списке")
+    })
+    public ResponseEntity<CursorPage<ElectroShopRowDTO>> scrollElectroShops(@RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = "20") int size, @RequestParam(value = "expand", required = false) List<String> expand) {
+        return ResponseEntity.ok(electroShopService.scrollElectroShopRows(cursor, size, expand));
+    }
+
     /**
      * Получить связь электротовара и магазина по составному ключу
      */
@@ -52,7 +67,7 @@ public class ElectroShopController {
     })
     public ResponseEntity<ElectroShop> getElectroShopById(@PathVariable Long electroItemId, @PathVariable Long shopId) {
         ElectroShopPK id = new ElectroShopPK(electroItemId, shopId);
-        ElectroShop electroShop = electroShopService.getElectroShopById(id);
+        ElectroShop electroShop = electroShopService.getElectroShopWithAssociationsById(id);
         return electroShop != null ? ResponseEntity.ok(electroShop) : ResponseEntity.notFound().build();
     }
 
@@ -107,6 +122,18 @@ public class ElectroShopController {
         }
     }
 
+    /**
+     * Получить остатки набора товаров в наборе магазинов
+     */
+    @GetMapping("/availability/bulk")
+    @Operation(summary = "Получить остатки товаров в магазинах", responses = {
+            @ApiResponse(description = "Матрица остатков: строки - магазины, столбцы - товары", responseCode = "200"),
+            @ApiResponse(description = "Превышен максимальный размер запроса", responseCode = "400")
+    })
+    public ResponseEntity<StockMatrixDTO> getStockMatrix(@RequestParam("shopIds") List<Long> shopIds, @RequestParam("itemIds") List<Long> itemIds) {
+        return ResponseEntity.ok(electroShopService.getStockMatrix(shopIds, itemIds));
+    }
+
     /**
      * Загрузить связи из csv
      */
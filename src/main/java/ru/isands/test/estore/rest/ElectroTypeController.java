@@ -10,9 +10,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.ElectroType;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.service.ElectroTypeService;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @Tag(name = "ElectroType", description = "Сервис для управления типами электроники")
@@ -50,6 +52,30 @@ public class ElectroTypeController {
         return electroType != null ? ResponseEntity.ok(electroType) : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Получить типы электроники по списку ID
+     */
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получить типы электроники по списку ID", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ids и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<ElectroType>> getElectroTypesByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(electroTypeService.getElectroTypeBatch(ids));
+    }
+
+    /**
+     * Получить типы электроники по списку ID в теле запроса
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получить типы электроники по списку ID в теле запроса", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ID и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<ElectroType>> getElectroTypesBatch(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(electroTypeService.getElectroTypeBatch(ids));
+    }
+
     /**
      * Создать новый тип электроники
      */
@@ -6,15 +6,23 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import ru.isands.test.estore.analytics.Granularity;
+import ru.isands.test.estore.analytics.SalesReportService;
 import ru.isands.test.estore.dao.entity.Employee;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.dto.BestEmployeeDTO;
+import ru.isands.test.estore.dto.CursorPage;
 import ru.isands.test.estore.dto.EmployeeDTO;
+import ru.isands.test.estore.dto.EmployeeRowDTO;
+import ru.isands.test.estore.dto.SalesPeriodDTO;
 import ru.isands.test.estore.service.EmployeeService;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -23,11 +31,13 @@ import java.util.List;
 public class EmployeeController {
 
     private final EmployeeService employeeService;
+    private final SalesReportService salesReportService;
 
 
     @Autowired
-    public EmployeeController(EmployeeService employeeService) {
+    public EmployeeController(EmployeeService employeeService, SalesReportService salesReportService) {
         this.employeeService = employeeService;
+        this.salesReportService = salesReportService;
     }
 
     /**
@@ -35,13 +45,24 @@ public class EmployeeController {
      */
     @GetMapping
     @Operation(summary = "Получить сотрудников с постраничным выводом", responses = {
-            @ApiResponse(description = "Список сотрудников на указанной странице")
+            @ApiResponse(description = "Список сотрудников на указанной странице; expand=position,shop добавляет должность и магазин")
     })
-    public ResponseEntity<Page<Employee>> getAllEmployees(Pageable pageable) {
-        Page<Employee> employees = employeeService.getAllEmployees(pageable);
+    public ResponseEntity<Page<EmployeeRowDTO>> getAllEmployees(Pageable pageable, @RequestParam(value = "expand", required = false) List<String> expand) {
+        Page<EmployeeRowDTO> employees = employeeService.getEmployeeRows(pageable, expand);
         return ResponseEntity.ok(employees);
     }
 
+    /**
+     * Получить список сотрудников по курсору
+     */
+    @GetMapping("/scroll")
+    @Operation(summary = "Получить список сотрудников по курсору", responses = {
+            @ApiResponse(description = "Страница сотрудников без общего количества; nextCursor передается в cursor для следующей страницы. expand как в списке")
+    })
+    public ResponseEntity<CursorPage<EmployeeRowDTO>> scrollEmployees(@RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = "20") int size, @RequestParam(value = "expand", required = false) List<String> expand) {
+        return ResponseEntity.ok(employeeService.scrollEmployeeRows(cursor, size, expand));
+    }
+
     /**
      * Получить сотрудника по ID
      */
@@ -50,10 +71,34 @@ public class EmployeeController {
             @ApiResponse(description = "Информация о сотруднике по ID")
     })
     public ResponseEntity<Employee> getEmployeeById(@PathVariable Long id) {
-        Employee employee = employeeService.getEmployeeById(id);
+        Employee employee = employeeService.getEmployeeWithAssociationsById(id);
         return employee != null ? ResponseEntity.ok(employee) : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Получить сотрудников по списку ID
+     */
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получить сотрудников по списку ID", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ids и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<Employee>> getEmployeesByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(employeeService.getEmployeeBatch(ids));
+    }
+
+    /**
+     * Получить сотрудников по списку ID в теле запроса
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получить сотрудников по списку ID в теле запроса", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ID и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<Employee>> getEmployeesBatch(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(employeeService.getEmployeeBatch(ids));
+    }
+
     /**
      * Создать нового сотрудника
      */
@@ -92,23 +137,43 @@ public class EmployeeController {
 
 
     /**
-     * Получить лучших сотрудников за год по id должности, отсорированный по сумме проданых товаров
+     * Получить лучших сотрудников за год по id должности, отсорированный по сумме проданых товаров;
+     * без limit возвращается весь рейтинг
      */
     @GetMapping("/totalsales/{positionId}")
-    public ResponseEntity<List<BestEmployeeDTO>> getBestEmployeesByTotalSales(@PathVariable Long positionId, @RequestParam(value = "years", defaultValue = "1") int years) {
-        List<BestEmployeeDTO> bestEmployees = employeeService.getBestEmployeesByTotalSales(years, positionId);
+    public ResponseEntity<List<BestEmployeeDTO>> getBestEmployeesByTotalSales(@PathVariable Long positionId, @RequestParam(value = "years", defaultValue = "1") int years,
+                                                                              @RequestParam(value = "limit", required = false) Integer limit, @RequestParam(value = "page", defaultValue = "0") int page) {
+        List<BestEmployeeDTO> bestEmployees = employeeService.getBestEmployeesByTotalSales(years, positionId, limit, page);
         return ResponseEntity.ok(bestEmployees);
     }
 
     /**
-     * Получить лучших сотрудников за год по id должности, отсорированный по количеству проданых товаров
+     * Получить лучших сотрудников за год по id должности, отсорированный по количеству проданых товаров;
+     * без limit возвращается весь рейтинг
      */
     @GetMapping("/itemssold/{positionId}")
-    public ResponseEntity<List<BestEmployeeDTO>> getBestEmployeesByItemSold(@PathVariable Long positionId, @RequestParam(value = "years", defaultValue = "1") int years) {
-        List<BestEmployeeDTO> bestEmployees = employeeService.getBestEmployeesByItemSold(years, positionId);
+    public ResponseEntity<List<BestEmployeeDTO>> getBestEmployeesByItemSold(@PathVariable Long positionId, @RequestParam(value = "years", defaultValue = "1") int years,
+                                                                            @RequestParam(value = "limit", required = false) Integer limit, @RequestParam(value = "page", defaultValue = "0") int page) {
+        List<BestEmployeeDTO> bestEmployees = employeeService.getBestEmployeesByItemSold(years, positionId, limit, page);
         return ResponseEntity.ok(bestEmployees);
     }
 
+    /**
+     * Продажи сотрудников по дням, неделям или месяцам за период
+     */
+    @GetMapping("/sales")
+    @Operation(summary = "Продажи сотрудников по дням, неделям или месяцам за период", responses = {
+            @ApiResponse(description = "Список период - сотрудник - количество продаж - выручка")
+    })
+    public ResponseEntity<List<SalesPeriodDTO>> getEmployeeSales(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "granularity", defaultValue = "DAY") Granularity granularity,
+            @RequestParam(value = "employeeId", required = false) Long employeeId,
+            @RequestParam(value = "positionId", required = false) Long positionId) {
+        return ResponseEntity.ok(salesReportService.getEmployeeSales(from, to, granularity, employeeId, positionId));
+    }
+
     /**
      * Вывод лучшего младшего продавца-консультанта, продавшего больше всех умных часов
      */
@@ -0,0 +1,56 @@
+package ru.isands.test.estore.rest;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.isands.test.estore.export.ExportRequest;
+import ru.isands.test.estore.export.ExportService;
+
+import java.time.LocalDate;
+
+@RestController
+@Tag(name = "Export", description = "Сервис для выгрузки таблиц")
+@RequestMapping("/estore/api/export")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    @Autowired
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Выгрузить таблицу целиком или диапазон в .csv формата импорта или NDJSON
+     */
+    @GetMapping("/{table}")
+    @Operation(summary = "Выгрузить таблицу ElectroType, PositionType, PurchaseType, Shop, ElectroItem, Employee, Purchase, ElectroEmployee или ElectroShop", responses = {
+            @ApiResponse(description = "Поток строк таблицы; fromId и toId ограничивают ID первой колонки, from и to - дату покупки"),
+            @ApiResponse(description = "Неизвестная таблица, формат или кодировка, неверный диапазон", responseCode = "400")
+    })
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String table,
+                                                        @RequestParam(value = "format", defaultValue = "csv") String format,
+                                                        @RequestParam(value = "encoding", defaultValue = "Windows-1251") String encoding,
+                                                        @RequestParam(value = "fromId", required = false) Long fromId,
+                                                        @RequestParam(value = "toId", required = false) Long toId,
+                                                        @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        ExportRequest request = exportService.prepare(table, format, encoding, fromId, toId, from, to);
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.parseMediaType(request.format().mediaType()), request.charset()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(request.fileName()).build().toString())
+                .body(out -> exportService.write(request, out));
+    }
+}
@@ -10,9 +10,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.PositionType;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.service.PositionTypeService;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @Tag(name = "PositionType", description = "Сервис для управления должностями сотрудников")
@@ -50,6 +52,30 @@ public class PositionTypeController {
         return positionType != null ? ResponseEntity.ok(positionType) : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Получить должности по списку ID
+     */
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получить должности по списку ID", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ids и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<PositionType>> getPositionTypesByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(positionTypeService.getPositionTypeBatch(ids));
+    }
+
+    /**
+     * Получить должности по списку ID в теле запроса
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получить должности по списку ID в теле запроса", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ID и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<PositionType>> getPositionTypesBatch(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(positionTypeService.getPositionTypeBatch(ids));
+    }
+
     /**
      * Создать новую должность
      */
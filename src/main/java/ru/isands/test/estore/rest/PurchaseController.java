@@ -10,10 +10,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.dto.BatchResult;
+import ru.isands.test.estore.dto.CursorPage;
 import ru.isands.test.estore.dto.PurchaseDTO;
+import ru.isands.test.estore.dto.PurchaseRowDTO;
 import ru.isands.test.estore.service.PurchaseService;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @Tag(name = "Purchase", description = "Сервис для управления покупками")
@@ -27,18 +31,40 @@ public class PurchaseController {
         this.purchaseService = purchaseService;
     }
 
+    /**
+     * Пересчитать дневные итоги продаж
+     */
+    @PostMapping("/rollup/rebuild")
+    @Operation(summary = "Пересчитать дневные итоги продаж", responses = {
+            @ApiResponse(description = "Количество пересчитанных месяцев")
+    })
+    public ResponseEntity<Integer> rebuildSalesRollup() {
+        return ResponseEntity.ok(purchaseService.rebuildSalesRollup());
+    }
+
     /**
      * Получить список покупок с постраничным выводом
      */
     @GetMapping
     @Operation(summary = "Получить список покупок с постраничным выводом", responses = {
-            @ApiResponse(description = "Список покупок на указанной странице")
+            @ApiResponse(description = "Список покупок на указанной странице; expand=electroItem,employee,shop,purchaseType добавляет связанные объекты")
     })
-    public ResponseEntity<Page<Purchase>> getAllPurchases(Pageable pageable) {
-        Page<Purchase> purchases = purchaseService.getAllPurchases(pageable);
+    public ResponseEntity<Page<PurchaseRowDTO>> getAllPurchases(Pageable pageable, @RequestParam(value = "expand", required = false) List<String> expand) {
+        Page<PurchaseRowDTO> purchases = purchaseService.getPurchaseRows(pageable, expand);
         return ResponseEntity.ok(purchases);
     }
 
+    /**
+     * Получить список покупок по курсору
+     */
+    @GetMapping("/scroll")
+    @Operation(summary = "Получить список покупок по курсору", responses = {
+            @ApiResponse(description = "Страница покупок без общего количества; nextCursor передается в cursor для следующей страницы. Покупки идут от новых к старым; expand как в списке")
+    })
+    public ResponseEntity<CursorPage<PurchaseRowDTO>> scrollPurchases(@RequestParam(value = "cursor", required = false) String cursor, @RequestParam(value = "size", defaultValue = "20") int size, @RequestParam(value = "expand", required = false) List<String> expand) {
+        return ResponseEntity.ok(purchaseService.scrollPurchaseRows(cursor, size, expand));
+    }
+
     /**
      * Получить покупку по ID
      */
@@ -47,10 +73,34 @@ public class PurchaseController {
             @ApiResponse(description = "Информация о покупке по ID")
     })
     public ResponseEntity<Purchase> getPurchaseById(@PathVariable Long id) {
-        Purchase purchase = purchaseService.getPurchaseById(id);
+        Purchase purchase = purchaseService.getPurchaseWithAssociationsById(id);
         return ResponseEntity.ok(purchase);
     }
 
+    /**
+     * Получить покупки по списку ID
+     */
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получить покупки по списку ID", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ids и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<Purchase>> getPurchasesByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(purchaseService.getPurchaseBatch(ids));
+    }
+
+    /**
+     * Получить покупки по списку ID в теле запроса
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получить покупки по списку ID в теле запроса", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ID и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<Purchase>> getPurchasesBatch(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(purchaseService.getPurchaseBatch(ids));
+    }
+
     /**
      * Создать новую покупку
      */
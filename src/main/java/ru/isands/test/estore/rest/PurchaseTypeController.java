@@ -10,9 +10,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.PurchaseType;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.service.PurchaseTypeService;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @Tag(name = "PurchaseType", description = "Сервис для управления типами покупок")
@@ -50,6 +52,30 @@ public class PurchaseTypeController {
         return purchaseType != null ? ResponseEntity.ok(purchaseType) : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Получить способы оплаты по списку ID
+     */
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получить способы оплаты по списку ID", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ids и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<PurchaseType>> getPurchaseTypesByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(purchaseTypeService.getPurchaseTypeBatch(ids));
+    }
+
+    /**
+     * Получить способы оплаты по списку ID в теле запроса
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получить способы оплаты по списку ID в теле запроса", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ID и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<PurchaseType>> getPurchaseTypesBatch(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(purchaseTypeService.getPurchaseTypeBatch(ids));
+    }
+
     /**
      * Создать новый тип покупки
      */
@@ -0,0 +1,52 @@
+package ru.isands.test.estore.rest;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.isands.test.estore.dto.CacheRegionStatsDTO;
+import ru.isands.test.estore.service.ReferenceCacheService;
+
+import java.util.List;
+
+@RestController
+@Tag(name = "ReferenceCache", description = "Сервис для управления кэшем справочников")
+@RequestMapping("/estore/api/cache/reference")
+public class ReferenceCacheController {
+
+    private final ReferenceCacheService referenceCacheService;
+
+    @Autowired
+    public ReferenceCacheController(ReferenceCacheService referenceCacheService) {
+        this.referenceCacheService = referenceCacheService;
+    }
+
+    /**
+     * Статистика кэша справочников
+     */
+    @GetMapping("/stats")
+    @Operation(summary = "Статистика кэша справочников", responses = {
+            @ApiResponse(description = "Попадания, промахи, записи и размер по регионам кэша", responseCode = "200"),
+            @ApiResponse(description = "Сбор статистики выключен", responseCode = "404")
+    })
+    public ResponseEntity<List<CacheRegionStatsDTO>> getStatistics() {
+        return ResponseEntity.ok(referenceCacheService.getStatistics());
+    }
+
+    /**
+     * Сбросить кэш справочников
+     */
+    @DeleteMapping
+    @Operation(summary = "Сбросить кэш справочников после изменения их в БД в обход приложения", responses = {
+            @ApiResponse(description = "Кэш сброшен", responseCode = "204")
+    })
+    public ResponseEntity<Void> evictAll() {
+        referenceCacheService.evictAll();
+        return ResponseEntity.noContent().build();
+    }
+}
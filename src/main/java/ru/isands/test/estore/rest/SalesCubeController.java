@@ -0,0 +1,57 @@
+package ru.isands.test.estore.rest;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.isands.test.estore.analytics.SalesCubeService;
+import ru.isands.test.estore.dto.CubeResultDTO;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@Tag(name = "SalesCube", description = "Сервис для срезов продаж по произвольным сочетаниям измерений")
+@RequestMapping("/estore/api/cube")
+public class SalesCubeController {
+
+    private final SalesCubeService salesCubeService;
+
+    @Autowired
+    public SalesCubeController(SalesCubeService salesCubeService) {
+        this.salesCubeService = salesCubeService;
+    }
+
+    /**
+     * Продажи в разрезе измерений с фильтрами по ID и периоду
+     */
+    @GetMapping
+    @Operation(summary = "Продажи в разрезе измерений shop, electroType, item, position, purchaseType, day, month", responses = {
+            @ApiResponse(description = "Строки значение измерений - количество продаж - выручка и источник ответа"),
+            @ApiResponse(description = "Неизвестное измерение или слишком много строк", responseCode = "400")
+    })
+    public ResponseEntity<CubeResultDTO> getSales(@RequestParam(value = "groupBy", required = false) List<String> groupBy,
+                                                  @RequestParam(value = "shop", required = false) List<Long> shopIds,
+                                                  @RequestParam(value = "electroType", required = false) List<Long> electroTypeIds,
+                                                  @RequestParam(value = "item", required = false) List<Long> itemIds,
+                                                  @RequestParam(value = "position", required = false) List<Long> positionIds,
+                                                  @RequestParam(value = "purchaseType", required = false) List<Long> purchaseTypeIds,
+                                                  @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        Map<String, List<Long>> filters = new LinkedHashMap<>();
+        filters.put("shop", shopIds);
+        filters.put("electroType", electroTypeIds);
+        filters.put("item", itemIds);
+        filters.put("position", positionIds);
+        filters.put("purchaseType", purchaseTypeIds);
+        return ResponseEntity.ok(salesCubeService.getSales(groupBy, filters, from, to));
+    }
+}
@@ -4,17 +4,31 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.isands.test.estore.analytics.Granularity;
+import ru.isands.test.estore.analytics.SalesReportService;
+import ru.isands.test.estore.analytics.SalesWindowService;
 import ru.isands.test.estore.dao.entity.Shop;
+import ru.isands.test.estore.dto.BatchResult;
+import ru.isands.test.estore.dto.SalesPeriodDTO;
+import ru.isands.test.estore.dto.SalesWindowDTO;
 import ru.isands.test.estore.dto.ShopDto;
 import ru.isands.test.estore.service.ShopService;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @Tag(name = "Shop", description = "Сервис для управления магазинами")
@@ -22,10 +36,17 @@ import java.util.List;
 public class ShopController {
 
     private final ShopService shopService;
+    private final SalesReportService salesReportService;
+    private final SalesWindowService salesWindowService;
+
+    @Value("${report.cache.max-age.s: 60}")
+    private long reportMaxAge;
 
     @Autowired
-    public ShopController(ShopService shopService) {
+    public ShopController(ShopService shopService, SalesReportService salesReportService, SalesWindowService salesWindowService) {
         this.shopService = shopService;
+        this.salesReportService = salesReportService;
+        this.salesWindowService = salesWindowService;
     }
 
     /**
@@ -52,6 +73,30 @@ public class ShopController {
         return shop != null ? ResponseEntity.ok(shop) : ResponseEntity.notFound().build();
     }
 
+    /**
+     * Получить магазины по списку ID
+     */
+    @GetMapping(params = "ids")
+    @Operation(summary = "Получить магазины по списку ID", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ids и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<Shop>> getShopsByIds(@RequestParam("ids") List<Long> ids) {
+        return ResponseEntity.ok(shopService.getShopBatch(ids));
+    }
+
+    /**
+     * Получить магазины по списку ID в теле запроса
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Получить магазины по списку ID в теле запроса", responses = {
+            @ApiResponse(description = "Найденные объекты в порядке ID и список ненайденных ID (missingIds)"),
+            @ApiResponse(responseCode = "400", description = "Пустой список ID или больше batch.max.ids различных ID")
+    })
+    public ResponseEntity<BatchResult<Shop>> getShopsBatch(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(shopService.getShopBatch(ids));
+    }
+
     /**
      * Создать новый магазин
      */
@@ -96,6 +141,63 @@ public class ShopController {
         return shopService.getShopsByPurchaseType(id, purchaseType);
     }
 
+    /**
+     * Выручка всех магазинов по всем способам оплаты за период
+     */
+    @GetMapping(value = "/revenue-report", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Выручка всех магазинов по всем способам оплаты за период", responses = {
+            @ApiResponse(description = "Список магазин - способ оплаты - количество продаж - выручка")
+    })
+    public ResponseEntity<StreamingResponseBody> getShopRevenueReport(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(reportMaxAge, TimeUnit.SECONDS).cachePublic())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> salesReportService.writeShopRevenueReport(from, to, out));
+    }
+
+    /**
+     * Продажи магазинов по дням, неделям или месяцам за период
+     */
+    @GetMapping("/sales")
+    @Operation(summary = "Продажи магазинов по дням, неделям или месяцам за период", responses = {
+            @ApiResponse(description = "Список период - магазин - количество продаж - выручка")
+    })
+    public ResponseEntity<List<SalesPeriodDTO>> getShopSales(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "granularity", defaultValue = "DAY") Granularity granularity,
+            @RequestParam(value = "shopId", required = false) Long shopId) {
+        return ResponseEntity.ok(salesReportService.getShopSales(from, to, granularity, shopId));
+    }
+
+    /**
+     * Продажи за последние минуты по магазинам и типам товаров
+     */
+    @GetMapping("/sales-window")
+    @Operation(summary = "Продажи за последние минуты по магазинам и типам товаров", responses = {
+            @ApiResponse(description = "Количество продаж, выручка и их темп в минуту")
+    })
+    public ResponseEntity<List<SalesWindowDTO>> getSalesWindow(@RequestParam(value = "shopId", required = false) Long shopId,
+                                                               @RequestParam(value = "electroTypeId", required = false) Long electroTypeId,
+                                                               @RequestParam(value = "minutes", defaultValue = "15") int minutes) {
+        return ResponseEntity.ok(salesWindowService.getSales(shopId, electroTypeId, minutes));
+    }
+
+    /**
+     * Поток продаж за последние минуты по магазинам и типам товаров
+     */
+    @GetMapping(value = "/sales-window/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Поток продаж за последние минуты (Server-Sent Events)", responses = {
+            @ApiResponse(description = "События sales с продажами за окно, отправляемые периодически")
+    })
+    public SseEmitter streamSalesWindow(@RequestParam(value = "shopId", required = false) Long shopId,
+                                        @RequestParam(value = "electroTypeId", required = false) Long electroTypeId,
+                                        @RequestParam(value = "minutes", defaultValue = "15") int minutes) {
+        return salesWindowService.subscribe(shopId, electroTypeId, minutes);
+    }
+
     /**
      * Загрузить магазины из CSV
      */
@@ -0,0 +1,16 @@
+package ru.isands.test.estore.retry;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Повторить метод при конфликте оптимистической блокировки.
+ * Метод должен сам перечитывать изменяемые записи и открывать собственную транзакцию,
+ * тогда каждая попытка выполняется в новой транзакции со свежими данными.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OptimisticRetry {
+}
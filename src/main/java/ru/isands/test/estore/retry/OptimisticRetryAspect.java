@@ -0,0 +1,73 @@
+package ru.isands.test.estore.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Повтор операций, помеченных {@link OptimisticRetry}, с ограниченным числом попыток
+ * и случайной экспоненциальной задержкой. Аспект выполняется снаружи транзакции.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OptimisticRetryAspect {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${optimistic.retry.max-attempts: 3}")
+    private int maxAttempts;
+
+    @Value("${optimistic.retry.backoff.ms: 20}")
+    private long backoffMs;
+
+    @Value("${optimistic.retry.max-backoff.ms: 200}")
+    private long maxBackoffMs;
+
+    @Autowired
+    public OptimisticRetryAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(ru.isands.test.estore.retry.OptimisticRetry)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        String operation = joinPoint.getSignature().toShortString();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                counter("estore.optimistic.conflicts", operation).increment();
+                if (attempt >= maxAttempts) {
+                    counter("estore.optimistic.exhausted", operation).increment();
+                    throw e;
+                }
+                counter("estore.optimistic.retries", operation).increment();
+                Thread.sleep(backoff(attempt));
+            }
+        }
+    }
+
+    /**
+     * Задержка перед повтором: случайное значение от 0 до min(max, base * 2^(attempt-1))
+     */
+    long backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -13,10 +12,12 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.ElectroEmployee;
 import ru.isands.test.estore.dao.entity.ElectroEmployeePK;
+import ru.isands.test.estore.dao.entity.Employee;
 import ru.isands.test.estore.dao.repo.ElectroEmployeeRepository;
 import ru.isands.test.estore.dto.ElectroEmployeeDTO;
 import ru.isands.test.estore.exeption.CsvProcessingException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.CsvRows;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -26,6 +27,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class ElectroEmployeeService {
@@ -47,6 +49,7 @@ public class ElectroEmployeeService {
     /**
      * Получить список связей сотрудников и типов электроники с постраничным выводом
      */
+    @Transactional(readOnly = true)
     public Page<ElectroEmployee> getAllElectroEmployees(Pageable pageable) {
         return electroEmployeeRepository.findAll(pageable);
     }
@@ -54,13 +57,23 @@ public class ElectroEmployeeService {
     /**
      * Получить связь сотрудника и типа электроники по составному ключу
      */
+    @Transactional(readOnly = true)
     public ElectroEmployee getElectroEmployeeById(ElectroEmployeePK id) {
         return electroEmployeeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("ElectroEmployee not found for ID: " + id));
     }
 
+    /**
+     * Получить связь сотрудника и типа электроники по составному ключу вместе со связанными сущностями для карточки
+     */
+    @Transactional(readOnly = true)
+    public ElectroEmployee getElectroEmployeeWithAssociationsById(ElectroEmployeePK id) {
+        return electroEmployeeRepository.findWithAssociationsById(id).orElseThrow(() -> new ResourceNotFoundException("ElectroEmployee not found for ID: " + id));
+    }
+
     /**
      * Создать новую связь сотрудника и типа электроники
      */
+    @Transactional
     public ElectroEmployee createElectroEmployee(ElectroEmployeeDTO electroEmployeeDTO) {
         ElectroEmployeePK id = new ElectroEmployeePK(electroEmployeeDTO.getEmployeeId(), electroEmployeeDTO.getElectroTypeId());
         ElectroEmployee electroEmployee = new ElectroEmployee();
@@ -104,21 +117,20 @@ public class ElectroEmployeeService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
+            List<String[]> rows = CsvRows.readAll(csvReader);
+            Map<Long, Employee> employees = employeeService.getEmployeesByIds(CsvRows.ids(rows, 0));
             List<ElectroEmployee> electroEmployees = new ArrayList<>();
-            String[] values;
 
-            while ((values = csvReader.readNext()) != null) {
+            for (String[] values : rows) {
                 try {
                     ElectroEmployee electroEmployee = new ElectroEmployee();
                     electroEmployee.setId(new ElectroEmployeePK(
                             Long.valueOf(values[0]),
                             Long.valueOf(values[1])
                     ));
-                    electroEmployee.setEmployee(employeeService.getEmployeeById(Long.valueOf(values[0])));
+                    electroEmployee.setEmployee(CsvRows.require(employees, Long.valueOf(values[0]), "Employee"));
                     electroEmployee.setElectroType(electroTypeService.getElectroTypeById(Long.valueOf(values[1])));
                     electroEmployees.add(electroEmployee);
                 } catch (ResourceNotFoundException | NumberFormatException e) {
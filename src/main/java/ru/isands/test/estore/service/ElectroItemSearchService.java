@@ -0,0 +1,109 @@
+package ru.isands.test.estore.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Полнотекстовый поиск электротоваров по названию и описанию.
+ * Вектор строится из названия с весом A и описания с весом B; GIN-индекс по тому же выражению создает
+ * db/electro-item-search-index.sql. Каждое слово запроса ищется как префикс, результаты упорядочены по ts_rank.
+ * Ранжируются не более search.max.candidates совпадений с наименьшими ID: если совпадений больше, более релевантные
+ * товары с большими ID в выдачу не попадают, поэтому для частых слов запрос нужно уточнять словами или фильтрами.
+ */
+@Service
+public class ElectroItemSearchService {
+
+    private static final int MAX_TERMS = 8;
+
+    /**
+     * Выражение должно совпадать с выражением индекса store_electro_item_search_idx
+     */
+    private static final String VECTOR_SQL = "(setweight(to_tsvector('russian', coalesce(name, '')), 'A') || " +
+            "setweight(to_tsvector('russian', coalesce(description, '')), 'B'))";
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Value("${search.max.limit: 100}")
+    private int maxLimit;
+
+    @Value("${search.max.candidates: 10000}")
+    private int maxCandidates;
+
+    @Autowired
+    public ElectroItemSearchService(JdbcTemplate jdbcTemplate) {
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Найти электротовары по словам запроса
+     *
+     * @param electroTypeIds типы электроники или null для всех типов
+     * @param archive        признак архива или null для всех товаров
+     */
+    @Transactional(readOnly = true)
+    public List<ElectroItemRowDTO> search(String query, Collection<Long> electroTypeIds, Boolean archive, int limit, int page) {
+        if (limit < 1 || limit > maxLimit || page < 0) {
+            throw new RequestLimitExceededException("Недопустимые параметры поиска: limit = " + limit + ", page = " + page
+                    + ", limit должен быть от 1 до " + maxLimit);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("query", toTsQuery(query))
+                .addValue("candidates", maxCandidates)
+                .addValue("limit", limit)
+                .addValue("offset", (long) page * limit);
+        String sql = searchSql(electroTypeIds, archive, params);
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) -> new ElectroItemRowDTO(rs.getLong(1), rs.getString(2),
+                rs.getLong(3), rs.getLong(4), rs.getInt(5), rs.getBoolean(6)));
+    }
+
+    /**
+     * Запрос поиска с фильтрами; значения фильтров добавляются в params.
+     * Кандидаты отбираются по возрастанию ID, чтобы при усечении до :candidates ранжировался один и тот же набор товаров.
+     */
+    static String searchSql(Collection<Long> electroTypeIds, Boolean archive, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder(VECTOR_SQL + " @@ to_tsquery('russian', :query)");
+        if (electroTypeIds != null && !electroTypeIds.isEmpty()) {
+            where.append(" AND etype_id IN (:electroTypeIds)");
+            params.addValue("electroTypeIds", electroTypeIds);
+        }
+        if (archive != null) {
+            where.append(" AND archive = :archive");
+            params.addValue("archive", archive);
+        }
+        return "SELECT id, name, etype_id, price, count, archive FROM (" +
+                "SELECT id, name, etype_id, price, count, archive, " + VECTOR_SQL + " AS vector FROM store_electro_item " +
+                "WHERE " + where + " ORDER BY id LIMIT :candidates) i " +
+                "ORDER BY ts_rank(i.vector, to_tsquery('russian', :query)) DESC, i.id " +
+                "LIMIT :limit OFFSET :offset";
+    }
+
+    /**
+     * Запрос tsquery из слов строки поиска: каждое слово ищется как префикс, все слова обязательны
+     */
+    static String toTsQuery(String query) {
+        List<String> terms = new ArrayList<>();
+        if (query != null) {
+            for (String term : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!term.isEmpty() && terms.size() < MAX_TERMS) {
+                    terms.add(term + ":*");
+                }
+            }
+        }
+        if (terms.isEmpty()) {
+            throw new RequestLimitExceededException("Пустой поисковый запрос");
+        }
+        return String.join(" & ", terms);
+    }
+}
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -8,14 +7,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dao.entity.ElectroType;
 import ru.isands.test.estore.dao.repo.ElectroItemRepository;
+import ru.isands.test.estore.dao.repo.ElectroItemSpecifications;
+import ru.isands.test.estore.dto.BatchResult;
+import ru.isands.test.estore.dto.CursorPage;
+import ru.isands.test.estore.dto.ElectroItemCatalogDTO;
 import ru.isands.test.estore.dto.ElectroItemDTO;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
+import ru.isands.test.estore.dto.ElectroTypeFacetDTO;
 import ru.isands.test.estore.exeption.CsvProcessingException;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.Batches;
+import ru.isands.test.estore.util.CsvRows;
+import ru.isands.test.estore.util.Cursors;
+import ru.isands.test.estore.util.Expansions;
+import ru.isands.test.estore.util.Versions;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -24,61 +38,227 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ElectroItemService {
 
     private final ElectroItemRepository electroItemRepository;
     private final ElectroTypeService electroTypeService;
+    private final ElectroItemSearchService electroItemSearchService;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${batch.max.ids: 500}")
+    private int maxBatchIds;
+
+    @Value("${scroll.max.size: 1000}")
+    private int maxScrollSize;
+
     @Autowired
-    public ElectroItemService(ElectroItemRepository electroItemRepository, ElectroTypeService electroTypeService) {
+    public ElectroItemService(ElectroItemRepository electroItemRepository, ElectroTypeService electroTypeService,
+                              ElectroItemSearchService electroItemSearchService) {
         this.electroItemRepository = electroItemRepository;
         this.electroTypeService = electroTypeService;
+        this.electroItemSearchService = electroItemSearchService;
+    }
+
+    /**
+     * Получить страницу электротоваров без связанных объектов; expand добавляет electroType и description
+     */
+    @Transactional(readOnly = true)
+    public Page<ElectroItemRowDTO> getElectroItemRows(Pageable pageable, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "electroType", "description");
+        Page<ElectroItemRowDTO> page = electroItemRepository.findRows(pageable);
+        expandElectroItems(page.getContent(), expansions);
+        return page;
     }
 
     /**
-     * Получить электротовары с постраничным выводом
+     * Получить страницу электротоваров по курсору (ID) без подсчета общего количества
      */
-    public Page<ElectroItem> getAllElectroItems(Pageable pageable) {
-        return electroItemRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public CursorPage<ElectroItemRowDTO> scrollElectroItemRows(String cursor, int size, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "electroType", "description");
+        long[] after = Cursors.decode(cursor, 1);
+        List<ElectroItemRowDTO> rows = electroItemRepository.scrollRowsAfter(after == null ? Long.MIN_VALUE : after[0],
+                Cursors.limit(size, maxScrollSize));
+        CursorPage<ElectroItemRowDTO> page = Cursors.page(rows, size, row -> Cursors.encode(row.getId()));
+        expandElectroItems(page.getContent(), expansions);
+        return page;
+    }
+
+    /**
+     * Получить электротовары по ID без связанных объектов
+     */
+    /**
+     * Найти электротовары по названию и описанию в порядке релевантности; expand как в списке
+     */
+    @Transactional(readOnly = true)
+    public List<ElectroItemRowDTO> searchElectroItemRows(String query, List<Long> electroTypeIds, Boolean archive, int limit, int page, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "electroType", "description");
+        List<ElectroItemRowDTO> rows = electroItemSearchService.search(query, electroTypeIds, archive, limit, page);
+        expandElectroItems(rows, expansions);
+        return rows;
+    }
+
+    /**
+     * Получить страницу каталога по фильтрам с сортировкой по цене и курсором по (цена, ID).
+     * Для первой страницы добавляется количество товаров по типам с остальными фильтрами
+     */
+    @Transactional(readOnly = true)
+    public ElectroItemCatalogDTO getCatalog(List<Long> electroTypeIds, Long minPrice, Long maxPrice, Boolean archive, Long shopId,
+                                            String direction, String cursor, int size, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "electroType", "description");
+        boolean descending = "desc".equalsIgnoreCase(direction);
+        if (!descending && !"asc".equalsIgnoreCase(direction)) {
+            throw new RequestLimitExceededException("Недопустимое направление сортировки: " + direction + ", допустимые: asc, desc");
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new RequestLimitExceededException("Минимальная цена " + minPrice + " больше максимальной " + maxPrice);
+        }
+        long[] after = Cursors.decode(cursor, 2);
+        Specification<ElectroItem> filters = Specification.where(ElectroItemSpecifications.priceBetween(minPrice, maxPrice))
+                .and(ElectroItemSpecifications.isArchive(archive))
+                .and(ElectroItemSpecifications.inStockAt(shopId));
+        List<ElectroItemRowDTO> rows = electroItemRepository.findCatalogRows(
+                filters.and(ElectroItemSpecifications.hasElectroType(electroTypeIds)), descending,
+                after == null ? null : after[0], after == null ? null : after[1], Cursors.limit(size, maxScrollSize));
+        CursorPage<ElectroItemRowDTO> page = Cursors.page(rows, size, row -> Cursors.encode(row.getPrice(), row.getId()));
+        expandElectroItems(page.getContent(), expansions);
+        return new ElectroItemCatalogDTO(page, after == null ? getElectroTypeFacets(filters) : null);
+    }
+
+    private List<ElectroTypeFacetDTO> getElectroTypeFacets(Specification<ElectroItem> filters) {
+        Map<Long, Long> counts = electroItemRepository.countByElectroType(filters);
+        Map<Long, ElectroType> types = Expansions.byId(electroTypeService.getElectroTypesByIds(counts.keySet()), ElectroType::getId);
+        List<ElectroTypeFacetDTO> facets = new ArrayList<>(counts.size());
+        counts.forEach((electroTypeId, count) -> {
+            ElectroType type = types.get(electroTypeId);
+            facets.add(new ElectroTypeFacetDTO(electroTypeId, type == null ? null : type.getName(), count));
+        });
+        return facets;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ElectroItemRowDTO> getElectroItemRowsByIds(Collection<Long> ids) {
+        return ids.isEmpty() ? new ArrayList<>() : electroItemRepository.findRowsByIds(ids);
+    }
+
+    private void expandElectroItems(List<ElectroItemRowDTO> rows, Set<String> expansions) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (expansions.contains("electroType")) {
+            Map<Long, ElectroType> types = Expansions.byId(
+                    electroTypeService.getElectroTypesByIds(Expansions.ids(rows, ElectroItemRowDTO::getETypeId)), ElectroType::getId);
+            rows.forEach(row -> row.setEType(types.get(row.getETypeId())));
+        }
+        if (expansions.contains("description")) {
+            Map<Long, String> descriptions = new HashMap<>();
+            for (Object[] description : electroItemRepository.findDescriptions(Expansions.ids(rows, ElectroItemRowDTO::getId))) {
+                descriptions.put((Long) description[0], (String) description[1]);
+            }
+            rows.forEach(row -> row.setDescription(descriptions.get(row.getId())));
+        }
+    }
+
+    /**
+     * Получить электротовары по ID одним запросом; отсутствующие ID пропускаются
+     */
+    public Map<Long, ElectroItem> getElectroItemsByIds(Collection<Long> ids) {
+        return Expansions.byId(electroItemRepository.findAllById(ids), ElectroItem::getId);
     }
 
     /**
      * Получить электротовар по ID
      */
+    @Transactional(readOnly = true)
     public ElectroItem getElectroItemById(Long id) {
         return electroItemRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("ElectroItem not found for ID: " + id));
     }
 
     /**
-     * Создать новый электротовар
+     * Получить электротовар по ID вместе со связанными сущностями для карточки
+     */
+    @Transactional(readOnly = true)
+    public ElectroItem getElectroItemWithAssociationsById(Long id) {
+        return electroItemRepository.findWithAssociationsById(id).orElseThrow(() -> new ResourceNotFoundException("ElectroItem not found for ID: " + id));
+    }
+
+    /**
+     * Получить электротовары по списку ID в порядке запроса с перечнем ненайденных ID
      */
+    @Transactional(readOnly = true)
+    public BatchResult<ElectroItem> getElectroItemBatch(Collection<Long> ids) {
+        List<Long> distinct = Batches.distinctIds(ids, maxBatchIds);
+        return Batches.result(distinct, electroItemRepository.findByIdIn(distinct), ElectroItem::getId);
+    }
+
+    /**
+     * Создать новый электротовар. Общее количество складывается из остатков в магазинах,
+     * поэтому новый товар создается с нулевым количеством
+     */
+    @Transactional
     public ElectroItem createElectroItem(ElectroItemDTO electroItemDTO) {
         ElectroItem electroItem = new ElectroItem();
         System.out.println(electroItemDTO.getETypeId());
         electroItem.setName(electroItemDTO.getName());
         electroItem.setEType(electroTypeService.getElectroTypeById(electroItemDTO.getETypeId()));
         electroItem.setPrice(electroItemDTO.getPrice());
-        electroItem.setCount(electroItemDTO.getCount());
+        electroItem.setCount(0);
         electroItem.setArchive(false);
         electroItem.setDescription(electroItemDTO.getDescription());
         return electroItemRepository.save(electroItem);
     }
 
     /**
-     * Обновить существующий электротовар
+     * Обновить существующий электротовар; общее количество не меняется
      */
+    @Transactional
     public ElectroItem updateElectroItem(Long id, ElectroItem updatedElectroItem) {
-        if (electroItemRepository.existsById(id)) {
-            updatedElectroItem.setId(id);
-            return electroItemRepository.save(updatedElectroItem);
+        ElectroItem existingElectroItem = getElectroItemById(id);
+        Versions.check(ElectroItem.class, id, updatedElectroItem.getVersion(), existingElectroItem.getVersion());
+        existingElectroItem.setName(updatedElectroItem.getName());
+        existingElectroItem.setEType(updatedElectroItem.getEType());
+        existingElectroItem.setPrice(updatedElectroItem.getPrice());
+        existingElectroItem.setArchive(updatedElectroItem.isArchive());
+        existingElectroItem.setDescription(updatedElectroItem.getDescription());
+        return electroItemRepository.save(existingElectroItem);
+    }
+
+    /**
+     * Изменить общее количество товара вместе с остатком в магазине
+     */
+    public void adjustCount(Long id, int delta) {
+        if (delta != 0) {
+            electroItemRepository.adjustCount(id, delta);
+        }
+    }
+
+    /**
+     * Пересчитать общее количество всех товаров по остаткам в магазинах
+     *
+     * @return количество исправленных товаров
+     */
+    @Scheduled(cron = "${stock.reconcile.cron: 0 0 3 * * *}")
+    public int reconcileCounts() {
+        return electroItemRepository.reconcileCounts();
+    }
+
+    /**
+     * Пересчитать общее количество указанных товаров по остаткам в магазинах
+     */
+    public void reconcileCounts(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            electroItemRepository.reconcileCounts(ids);
         }
-        throw new ResourceNotFoundException("ElectroItem not found for ID: " + id);
     }
 
     /**
@@ -115,17 +295,18 @@ public class ElectroItemService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
+            List<String[]> rows = CsvRows.readAll(csvReader);
+            Map<Long, ElectroItem> existing = getElectroItemsByIds(CsvRows.ids(rows, 0));
             List<ElectroItem> electroItems = new ArrayList<>();
-            String[] values;
 
-            while ((values = csvReader.readNext()) != null) {
+            for (String[] values : rows) {
                 try {
-                    ElectroItem electroItem = new ElectroItem();
-                    electroItem.setId(Long.valueOf(values[0]));
+                    // Существующая строка обновляется через загруженную сущность, чтобы сохранить ее версию;
+                    // новая получает ID из последовательности, как и раньше при слиянии
+                    Long id = Long.valueOf(values[0]);
+                    ElectroItem electroItem = existing.getOrDefault(id, new ElectroItem());
                     electroItem.setName(values[1]);
                     electroItem.setEType(electroTypeService.getElectroTypeById(Long.valueOf(values[2])));
                     electroItem.setPrice(Long.valueOf(values[3]));
@@ -138,6 +319,11 @@ public class ElectroItemService {
                 }
             }
             electroItemRepository.saveAll(electroItems);
+            Set<Long> ids = new HashSet<>();
+            for (ElectroItem electroItem : electroItems) {
+                ids.add(electroItem.getId());
+            }
+            reconcileCounts(ids);
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -11,12 +10,27 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.isands.test.estore.dao.entity.ElectroItem;
 import ru.isands.test.estore.dao.entity.ElectroShop;
 import ru.isands.test.estore.dao.entity.ElectroShopPK;
+import ru.isands.test.estore.dao.entity.Shop;
 import ru.isands.test.estore.dao.repo.ElectroShopRepository;
+import ru.isands.test.estore.dto.CursorPage;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
 import ru.isands.test.estore.dto.ElectroShopDTO;
+import ru.isands.test.estore.dto.ElectroShopRowDTO;
+import ru.isands.test.estore.dto.StockCountDTO;
+import ru.isands.test.estore.dto.StockMatrixDTO;
 import ru.isands.test.estore.exeption.CsvProcessingException;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.stock.AvailabilityIndexService;
+import ru.isands.test.estore.stock.StockLedgerService;
+import ru.isands.test.estore.util.CsvRows;
+import ru.isands.test.estore.util.Cursors;
+import ru.isands.test.estore.util.Expansions;
+import ru.isands.test.estore.util.TransactionHooks;
+import ru.isands.test.estore.util.Versions;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -25,7 +39,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class ElectroShopService {
@@ -33,69 +54,245 @@ public class ElectroShopService {
     private final ElectroShopRepository electroShopRepository;
     private final ShopService shopService;
     private final ElectroItemService electroItemService;
+    private final StockLedgerService stockLedgerService;
+    private final AvailabilityIndexService availabilityIndexService;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${availability.bulk.max-cells: 10000}")
+    private int maxBulkCells;
+
+    @Value("${scroll.max.size: 1000}")
+    private int maxScrollSize;
+
     @Autowired
-    public ElectroShopService(ElectroShopRepository electroShopRepository, ShopService shopService, ElectroItemService electroItemService) {
+    public ElectroShopService(ElectroShopRepository electroShopRepository, ShopService shopService, ElectroItemService electroItemService, StockLedgerService stockLedgerService, AvailabilityIndexService availabilityIndexService) {
         this.electroShopRepository = electroShopRepository;
         this.shopService = shopService;
         this.electroItemService = electroItemService;
+        this.stockLedgerService = stockLedgerService;
+        this.availabilityIndexService = availabilityIndexService;
+    }
+
+    /**
+     * Получить страницу остатков без связанных объектов; expand добавляет shop и electroItem
+     */
+    @Transactional(readOnly = true)
+    public Page<ElectroShopRowDTO> getElectroShopRows(Pageable pageable, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "shop", "electroItem");
+        Page<ElectroShopRowDTO> page = electroShopRepository.findRows(pageable);
+        expandElectroShops(page.getContent(), expansions);
+        return page;
     }
 
     /**
-     * Получить список связей электротоваров и магазинов с постраничным выводом
+     * Получить страницу остатков по курсору (ID товара, ID магазина) без подсчета общего количества
      */
-    public Page<ElectroShop> getAllElectroShops(Pageable pageable) {
-        return electroShopRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public CursorPage<ElectroShopRowDTO> scrollElectroShopRows(String cursor, int size, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "shop", "electroItem");
+        long[] after = Cursors.decode(cursor, 2);
+        Pageable limit = Cursors.limit(size, maxScrollSize);
+        List<ElectroShopRowDTO> rows = after == null ? electroShopRepository.scrollRows(limit)
+                : electroShopRepository.scrollRowsAfter(after[0], after[1], limit);
+        CursorPage<ElectroShopRowDTO> page = Cursors.page(rows, size, row -> Cursors.encode(row.getElectroItemId(), row.getShopId()));
+        expandElectroShops(page.getContent(), expansions);
+        return page;
+    }
+
+    private void expandElectroShops(List<ElectroShopRowDTO> rows, Set<String> expansions) {
+        if (!rows.isEmpty() && expansions.contains("shop")) {
+            Map<Long, Shop> shops = Expansions.byId(shopService.getShopsByIds(Expansions.ids(rows, ElectroShopRowDTO::getShopId)), Shop::getId);
+            rows.forEach(row -> row.setShop(shops.get(row.getShopId())));
+        }
+        if (!rows.isEmpty() && expansions.contains("electroItem")) {
+            Map<Long, ElectroItemRowDTO> items = Expansions.byId(
+                    electroItemService.getElectroItemRowsByIds(Expansions.ids(rows, ElectroShopRowDTO::getElectroItemId)), ElectroItemRowDTO::getId);
+            rows.forEach(row -> row.setElectroItem(items.get(row.getElectroItemId())));
+        }
     }
 
     /**
      * Получить связь электротовара и магазина по составному ключу
      */
+    @Transactional(readOnly = true)
     public ElectroShop getElectroShopById(ElectroShopPK id) {
         return electroShopRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Товар с ID: " + id.getElectroItem() + " не доступен в магазине с ID: " + id.getShop()));
     }
 
+    /**
+     * Получить связь электротовара и магазина по составному ключу вместе со связанными сущностями для карточки
+     */
+    @Transactional(readOnly = true)
+    public ElectroShop getElectroShopWithAssociationsById(ElectroShopPK id) {
+        return electroShopRepository.findWithAssociationsById(id).orElseThrow(() -> new ResourceNotFoundException("Товар с ID: " + id.getElectroItem() + " не доступен в магазине с ID: " + id.getShop()));
+    }
+
     /**
      * Создать новую связь электротовара и магазина
      */
+    @Transactional
     public ElectroShop createElectroShop(ElectroShopDTO electroShopDTO) {
         ElectroShopPK id = new ElectroShopPK(electroShopDTO.getElectroItemId(), electroShopDTO.getShopId());
-        ElectroShop electroShop = new ElectroShop();
+        Shop shop = shopService.getShopById(electroShopDTO.getShopId());
+        ElectroItem electroItem = electroItemService.getElectroItemById(electroShopDTO.getElectroItemId());
+        // Существующая связь обновляется через загруженную сущность, чтобы сохранить ее версию
+        Optional<ElectroShop> existing = electroShopRepository.findById(id);
+        if (existing.isPresent() && inLedger(id)) {
+            TransactionHooks.afterCommit(() -> stockLedgerService.setCount(electroShopDTO.getShopId(), electroShopDTO.getElectroItemId(), electroShopDTO.getCount()));
+            return ledgerState(existing.get(), electroShopDTO.getCount());
+        }
+        ElectroShop electroShop = existing.orElseGet(ElectroShop::new);
+        int previousCount = existing.map(ElectroShop::getCount).orElse(0);
         electroShop.setId(id);
-        electroShop.setShop(shopService.getShopById(electroShopDTO.getShopId()));
-        electroShop.setElectroItem(electroItemService.getElectroItemById(electroShopDTO.getElectroItemId()));
+        electroShop.setShop(shop);
+        electroShop.setElectroItem(electroItem);
         electroShop.setCount(electroShopDTO.getCount());
-        return electroShopRepository.save(electroShop);
+        ElectroShop savedElectroShop = electroShopRepository.save(electroShop);
+        electroItemService.adjustCount(electroShopDTO.getElectroItemId(), savedElectroShop.getCount() - previousCount);
+        if (stockLedgerService.isEnabled()) {
+            TransactionHooks.afterCommit(() -> stockLedgerService.register(electroShopDTO.getShopId(), electroShopDTO.getElectroItemId(), electroShopDTO.getCount()));
+        }
+        availabilityIndexService.onCountChanged(electroShopDTO.getShopId(), electroShopDTO.getElectroItemId(), electroShopDTO.getCount());
+        return savedElectroShop;
     }
 
     /**
      * Обновить связь электротовара и магазина
      */
+    @Transactional
     public ElectroShop updateElectroShop(ElectroShopPK id, ElectroShop updatedEelectroShop) {
-        if (electroShopRepository.existsById(id)) {
-            updatedEelectroShop.setId(id);
-            return electroShopRepository.save(updatedEelectroShop);
+        ElectroShop existingElectroShop = getElectroShopById(id);
+        Versions.check(ElectroShop.class, id, updatedEelectroShop.getVersion(), existingElectroShop.getVersion());
+        if (inLedger(id)) {
+            TransactionHooks.afterCommit(() -> stockLedgerService.setCount(id.getShop(), id.getElectroItem(), updatedEelectroShop.getCount()));
+            return ledgerState(existingElectroShop, updatedEelectroShop.getCount());
         }
-        throw new ResourceNotFoundException("Purchase not found for ID: " + id);
+        int previousCount = existingElectroShop.getCount();
+        Long electroItemId = existingElectroShop.getElectroItem().getId();
+        existingElectroShop.setCount(updatedEelectroShop.getCount());
+        ElectroShop savedElectroShop = electroShopRepository.save(existingElectroShop);
+        electroItemService.adjustCount(electroItemId, savedElectroShop.getCount() - previousCount);
+        if (stockLedgerService.isEnabled()) {
+            TransactionHooks.afterCommit(() -> stockLedgerService.register(id.getShop(), id.getElectroItem(), savedElectroShop.getCount()));
+        }
+        availabilityIndexService.onCountChanged(id.getShop(), id.getElectroItem(), savedElectroShop.getCount());
+        return savedElectroShop;
+    }
+
+    /**
+     * Остаток связи меняется через журнал: журнал включен и уже знает связь
+     */
+    private boolean inLedger(ElectroShopPK id) {
+        return stockLedgerService.isEnabled() && stockLedgerService.getCount(id.getShop(), id.getElectroItem()) >= 0;
+    }
+
+    /**
+     * Связь с остатком, который журнал получит после фиксации. Загруженная сущность не меняется,
+     * иначе Hibernate записал бы остаток в store_eshop в обход журнала.
+     */
+    private static ElectroShop ledgerState(ElectroShop persisted, int count) {
+        ElectroShop electroShop = new ElectroShop();
+        electroShop.setId(persisted.getId());
+        electroShop.setShop(persisted.getShop());
+        electroShop.setElectroItem(persisted.getElectroItem());
+        electroShop.setVersion(persisted.getVersion());
+        electroShop.setCount(count);
+        return electroShop;
+    }
+
+    /**
+     * Списать единицу товара в магазине при покупке
+     */
+    @Transactional
+    public void reserveItem(Long shopId, Long itemId) {
+        ElectroShop electroShop = getElectroShopById(new ElectroShopPK(itemId, shopId));
+        if (electroShop.getCount() <= 0) {
+            throw new ResourceNotFoundException("Товар с ID: " + itemId + " не доступен в магазине с ID: " + shopId);
+        }
+        electroShop.setCount(electroShop.getCount() - 1);
+        electroShopRepository.save(electroShop);
+        electroItemService.adjustCount(itemId, -1);
+        availabilityIndexService.onCountChanged(shopId, itemId, electroShop.getCount());
     }
 
     /**
      * Удалить связь электротовара и магазина по составному ключу
      */
+    @Transactional
     public void deleteElectroShop(ElectroShopPK id) {
-        if (electroShopRepository.existsById(id)) {
-            electroShopRepository.deleteById(id);
-        }
+        electroShopRepository.findById(id).ifPresent(electroShop -> {
+            electroShopRepository.delete(electroShop);
+            if (stockLedgerService.isEnabled()) {
+                // Остаток в БД может отставать от журнала: общее количество пересчитывается по оставшимся строкам store_eshop,
+                // а несброшенные изменения удаленной связи отбрасываются после фиксации
+                electroItemService.reconcileCounts(Collections.singleton(id.getElectroItem()));
+                TransactionHooks.afterCommit(() -> stockLedgerService.remove(id.getShop(), id.getElectroItem()));
+            } else {
+                electroItemService.adjustCount(electroShop.getElectroItem().getId(), -electroShop.getCount());
+            }
+            availabilityIndexService.onCountChanged(id.getShop(), id.getElectroItem(), 0);
+        });
     }
 
     /**
      * Проверка на наличие товара в магазине
      */
     public boolean checkItemAvailability(Long shopId, Long itemId) {
-        return electroShopRepository.isItemAvailable(shopId, itemId);
+        if (stockLedgerService.isEnabled()) {
+            return stockLedgerService.getCount(shopId, itemId) > 0;
+        }
+        return availabilityIndexService.isAvailable(shopId, itemId);
+    }
+
+    /**
+     * Остатки набора товаров в наборе магазинов одним запросом
+     */
+    @Transactional(readOnly = true)
+    public StockMatrixDTO getStockMatrix(List<Long> shopIds, List<Long> itemIds) {
+        List<Long> shops = new ArrayList<>(new LinkedHashSet<>(shopIds));
+        List<Long> items = new ArrayList<>(new LinkedHashSet<>(itemIds));
+        if ((long) shops.size() * items.size() > maxBulkCells) {
+            throw new RequestLimitExceededException("Превышен размер запроса: " + shops.size() + " x " + items.size()
+                    + " пар магазин-товар, максимальный: " + maxBulkCells);
+        }
+        int[][] counts = new int[shops.size()][items.size()];
+        if (shops.isEmpty() || items.isEmpty()) {
+            return new StockMatrixDTO(shops, items, counts);
+        }
+
+        if (stockLedgerService.isEnabled()) {
+            for (int i = 0; i < shops.size(); i++) {
+                for (int j = 0; j < items.size(); j++) {
+                    counts[i][j] = Math.max(0, stockLedgerService.getCount(shops.get(i), items.get(j)));
+                }
+            }
+            return new StockMatrixDTO(shops, items, counts);
+        }
+
+        Map<Long, Integer> shopIndex = indexOf(shops);
+        Map<Long, Integer> itemIndex = indexOf(items);
+        for (StockCountDTO stockCount : electroShopRepository.findCounts(shops, items)) {
+            counts[shopIndex.get(stockCount.getShopId())][itemIndex.get(stockCount.getElectroItemId())] = stockCount.getCount();
+        }
+        return new StockMatrixDTO(shops, items, counts);
+    }
+
+    private static Set<Long> electroItemIds(List<ElectroShop> electroShops) {
+        Set<Long> ids = new HashSet<>();
+        for (ElectroShop electroShop : electroShops) {
+            ids.add(electroShop.getElectroItem().getId());
+        }
+        return ids;
+    }
+
+    private static Map<Long, Integer> indexOf(List<Long> ids) {
+        Map<Long, Integer> index = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            index.put(ids.get(i), i);
+        }
+        return index;
     }
 
     /**
@@ -123,34 +320,92 @@ public class ElectroShopService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
+            List<String[]> rows = CsvRows.readAll(csvReader);
+            Map<Long, ElectroItem> electroItems = electroItemService.getElectroItemsByIds(CsvRows.ids(rows, 1));
+            // В режиме журнала остатки известных связей меняются только через журнал, поэтому сущности не загружаются
+            Map<ElectroShopPK, ElectroShop> existing = stockLedgerService.isEnabled() ? new HashMap<>() : getExistingElectroShops(rows);
             List<ElectroShop> electroShops = new ArrayList<>();
-            String[] values;
 
-            while ((values = csvReader.readNext()) != null) {
+            for (String[] values : rows) {
                 try {
-                    ElectroShop electroShop = new ElectroShop();
+                    ElectroShopPK id = csvId(values);
+                    // Существующая строка обновляется через загруженную сущность, чтобы сохранить ее версию
+                    ElectroShop electroShop = existing.getOrDefault(id, new ElectroShop());
 
-                    electroShop.setId(new ElectroShopPK(
-                            Long.valueOf(values[0]),
-                            Long.valueOf(values[1])
-                    ));
+                    electroShop.setId(id);
                     electroShop.setShop(shopService.getShopById(Long.valueOf(values[0])));
-                    electroShop.setElectroItem(electroItemService.getElectroItemById(Long.valueOf(values[1])));
+                    electroShop.setElectroItem(CsvRows.require(electroItems, Long.valueOf(values[1]), "ElectroItem"));
                     electroShop.setCount(Integer.valueOf(values[2]));
                     electroShops.add(electroShop);
                 } catch (ResourceNotFoundException | NumberFormatException e) {
                     throw new CsvProcessingException("Ошибка обработки строки CSV: " + Arrays.toString(values) + ". " + e.getMessage());
                 }
             }
-            electroShopRepository.saveAll(electroShops);
+            if (stockLedgerService.isEnabled()) {
+                saveWithLedger(electroShops);
+            } else {
+                electroShopRepository.saveAll(electroShops);
+                electroItemService.reconcileCounts(electroItemIds(electroShops));
+                for (ElectroShop electroShop : electroShops) {
+                    availabilityIndexService.onCountChanged(electroShop.getShop().getId(), electroShop.getElectroItem().getId(), electroShop.getCount());
+                }
+            }
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
     }
 
+    /**
+     * Ключ связи из строки импорта: в файле, как и в выгрузке ElectroShop, сначала ID магазина, затем ID товара
+     */
+    static ElectroShopPK csvId(String[] values) {
+        return new ElectroShopPK(Long.valueOf(values[1]), Long.valueOf(values[0]));
+    }
 
+    /**
+     * Связи из БД с ключами строк импорта; строки с некорректными ID пропускаются и отклоняются при разборе
+     */
+    private Map<ElectroShopPK, ElectroShop> getExistingElectroShops(List<String[]> rows) {
+        List<ElectroShopPK> ids = new ArrayList<>();
+        for (String[] values : rows) {
+            try {
+                ids.add(csvId(values));
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException ignored) {
+                // строка будет отклонена при разборе
+            }
+        }
+        Map<ElectroShopPK, ElectroShop> existing = new HashMap<>();
+        for (ElectroShop electroShop : electroShopRepository.findAllById(ids)) {
+            existing.put(electroShop.getId(), electroShop);
+        }
+        return existing;
+    }
+
+    /**
+     * Импорт в режиме журнала остатков: остатки существующих связей меняются через журнал,
+     * новые связи записываются в БД и попадают в журнал после фиксации транзакции
+     */
+    private void saveWithLedger(List<ElectroShop> electroShops) {
+        List<ElectroShop> created = new ArrayList<>();
+        List<ElectroShop> existing = new ArrayList<>();
+        for (ElectroShop electroShop : electroShops) {
+            if (stockLedgerService.getCount(electroShop.getShop().getId(), electroShop.getElectroItem().getId()) >= 0) {
+                existing.add(electroShop);
+            } else {
+                created.add(electroShop);
+            }
+        }
+        electroShopRepository.saveAll(created);
+        electroItemService.reconcileCounts(electroItemIds(created));
+        TransactionHooks.afterCommit(() -> {
+            for (ElectroShop electroShop : existing) {
+                stockLedgerService.setCount(electroShop.getShop().getId(), electroShop.getElectroItem().getId(), electroShop.getCount());
+            }
+            for (ElectroShop electroShop : created) {
+                stockLedgerService.register(electroShop.getShop().getId(), electroShop.getElectroItem().getId(), electroShop.getCount());
+            }
+        });
+    }
 }
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -11,11 +10,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.isands.test.estore.analytics.AnalyticsCache;
 import ru.isands.test.estore.dao.entity.ElectroType;
 import ru.isands.test.estore.dao.repo.ElectroTypeRepository;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.exeption.CsvProcessingException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.Batches;
+import ru.isands.test.estore.util.CsvRows;
 
+import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -23,25 +27,34 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 @Service
 public class ElectroTypeService {
 
     private final ElectroTypeRepository electroTypeRepository;
+    private final AnalyticsCache analyticsCache;
+    private final EntityManager entityManager;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${batch.max.ids: 500}")
+    private int maxBatchIds;
+
 
     @Autowired
-    public ElectroTypeService(ElectroTypeRepository electroTypeRepository) {
+    public ElectroTypeService(ElectroTypeRepository electroTypeRepository, AnalyticsCache analyticsCache, EntityManager entityManager) {
         this.electroTypeRepository = electroTypeRepository;
+        this.analyticsCache = analyticsCache;
+        this.entityManager = entityManager;
     }
 
     /**
      * Получить типы электроники с постраничным выводом
      */
+    @Transactional(readOnly = true)
     public Page<ElectroType> getAllElectroTypes(Pageable pageable) {
         return electroTypeRepository.findAll(pageable);
     }
@@ -49,10 +62,36 @@ public class ElectroTypeService {
     /**
      * Получить тип электроники по ID
      */
+    @Transactional(readOnly = true)
     public ElectroType getElectroTypeById(Long id) {
         return electroTypeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("ElectroType not found for ID: " + id));
     }
 
+    /**
+     * Получить типы электроники по ID; отсутствующие ID пропускаются, найденные берутся из кэша второго уровня, остальные загружаются одним запросом
+     */
+    @Transactional(readOnly = true)
+    public List<ElectroType> getElectroTypesByIds(Collection<Long> ids) {
+        return Batches.multiLoad(entityManager, ElectroType.class, ids);
+    }
+
+    /**
+     * Получить типы электроники по списку ID в порядке запроса с перечнем ненайденных ID
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<ElectroType> getElectroTypeBatch(Collection<Long> ids) {
+        List<Long> distinct = Batches.distinctIds(ids, maxBatchIds);
+        return Batches.result(distinct, getElectroTypesByIds(distinct), ElectroType::getId);
+    }
+
+    /**
+     * Получить ID типов электроники по названию
+     */
+    @Transactional(readOnly = true)
+    public List<Long> getElectroTypeIdsByName(String name) {
+        return electroTypeRepository.findIdsByName(name);
+    }
+
     /**
      * Создать новый тип электроники
      */
@@ -66,7 +105,9 @@ public class ElectroTypeService {
     public ElectroType updateElectroType(Long id, ElectroType updatedElectroType) {
         if (electroTypeRepository.existsById(id)) {
             updatedElectroType.setId(id);
-            return electroTypeRepository.save(updatedElectroType);
+            ElectroType savedElectroType = electroTypeRepository.save(updatedElectroType);
+            analyticsCache.invalidateAll();
+            return savedElectroType;
         }
         throw new ResourceNotFoundException("ElectroType not found for ID: " + id);
     }
@@ -77,6 +118,7 @@ public class ElectroTypeService {
     public void deleteElectroType(Long id) {
         if (electroTypeRepository.existsById(id)) {
             electroTypeRepository.deleteById(id);
+            analyticsCache.invalidateAll();
         }
     }
 
@@ -105,9 +147,7 @@ public class ElectroTypeService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
             List<ElectroType> electroTypes = new ArrayList<>();
             String[] values;
@@ -124,6 +164,7 @@ public class ElectroTypeService {
                 }
             }
             electroTypeRepository.saveAll(electroTypes);
+            analyticsCache.invalidateAll();
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
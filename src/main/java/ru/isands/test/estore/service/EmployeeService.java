@@ -1,22 +1,38 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.isands.test.estore.analytics.AnalyticsCache;
+import ru.isands.test.estore.analytics.EmployeeLeaderboardService;
+import ru.isands.test.estore.analytics.PurchaseAnalyticsService;
+import ru.isands.test.estore.analytics.PurchaseColumnStore;
+import ru.isands.test.estore.analytics.SalesCubeService;
 import ru.isands.test.estore.dao.entity.Employee;
+import ru.isands.test.estore.dao.entity.PositionType;
+import ru.isands.test.estore.dao.entity.Shop;
 import ru.isands.test.estore.dao.repo.EmployeeRepository;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.dto.BestEmployeeDTO;
+import ru.isands.test.estore.dto.CursorPage;
 import ru.isands.test.estore.dto.EmployeeDTO;
+import ru.isands.test.estore.dto.EmployeeRowDTO;
 import ru.isands.test.estore.exeption.CsvProcessingException;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.Batches;
+import ru.isands.test.estore.util.CsvRows;
+import ru.isands.test.estore.util.Cursors;
+import ru.isands.test.estore.util.Expansions;
+import ru.isands.test.estore.util.Versions;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -25,7 +41,13 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class EmployeeService {
@@ -33,35 +55,118 @@ public class EmployeeService {
     private final EmployeeRepository employeeRepository;
     private final PositionTypeService positionTypeService;
     private final ShopService shopService;
+    private final EmployeeLeaderboardService employeeLeaderboardService;
+    private final ElectroTypeService electroTypeService;
+    private final PurchaseAnalyticsService purchaseAnalyticsService;
+    private final AnalyticsCache analyticsCache;
+    private final SalesCubeService salesCubeService;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${batch.max.ids: 500}")
+    private int maxBatchIds;
+
+    @Value("${ranking.max.limit: 1000}")
+    private int maxRankingLimit;
+
+    @Value("${scroll.max.size: 1000}")
+    private int maxScrollSize;
+
 
     @Autowired
-    public EmployeeService(EmployeeRepository employeeRepository, PositionTypeService positionTypeService, ShopService shopService) {
+    public EmployeeService(EmployeeRepository employeeRepository, PositionTypeService positionTypeService, ShopService shopService, EmployeeLeaderboardService employeeLeaderboardService, ElectroTypeService electroTypeService, PurchaseAnalyticsService purchaseAnalyticsService, AnalyticsCache analyticsCache, SalesCubeService salesCubeService) {
         this.employeeRepository = employeeRepository;
         this.positionTypeService = positionTypeService;
         this.shopService = shopService;
+        this.employeeLeaderboardService = employeeLeaderboardService;
+        this.electroTypeService = electroTypeService;
+        this.purchaseAnalyticsService = purchaseAnalyticsService;
+        this.analyticsCache = analyticsCache;
+        this.salesCubeService = salesCubeService;
+    }
+
+    /**
+     * Получить страницу сотрудников без связанных объектов; expand добавляет position и shop
+     */
+    @Transactional(readOnly = true)
+    public Page<EmployeeRowDTO> getEmployeeRows(Pageable pageable, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "position", "shop");
+        Page<EmployeeRowDTO> page = employeeRepository.findRows(pageable);
+        expandEmployees(page.getContent(), expansions);
+        return page;
     }
 
     /**
-     * Получить сотрудников с постраничным выводом
+     * Получить страницу сотрудников по курсору (ID) без подсчета общего количества
      */
-    public Page<Employee> getAllEmployees(Pageable pageable) {
-        return employeeRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public CursorPage<EmployeeRowDTO> scrollEmployeeRows(String cursor, int size, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "position", "shop");
+        long[] after = Cursors.decode(cursor, 1);
+        List<EmployeeRowDTO> rows = employeeRepository.scrollRowsAfter(after == null ? Long.MIN_VALUE : after[0],
+                Cursors.limit(size, maxScrollSize));
+        CursorPage<EmployeeRowDTO> page = Cursors.page(rows, size, row -> Cursors.encode(row.getId()));
+        expandEmployees(page.getContent(), expansions);
+        return page;
+    }
+
+    private void expandEmployees(List<EmployeeRowDTO> rows, Set<String> expansions) {
+        if (!rows.isEmpty() && expansions.contains("position")) {
+            Map<Long, PositionType> positions = Expansions.byId(
+                    positionTypeService.getPositionTypesByIds(Expansions.ids(rows, EmployeeRowDTO::getPositionId)), PositionType::getId);
+            rows.forEach(row -> row.setPosition(positions.get(row.getPositionId())));
+        }
+        if (!rows.isEmpty() && expansions.contains("shop")) {
+            Map<Long, Shop> shops = Expansions.byId(shopService.getShopsByIds(Expansions.ids(rows, EmployeeRowDTO::getShopId)), Shop::getId);
+            rows.forEach(row -> row.setShop(shops.get(row.getShopId())));
+        }
+    }
+
+    /**
+     * Получить сотрудников по ID без связанных объектов
+     */
+    @Transactional(readOnly = true)
+    public List<EmployeeRowDTO> getEmployeeRowsByIds(Collection<Long> ids) {
+        return ids.isEmpty() ? new ArrayList<>() : employeeRepository.findRowsByIds(ids);
+    }
+
+    /**
+     * Получить сотрудников по ID одним запросом; отсутствующие ID пропускаются
+     */
+    public Map<Long, Employee> getEmployeesByIds(Collection<Long> ids) {
+        return Expansions.byId(employeeRepository.findAllById(ids), Employee::getId);
     }
 
     /**
      * Получить сотрудника по ID
      */
+    @Transactional(readOnly = true)
     public Employee getEmployeeById(Long id) {
         return employeeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Employee not found for ID: " + id));
     }
 
+    /**
+     * Получить сотрудника по ID вместе со связанными сущностями для карточки
+     */
+    @Transactional(readOnly = true)
+    public Employee getEmployeeWithAssociationsById(Long id) {
+        return employeeRepository.findWithAssociationsById(id).orElseThrow(() -> new ResourceNotFoundException("Employee not found for ID: " + id));
+    }
+
+    /**
+     * Получить сотрудников по списку ID в порядке запроса с перечнем ненайденных ID
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<Employee> getEmployeeBatch(Collection<Long> ids) {
+        List<Long> distinct = Batches.distinctIds(ids, maxBatchIds);
+        return Batches.result(distinct, employeeRepository.findByIdIn(distinct), Employee::getId);
+    }
+
     /**
      * Создать нового сотрудника
      */
+    @Transactional
     public Employee createEmployee(EmployeeDTO employeeDTO) {
         Employee employee = new Employee();
         employee.setLastName(employeeDTO.getLastName());
@@ -71,18 +176,31 @@ public class EmployeeService {
         employee.setShop(shopService.getShopById(employeeDTO.getShopId()));
         employee.setPosition(positionTypeService.getPositionTypeById(employeeDTO.getPositionId()));
         employee.setGender(employeeDTO.isGender());
-        return employeeRepository.save(employee);
+        Employee savedEmployee = employeeRepository.save(employee);
+        employeeLeaderboardService.refreshEmployees();
+        analyticsCache.invalidateAll();
+        return savedEmployee;
     }
 
     /**
      * Обновить существующего сотрудника
      */
+    @Transactional
     public Employee updateEmployee(Long id, Employee updatedEmployee) {
-        if (employeeRepository.existsById(id)) {
-            updatedEmployee.setId(id);
-            return employeeRepository.save(updatedEmployee);
-        }
-        throw new ResourceNotFoundException("Employee not found for ID: " + id);
+        Employee existingEmployee = getEmployeeById(id);
+        Versions.check(Employee.class, id, updatedEmployee.getVersion(), existingEmployee.getVersion());
+        existingEmployee.setLastName(updatedEmployee.getLastName());
+        existingEmployee.setFirstName(updatedEmployee.getFirstName());
+        existingEmployee.setPatronymic(updatedEmployee.getPatronymic());
+        existingEmployee.setBirthDate(updatedEmployee.getBirthDate());
+        existingEmployee.setPosition(updatedEmployee.getPosition());
+        existingEmployee.setShop(updatedEmployee.getShop());
+        existingEmployee.setGender(updatedEmployee.isGender());
+        Employee savedEmployee = employeeRepository.save(existingEmployee);
+        employeeLeaderboardService.refreshEmployees();
+        salesCubeService.requestRebuild();
+        analyticsCache.invalidateAll();
+        return savedEmployee;
     }
 
     /**
@@ -91,39 +209,79 @@ public class EmployeeService {
     public void deleteEmployee(Long id) {
         if (employeeRepository.existsById(id)) {
             employeeRepository.deleteById(id);
+            employeeLeaderboardService.refreshEmployees();
+            analyticsCache.invalidateAll();
         }
     }
 
     /**
-     * Получить лучших сотрудников в зависимости от должности по сумме продаж
+     * Получить страницу лучших сотрудников в зависимости от должности по сумме продаж
      */
-    public List<BestEmployeeDTO> getBestEmployeesByTotalSales(int years, Long positionId) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -years);
-        Date date = calendar.getTime();
-
-        return employeeRepository.findBestEmployeesByTotalSales(date, positionId);
+    public List<BestEmployeeDTO> getBestEmployeesByTotalSales(int years, Long positionId, Integer limit, int page) {
+        LocalDate startDay = LocalDate.now().minusYears(years);
+        Pageable pageable = rankingPage(limit, page);
+        return analyticsCache.get(AnalyticsCache.position(positionId), Arrays.asList("totalSales", positionId, startDay, limit, page),
+                () -> employeeLeaderboardService.getBestEmployeesByTotalSales(startDay, positionId, pageable));
     }
 
     /**
-     * Получить лучших сотрудников в зависимости от должности по количеству продаж
+     * Получить страницу лучших сотрудников в зависимости от должности по количеству продаж
      */
-    public List<BestEmployeeDTO> getBestEmployeesByItemSold(int years, Long positionId) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, -years);
-        Date date = calendar.getTime();
-
-        return employeeRepository.findBestEmployeesByItemSold(date, positionId);
+    public List<BestEmployeeDTO> getBestEmployeesByItemSold(int years, Long positionId, Integer limit, int page) {
+        LocalDate startDay = LocalDate.now().minusYears(years);
+        Pageable pageable = rankingPage(limit, page);
+        return analyticsCache.get(AnalyticsCache.position(positionId), Arrays.asList("itemsSold", positionId, startDay, limit, page),
+                () -> employeeLeaderboardService.getBestEmployeesByItemSold(startDay, positionId, pageable));
     }
 
     /**
      * Вывод лучшего младшего продавца-консультанта, продавшего больше всех умных часов
      */
     public BestEmployeeDTO getBestJuniorConsultantBySmartWatches(String employeePosition, String electroItem) {
-        List<BestEmployeeDTO> result = employeeRepository.findBestJuniorConsultantBySmartWatches(employeePosition, electroItem);
+        return analyticsCache.get(AnalyticsCache.positionName(employeePosition), Arrays.asList("smartWatches", employeePosition, electroItem),
+                () -> findBestJuniorConsultantBySmartWatches(employeePosition, electroItem));
+    }
+
+    private BestEmployeeDTO findBestJuniorConsultantBySmartWatches(String employeePosition, String electroItem) {
+        if (purchaseAnalyticsService.isReady()) {
+            Map<Long, long[]> totals = purchaseAnalyticsService.aggregate(PurchaseColumnStore.Dimension.EMPLOYEE, new PurchaseColumnStore.Filter()
+                    .in(PurchaseColumnStore.Dimension.EMPLOYEE, employeeRepository.findIdsByPositionName(employeePosition))
+                    .in(PurchaseColumnStore.Dimension.ELECTRO_TYPE, electroTypeService.getElectroTypeIdsByName(electroItem)));
+            Map.Entry<Long, long[]> best = null;
+            for (Map.Entry<Long, long[]> entry : totals.entrySet()) {
+                if (best == null || entry.getValue()[0] > best.getValue()[0]
+                        || (entry.getValue()[0] == best.getValue()[0] && entry.getKey() < best.getKey())) {
+                    best = entry;
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            Employee employee = getEmployeeById(best.getKey());
+            return new BestEmployeeDTO(employee.getId(), employee.getFirstName(), employee.getLastName(),
+                    employee.getPosition().getName(), best.getValue()[0], best.getValue()[1]);
+        }
+        List<BestEmployeeDTO> result = employeeRepository.findBestJuniorConsultantBySmartWatches(employeePosition, electroItem, PageRequest.of(0, 1));
         return result.isEmpty() ? null : result.get(0);
     }
 
+    /**
+     * Страница рейтинга; без limit рейтинг возвращается целиком, как до постраничного вывода
+     */
+    private Pageable rankingPage(Integer limit, int page) {
+        if (limit == null) {
+            if (page != 0) {
+                throw new RequestLimitExceededException("Параметр page = " + page + " задан без limit");
+            }
+            return Pageable.unpaged();
+        }
+        if (limit < 1 || limit > maxRankingLimit || page < 0) {
+            throw new RequestLimitExceededException("Недопустимые параметры рейтинга: limit = " + limit + ", page = " + page
+                    + ", limit должен быть от 1 до " + maxRankingLimit);
+        }
+        return PageRequest.of(page, limit);
+    }
+
     /**
      * Создать новых сотрудников из файла .csv
      */
@@ -149,24 +307,25 @@ public class EmployeeService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
+            List<String[]> rows = CsvRows.readAll(csvReader);
+            Map<Long, Employee> existing = getEmployeesByIds(CsvRows.ids(rows, 0));
             List<Employee> employees = new ArrayList<>();
-            String[] values;
 
-            while ((values = csvReader.readNext()) != null) {
+            for (String[] values : rows) {
                 try {
-                    Employee employee = new Employee();
+                    // Существующая строка обновляется через загруженную сущность, чтобы сохранить ее версию;
+                    // новая получает ID из последовательности, как и раньше при слиянии
+                    Long id = Long.valueOf(values[0]);
+                    Employee employee = existing.getOrDefault(id, new Employee());
 
-                    employee.setId(Long.valueOf(values[0]));
                     employee.setLastName(values[1]);
                     employee.setFirstName(values[2]);
                     employee.setPatronymic(values[3]);
                     employee.setBirthDate(new SimpleDateFormat("dd.MM.yyyy").parse(values[4]));
                     employee.setPosition(positionTypeService.getPositionTypeById(Long.valueOf(values[5])));
-                    employee.setShop(shopService.getShopById(Long.valueOf(values[6])));
+                    employee.setShop(values[6].isEmpty() ? null : shopService.getShopById(Long.valueOf(values[6])));
                     employee.setGender(Boolean.parseBoolean(values[7]));
                     employees.add(employee);
                 } catch (ResourceNotFoundException | ParseException | NumberFormatException e) {
@@ -174,6 +333,9 @@ public class EmployeeService {
                 }
             }
             employeeRepository.saveAll(employees);
+            employeeLeaderboardService.refreshEmployees();
+            salesCubeService.requestRebuild();
+            analyticsCache.invalidateAll();
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -11,11 +10,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.isands.test.estore.analytics.AnalyticsCache;
+import ru.isands.test.estore.analytics.EmployeeLeaderboardService;
 import ru.isands.test.estore.dao.entity.PositionType;
 import ru.isands.test.estore.dao.repo.PositionTypeRepository;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.exeption.CsvProcessingException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.Batches;
+import ru.isands.test.estore.util.CsvRows;
 
+import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -23,24 +28,35 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 @Service
 public class PositionTypeService {
 
     private final PositionTypeRepository positionTypeRepository;
+    private final EntityManager entityManager;
+    private final EmployeeLeaderboardService employeeLeaderboardService;
+    private final AnalyticsCache analyticsCache;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${batch.max.ids: 500}")
+    private int maxBatchIds;
+
     @Autowired
-    public PositionTypeService(PositionTypeRepository positionTypeRepository) {
+    public PositionTypeService(PositionTypeRepository positionTypeRepository, EmployeeLeaderboardService employeeLeaderboardService, AnalyticsCache analyticsCache, EntityManager entityManager) {
         this.positionTypeRepository = positionTypeRepository;
+        this.employeeLeaderboardService = employeeLeaderboardService;
+        this.analyticsCache = analyticsCache;
+        this.entityManager = entityManager;
     }
 
     /**
      * Получить должности с постраничным выводом
      */
+    @Transactional(readOnly = true)
     public Page<PositionType> getAllPositionTypes(Pageable pageable) {
         return positionTypeRepository.findAll(pageable);
     }
@@ -48,10 +64,28 @@ public class PositionTypeService {
     /**
      * Получить должность по ID
      */
+    @Transactional(readOnly = true)
     public PositionType getPositionTypeById(Long id) {
         return positionTypeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("PositionType not found for ID: " + id));
     }
 
+    /**
+     * Получить должности по ID; отсутствующие ID пропускаются, найденные берутся из кэша второго уровня, остальные загружаются одним запросом
+     */
+    @Transactional(readOnly = true)
+    public List<PositionType> getPositionTypesByIds(Collection<Long> ids) {
+        return Batches.multiLoad(entityManager, PositionType.class, ids);
+    }
+
+    /**
+     * Получить должности по списку ID в порядке запроса с перечнем ненайденных ID
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<PositionType> getPositionTypeBatch(Collection<Long> ids) {
+        List<Long> distinct = Batches.distinctIds(ids, maxBatchIds);
+        return Batches.result(distinct, getPositionTypesByIds(distinct), PositionType::getId);
+    }
+
     /**
      * Создать новую должность
      */
@@ -65,7 +99,10 @@ public class PositionTypeService {
     public PositionType updatePositionType(Long id, PositionType updatedPositionType) {
         if (positionTypeRepository.existsById(id)) {
             updatedPositionType.setId(id);
-            return positionTypeRepository.save(updatedPositionType);
+            PositionType savedPositionType = positionTypeRepository.save(updatedPositionType);
+            employeeLeaderboardService.refreshEmployees();
+            analyticsCache.invalidateAll();
+            return savedPositionType;
         }
         throw new ResourceNotFoundException("PositionType not found for ID: " + id);
     }
@@ -76,6 +113,8 @@ public class PositionTypeService {
     public void deletePositionType(Long id) {
         if (positionTypeRepository.existsById(id)) {
             positionTypeRepository.deleteById(id);
+            employeeLeaderboardService.refreshEmployees();
+            analyticsCache.invalidateAll();
         }
     }
 
@@ -104,9 +143,7 @@ public class PositionTypeService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
             List<PositionType> positionTypes = new ArrayList<>();
             String[] values;
@@ -122,6 +159,8 @@ public class PositionTypeService {
                 }
             }
             positionTypeRepository.saveAll(positionTypes);
+            employeeLeaderboardService.refreshEmployees();
+            analyticsCache.invalidateAll();
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
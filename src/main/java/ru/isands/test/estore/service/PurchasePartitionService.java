@@ -0,0 +1,168 @@
+package ru.isands.test.estore.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.isands.test.estore.util.DateUtils;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Месячные секции store_purchase по purchase_date.
+ * Таблица создается секционированной скриптом schema-postgresql.sql, секции на текущий и следующие месяцы
+ * создаются при старте и по расписанию, секции старше срока хранения отсоединяются и переименовываются
+ * в store_purchase_archive_pYYYYMM. Запись покупки за месяц без секции создает секцию в отдельной короткой транзакции,
+ * чтобы исключительная блокировка store_purchase не держалась до конца оформления покупки. Такая транзакция ждет
+ * блокировки не дольше purchase.partition.lock.timeout.ms: создание секции копирует внешние ключи и ждет транзакции,
+ * уже писавшие в store_purchase или связанные таблицы, в том числе вызывающую, и без ограничения зависло бы навсегда.
+ */
+@Service
+public class PurchasePartitionService {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("store_purchase_p(\\d{6})");
+
+    private static final String PARTITIONED_SQL = "SELECT COUNT(*) FROM pg_class WHERE oid = to_regclass('store_purchase') AND relkind = 'p'";
+
+    private static final String PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass('store_purchase')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate maintenanceTransaction;
+    private final Set<YearMonth> known = ConcurrentHashMap.newKeySet();
+
+    @Value("${purchase.partition.ahead.months: 3}")
+    private int aheadMonths;
+
+    @Value("${purchase.partition.retention.months: 0}")
+    private int retentionMonths;
+
+    @Value("${purchase.partition.lock.timeout.ms: 5000}")
+    private long lockTimeoutMs;
+
+    private volatile boolean partitioned;
+
+    @Autowired
+    public PurchasePartitionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maintenanceTransaction = new TransactionTemplate(transactionManager);
+        this.maintenanceTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Создать недостающие секции для дат покупок в отдельной транзакции.
+     * Вызывается до первой записи текущей транзакции, иначе DDL ждет ее блокировки и завершается ошибкой по таймауту.
+     *
+     * @throws IllegalStateException если секцию не удалось создать
+     */
+    public void ensurePartitions(Collection<Date> purchaseDates) {
+        if (!partitioned) {
+            return;
+        }
+        Set<YearMonth> missing = new TreeSet<>();
+        for (Date date : purchaseDates) {
+            if (date == null) {
+                continue;
+            }
+            YearMonth month = YearMonth.from(DateUtils.toLocalDate(date));
+            if (!known.contains(month)) {
+                missing.add(month);
+            }
+        }
+        if (!missing.isEmpty()) {
+            createPartitions(missing);
+        }
+    }
+
+    private synchronized void createPartitions(Set<YearMonth> months) {
+        months.removeAll(known);
+        if (months.isEmpty()) {
+            return;
+        }
+        try {
+            maintenanceTransaction.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                months.forEach(this::createPartition);
+            });
+        } catch (DataAccessException e) {
+            throw new IllegalStateException("Не удалось создать секции store_purchase за " + months
+                    + ": " + e.getMostSpecificCause().getMessage(), e);
+        }
+        known.addAll(months);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintain();
+    }
+
+    /**
+     * Создать секции на текущий и следующие месяцы и отсоединить секции старше срока хранения
+     */
+    @Scheduled(cron = "${purchase.partition.cron: 0 0 2 * * *}")
+    public synchronized void maintain() {
+        Integer count = jdbcTemplate.queryForObject(PARTITIONED_SQL, Integer.class);
+        partitioned = count != null && count > 0;
+        if (!partitioned) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        maintenanceTransaction.executeWithoutResult(status -> {
+            for (int i = 0; i <= aheadMonths; i++) {
+                createPartition(current.plusMonths(i));
+            }
+        });
+
+        Set<YearMonth> existing = new TreeSet<>();
+        List<String> names = jdbcTemplate.queryForList(PARTITIONS_SQL, String.class);
+        for (String name : names) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                existing.add(YearMonth.parse(matcher.group(1), SUFFIX));
+            }
+        }
+        if (retentionMonths > 0) {
+            YearMonth oldest = current.minusMonths(retentionMonths - 1);
+            for (YearMonth month : existing) {
+                if (month.isBefore(oldest)) {
+                    maintenanceTransaction.executeWithoutResult(status -> detachPartition(month));
+                }
+            }
+            existing.removeIf(month -> month.isBefore(oldest));
+        }
+        known.retainAll(existing);
+        known.addAll(existing);
+    }
+
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF store_purchase " +
+                "FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+    }
+
+    private void detachPartition(YearMonth month) {
+        String name = partitionName(month);
+        jdbcTemplate.execute("ALTER TABLE store_purchase DETACH PARTITION " + name);
+        jdbcTemplate.execute("ALTER TABLE " + name + " RENAME TO store_purchase_archive_p" + month.format(SUFFIX));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "store_purchase_p" + month.format(SUFFIX);
+    }
+}
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -11,13 +10,33 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
-import ru.isands.test.estore.dao.entity.ElectroShop;
-import ru.isands.test.estore.dao.entity.ElectroShopPK;
+import ru.isands.test.estore.analytics.AnalyticsCache;
+import ru.isands.test.estore.analytics.EmployeeLeaderboardService;
+import ru.isands.test.estore.analytics.PurchaseAnalyticsService;
+import ru.isands.test.estore.analytics.SalesCubeService;
+import ru.isands.test.estore.analytics.SalesRollupService;
+import ru.isands.test.estore.analytics.SalesWindowService;
+import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dao.entity.Employee;
 import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.dao.entity.PurchaseType;
+import ru.isands.test.estore.dao.entity.Shop;
 import ru.isands.test.estore.dao.repo.PurchaseRepository;
+import ru.isands.test.estore.dto.BatchResult;
+import ru.isands.test.estore.dto.CursorPage;
+import ru.isands.test.estore.dto.ElectroItemRowDTO;
+import ru.isands.test.estore.dto.EmployeeRowDTO;
 import ru.isands.test.estore.dto.PurchaseDTO;
+import ru.isands.test.estore.dto.PurchaseRowDTO;
 import ru.isands.test.estore.exeption.CsvProcessingException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.retry.OptimisticRetry;
+import ru.isands.test.estore.stock.StockLedgerService;
+import ru.isands.test.estore.util.Batches;
+import ru.isands.test.estore.util.CsvRows;
+import ru.isands.test.estore.util.Cursors;
+import ru.isands.test.estore.util.DateUtils;
+import ru.isands.test.estore.util.Expansions;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -26,10 +45,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class PurchaseService {
@@ -40,76 +64,205 @@ public class PurchaseService {
     private final PurchaseTypeService purchaseTypeService;
     private final ShopService shopService;
     private final ElectroShopService electroShopService;
+    private final StockLedgerService stockLedgerService;
+    private final EmployeeLeaderboardService employeeLeaderboardService;
+    private final SalesRollupService salesRollupService;
+    private final PurchaseAnalyticsService purchaseAnalyticsService;
+    private final AnalyticsCache analyticsCache;
+    private final SalesWindowService salesWindowService;
+    private final PurchasePartitionService purchasePartitionService;
+    private final SalesCubeService salesCubeService;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${batch.max.ids: 500}")
+    private int maxBatchIds;
+
+    @Value("${scroll.max.size: 1000}")
+    private int maxScrollSize;
+
     @Autowired
-    public PurchaseService(PurchaseRepository purchaseRepository, ElectroItemService electroItemService, EmployeeService employeeService, PurchaseTypeService purchaseTypeService, ShopService shopService, ElectroShopService electroShopService) {
+    public PurchaseService(PurchaseRepository purchaseRepository, ElectroItemService electroItemService, EmployeeService employeeService, PurchaseTypeService purchaseTypeService, ShopService shopService, ElectroShopService electroShopService, StockLedgerService stockLedgerService, EmployeeLeaderboardService employeeLeaderboardService, SalesRollupService salesRollupService, PurchaseAnalyticsService purchaseAnalyticsService, AnalyticsCache analyticsCache, SalesWindowService salesWindowService, PurchasePartitionService purchasePartitionService, SalesCubeService salesCubeService) {
         this.purchaseRepository = purchaseRepository;
         this.electroItemService = electroItemService;
         this.employeeService = employeeService;
         this.purchaseTypeService = purchaseTypeService;
         this.shopService = shopService;
         this.electroShopService = electroShopService;
+        this.stockLedgerService = stockLedgerService;
+        this.employeeLeaderboardService = employeeLeaderboardService;
+        this.salesRollupService = salesRollupService;
+        this.purchaseAnalyticsService = purchaseAnalyticsService;
+        this.analyticsCache = analyticsCache;
+        this.salesWindowService = salesWindowService;
+        this.purchasePartitionService = purchasePartitionService;
+        this.salesCubeService = salesCubeService;
     }
 
     /**
-     * Получить список покупок с постраничным выводом
+     * Получить страницу покупок без связанных объектов; expand добавляет electroItem, employee, shop и purchaseType
      */
-    public Page<Purchase> getAllPurchases(Pageable pageable) {
-        return purchaseRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public Page<PurchaseRowDTO> getPurchaseRows(Pageable pageable, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "electroItem", "employee", "shop", "purchaseType");
+        Page<PurchaseRowDTO> page = purchaseRepository.findRows(pageable);
+        expandPurchases(page.getContent(), expansions);
+        return page;
+    }
+
+    /**
+     * Получить страницу покупок от новых к старым по курсору (дата покупки, ID) без подсчета общего количества
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<PurchaseRowDTO> scrollPurchaseRows(String cursor, int size, List<String> expand) {
+        Set<String> expansions = Expansions.parse(expand, "electroItem", "employee", "shop", "purchaseType");
+        long[] after = Cursors.decode(cursor, 2);
+        Pageable limit = Cursors.limit(size, maxScrollSize);
+        List<PurchaseRowDTO> rows = after == null ? purchaseRepository.scrollRows(limit)
+                : purchaseRepository.scrollRowsAfter(new Date(after[0]), after[1], limit);
+        CursorPage<PurchaseRowDTO> page = Cursors.page(rows, size, row -> Cursors.encode(row.getPurchaseDate().getTime(), row.getId()));
+        expandPurchases(page.getContent(), expansions);
+        return page;
+    }
+
+    private void expandPurchases(List<PurchaseRowDTO> rows, Set<String> expansions) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (expansions.contains("electroItem")) {
+            Map<Long, ElectroItemRowDTO> items = Expansions.byId(
+                    electroItemService.getElectroItemRowsByIds(Expansions.ids(rows, PurchaseRowDTO::getElectroItemId)), ElectroItemRowDTO::getId);
+            rows.forEach(row -> row.setElectroItem(items.get(row.getElectroItemId())));
+        }
+        if (expansions.contains("employee")) {
+            Map<Long, EmployeeRowDTO> employees = Expansions.byId(
+                    employeeService.getEmployeeRowsByIds(Expansions.ids(rows, PurchaseRowDTO::getEmployeeId)), EmployeeRowDTO::getId);
+            rows.forEach(row -> row.setEmployee(employees.get(row.getEmployeeId())));
+        }
+        if (expansions.contains("shop")) {
+            Map<Long, Shop> shops = Expansions.byId(shopService.getShopsByIds(Expansions.ids(rows, PurchaseRowDTO::getShopId)), Shop::getId);
+            rows.forEach(row -> row.setShop(shops.get(row.getShopId())));
+        }
+        if (expansions.contains("purchaseType")) {
+            Map<Long, PurchaseType> types = Expansions.byId(
+                    purchaseTypeService.getPurchaseTypesByIds(Expansions.ids(rows, PurchaseRowDTO::getPurchaseTypeId)), PurchaseType::getId);
+            rows.forEach(row -> row.setPurchaseType(types.get(row.getPurchaseTypeId())));
+        }
     }
 
     /**
      * Получить покупку по ID
      */
+    @Transactional(readOnly = true)
     public Purchase getPurchaseById(Long id) {
         return purchaseRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Purchase not found for ID: " + id));
     }
 
+    /**
+     * Получить покупку по ID вместе со связанными сущностями для карточки
+     */
+    @Transactional(readOnly = true)
+    public Purchase getPurchaseWithAssociationsById(Long id) {
+        return purchaseRepository.findWithAssociationsById(id).orElseThrow(() -> new ResourceNotFoundException("Purchase not found for ID: " + id));
+    }
+
+    /**
+     * Получить покупки по списку ID в порядке запроса с перечнем ненайденных ID
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<Purchase> getPurchaseBatch(Collection<Long> ids) {
+        List<Long> distinct = Batches.distinctIds(ids, maxBatchIds);
+        return Batches.result(distinct, purchaseRepository.findByIdIn(distinct), Purchase::getId);
+    }
+
     /**
      * Обновить существующую покупку
      */
+    @Transactional
     public Purchase updatePurchase(Long id, Purchase updatedPurchase) {
-        if (purchaseRepository.existsById(id)) {
-            updatedPurchase.setId(id);
-            return purchaseRepository.save(updatedPurchase);
+        purchasePartitionService.ensurePartitions(Collections.singletonList(updatedPurchase.getPurchaseDate()));
+        Purchase existingPurchase = getPurchaseById(id);
+        LocalDate previousDay = DateUtils.toLocalDate(existingPurchase.getPurchaseDate());
+        if (updatedPurchase.getPrice() == null) {
+            updatedPurchase.setPrice(existingPurchase.getPrice());
+        }
+        updatedPurchase.setId(id);
+        Purchase savedPurchase = purchaseRepository.saveAndFlush(updatedPurchase);
+        LocalDate day = DateUtils.toLocalDate(savedPurchase.getPurchaseDate());
+        LocalDate first = day.isBefore(previousDay) ? day : previousDay;
+        LocalDate last = day.isBefore(previousDay) ? previousDay : day;
+        salesRollupService.rebuildDays(first, first);
+        if (!last.equals(first)) {
+            salesRollupService.rebuildDays(last, last);
         }
-        throw new ResourceNotFoundException("Purchase not found for ID: " + id);
+        employeeLeaderboardService.requestRebuild();
+        purchaseAnalyticsService.requestReload();
+        salesCubeService.requestRebuild();
+        analyticsCache.invalidateAll();
+        return savedPurchase;
     }
 
     /**
      * Создать новую покупку
      */
+    @OptimisticRetry
     @Transactional
     public Purchase createPurchase(PurchaseDTO purchaseDTO) {
         Purchase purchase = new Purchase();
+        purchase.setPurchaseDate(new Date());
+        // Секция создается до первой записи: DDL в отдельной транзакции ждал бы блокировки этой транзакции
+        purchasePartitionService.ensurePartitions(Collections.singletonList(purchase.getPurchaseDate()));
         purchase.setElectroItem(electroItemService.getElectroItemById(purchaseDTO.getElectroItemId()));
         purchase.setEmployee(employeeService.getEmployeeById(purchaseDTO.getEmployeeId()));
         purchase.setShop(shopService.getShopById(purchaseDTO.getShopId()));
-        purchase.setPurchaseDate(new Date());
         purchase.setPurchaseType(purchaseTypeService.getPurchaseTypeById(purchaseDTO.getPurchaseTypeId()));
+        purchase.setPrice(purchase.getElectroItem().getPrice());
 
-        ElectroShop electroShop = electroShopService.getElectroShopById(new ElectroShopPK(purchaseDTO.getElectroItemId(), purchaseDTO.getShopId()));
-
-        if (electroShop.getCount() > 0) {
-            electroShop.setCount(electroShop.getCount() - 1);
-            electroShopService.updateElectroShop(electroShop.getId(), electroShop);
-
-            return purchaseRepository.save(purchase);
+        if (stockLedgerService.isEnabled()) {
+            stockLedgerService.reserve(purchaseDTO.getShopId(), purchaseDTO.getElectroItemId());
         } else {
-            throw new ResourceNotFoundException("Товар с ID: " + purchaseDTO.getElectroItemId() + " не доступен в магазине с ID: " + purchaseDTO.getShopId());
+            electroShopService.reserveItem(purchaseDTO.getShopId(), purchaseDTO.getElectroItemId());
         }
+        Purchase savedPurchase = purchaseRepository.save(purchase);
+        salesRollupService.record(savedPurchase);
+        employeeLeaderboardService.onPurchase(savedPurchase);
+        purchaseAnalyticsService.onPurchase(savedPurchase);
+        salesWindowService.onPurchase(savedPurchase);
+        salesCubeService.onPurchase(savedPurchase);
+        analyticsCache.invalidate(AnalyticsCache.position(savedPurchase.getEmployee().getPosition().getId()),
+                AnalyticsCache.positionName(savedPurchase.getEmployee().getPosition().getName()),
+                AnalyticsCache.shop(savedPurchase.getShop().getId()));
+        return savedPurchase;
     }
 
     /**
      * Удалить покупку по ID
      */
+    @Transactional
     public void deletePurchase(Long id) {
-        if (purchaseRepository.existsById(id)) {
-            purchaseRepository.deleteById(id);
-        }
+        purchaseRepository.findById(id).ifPresent(purchase -> {
+            LocalDate day = DateUtils.toLocalDate(purchase.getPurchaseDate());
+            purchaseRepository.delete(purchase);
+            purchaseRepository.flush();
+            salesRollupService.rebuildDays(day, day);
+            employeeLeaderboardService.requestRebuild();
+            purchaseAnalyticsService.requestReload();
+            salesCubeService.requestRebuild();
+            analyticsCache.invalidateAll();
+        });
+    }
+
+    /**
+     * Пересчитать дневные итоги продаж по всем покупкам
+     *
+     * @return количество пересчитанных месяцев
+     */
+    public int rebuildSalesRollup() {
+        int months = salesRollupService.rebuildAll();
+        employeeLeaderboardService.requestRebuild();
+        analyticsCache.invalidateAll();
+        return months;
     }
 
     /**
@@ -137,28 +290,50 @@ public class PurchaseService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
+            List<String[]> rows = CsvRows.readAll(csvReader);
+            Map<Long, ElectroItem> electroItems = electroItemService.getElectroItemsByIds(CsvRows.ids(rows, 1));
+            Map<Long, Employee> employees = employeeService.getEmployeesByIds(CsvRows.ids(rows, 2));
             List<Purchase> purchases = new ArrayList<>();
-            String[] values;
 
-            while ((values = csvReader.readNext()) != null) {
+            for (String[] values : rows) {
                 try {
                     Purchase purchase = new Purchase();
                     purchase.setId(Long.valueOf(values[0]));
-                    purchase.setElectroItem(electroItemService.getElectroItemById(Long.valueOf(values[1])));
-                    purchase.setEmployee(employeeService.getEmployeeById(Long.valueOf(values[2])));
+                    purchase.setElectroItem(CsvRows.require(electroItems, Long.valueOf(values[1]), "ElectroItem"));
+                    purchase.setEmployee(CsvRows.require(employees, Long.valueOf(values[2]), "Employee"));
                     purchase.setPurchaseDate(new SimpleDateFormat("dd.MM.yyyy HH:mm").parse(values[3]));
                     purchase.setPurchaseType(purchaseTypeService.getPurchaseTypeById(Long.valueOf(values[4])));
                     purchase.setShop(shopService.getShopById(Long.valueOf(values[5])));
+                    // Цена продажи из выгрузки; в файлах прежнего формата ее нет, и берется текущая цена товара
+                    purchase.setPrice(values.length > 6 && !values[6].isEmpty() ? Long.valueOf(values[6]) : purchase.getElectroItem().getPrice());
                     purchases.add(purchase);
                 } catch (ResourceNotFoundException | ParseException | NumberFormatException e) {
                     throw new CsvProcessingException("Ошибка обработки строки CSV: " + Arrays.toString(values) + ". " + e.getMessage());
                 }
             }
+            List<Date> dates = new ArrayList<>();
+            for (Purchase purchase : purchases) {
+                dates.add(purchase.getPurchaseDate());
+            }
+            purchasePartitionService.ensurePartitions(dates);
             purchaseRepository.saveAll(purchases);
+            if (!purchases.isEmpty()) {
+                purchaseRepository.flush();
+                LocalDate from = null;
+                LocalDate to = null;
+                for (Purchase purchase : purchases) {
+                    LocalDate day = DateUtils.toLocalDate(purchase.getPurchaseDate());
+                    from = from == null || day.isBefore(from) ? day : from;
+                    to = to == null || day.isAfter(to) ? day : to;
+                }
+                salesRollupService.rebuildDays(from, to);
+            }
+            employeeLeaderboardService.requestRebuild();
+            purchaseAnalyticsService.requestReload();
+            salesCubeService.requestRebuild();
+            analyticsCache.invalidateAll();
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -11,11 +10,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.isands.test.estore.analytics.AnalyticsCache;
 import ru.isands.test.estore.dao.entity.PurchaseType;
 import ru.isands.test.estore.dao.repo.PurchaseTypeRepository;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.exeption.CsvProcessingException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.Batches;
+import ru.isands.test.estore.util.CsvRows;
 
+import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -23,24 +27,33 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 @Service
 public class PurchaseTypeService {
 
     private final PurchaseTypeRepository purchaseTypeRepository;
+    private final AnalyticsCache analyticsCache;
+    private final EntityManager entityManager;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${batch.max.ids: 500}")
+    private int maxBatchIds;
+
     @Autowired
-    public PurchaseTypeService(PurchaseTypeRepository purchaseTypeRepository) {
+    public PurchaseTypeService(PurchaseTypeRepository purchaseTypeRepository, AnalyticsCache analyticsCache, EntityManager entityManager) {
         this.purchaseTypeRepository = purchaseTypeRepository;
+        this.analyticsCache = analyticsCache;
+        this.entityManager = entityManager;
     }
 
     /**
      * Получить все типы покупок с постраничным выводом
      */
+    @Transactional(readOnly = true)
     public Page<PurchaseType> getAllPurchaseTypes(Pageable pageable) {
         return purchaseTypeRepository.findAll(pageable);
     }
@@ -48,10 +61,36 @@ public class PurchaseTypeService {
     /**
      * Получить тип покупки по ID
      */
+    @Transactional(readOnly = true)
     public PurchaseType getPurchaseTypeById(Long id) {
         return purchaseTypeRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("PurchaseType not found for ID: " + id));
     }
 
+    /**
+     * Получить способы оплаты по ID; отсутствующие ID пропускаются, найденные берутся из кэша второго уровня, остальные загружаются одним запросом
+     */
+    @Transactional(readOnly = true)
+    public List<PurchaseType> getPurchaseTypesByIds(Collection<Long> ids) {
+        return Batches.multiLoad(entityManager, PurchaseType.class, ids);
+    }
+
+    /**
+     * Получить способы оплаты по списку ID в порядке запроса с перечнем ненайденных ID
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<PurchaseType> getPurchaseTypeBatch(Collection<Long> ids) {
+        List<Long> distinct = Batches.distinctIds(ids, maxBatchIds);
+        return Batches.result(distinct, getPurchaseTypesByIds(distinct), PurchaseType::getId);
+    }
+
+    /**
+     * Получить ID способов оплаты по названию
+     */
+    @Transactional(readOnly = true)
+    public List<Long> getPurchaseTypeIdsByName(String name) {
+        return purchaseTypeRepository.findIdsByName(name);
+    }
+
     /**
      * Создать новый тип покупки
      */
@@ -65,7 +104,9 @@ public class PurchaseTypeService {
     public PurchaseType updatePurchaseType(Long id, PurchaseType purchaseType) {
         if (purchaseTypeRepository.existsById(id)) {
             purchaseType.setId(id);
-            return purchaseTypeRepository.save(purchaseType);
+            PurchaseType savedPurchaseType = purchaseTypeRepository.save(purchaseType);
+            analyticsCache.invalidateAll();
+            return savedPurchaseType;
         }
         throw new ResourceNotFoundException("PurchaseType not found for ID: " + id);
     }
@@ -76,6 +117,7 @@ public class PurchaseTypeService {
     public void deletePurchaseType(Long id) {
         if (purchaseTypeRepository.existsById(id)) {
             purchaseTypeRepository.deleteById(id);
+            analyticsCache.invalidateAll();
         }
     }
 
@@ -104,9 +146,7 @@ public class PurchaseTypeService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
             List<PurchaseType> purchaseTypes = new ArrayList<>();
             String[] values;
@@ -122,6 +162,7 @@ public class PurchaseTypeService {
                 }
             }
             purchaseTypeRepository.saveAll(purchaseTypes);
+            analyticsCache.invalidateAll();
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
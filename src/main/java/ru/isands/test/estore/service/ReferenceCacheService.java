@@ -0,0 +1,66 @@
+package ru.isands.test.estore.service;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.isands.test.estore.dao.entity.ElectroType;
+import ru.isands.test.estore.dao.entity.PositionType;
+import ru.isands.test.estore.dao.entity.PurchaseType;
+import ru.isands.test.estore.dao.entity.Shop;
+import ru.isands.test.estore.dto.CacheRegionStatsDTO;
+import ru.isands.test.estore.exeption.ResourceNotFoundException;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Кэш второго уровня Hibernate для справочников: типов электроники, должностей, способов оплаты и магазинов.
+ * Записи через JPA обновляют кэш сами; сброс нужен после изменения справочников в БД в обход приложения.
+ */
+@Service
+public class ReferenceCacheService {
+
+    private static final List<Class<?>> REFERENCE_ENTITIES = Arrays.asList(ElectroType.class, PositionType.class, PurchaseType.class, Shop.class);
+
+    private final SessionFactory sessionFactory;
+
+    @Autowired
+    public ReferenceCacheService(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    /**
+     * Попадания, промахи и размер по регионам справочников и кэшу запросов по имени
+     */
+    public List<CacheRegionStatsDTO> getStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            throw new ResourceNotFoundException("Статистика кэша выключена, включите reference.cache.stats.enabled");
+        }
+        List<CacheRegionStatsDTO> result = new ArrayList<>();
+        for (Class<?> entity : REFERENCE_ENTITIES) {
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(entity.getName());
+            result.add(new CacheRegionStatsDTO(entity.getSimpleName(), region.getHitCount(), region.getMissCount(),
+                    region.getPutCount(), region.getElementCountInMemory()));
+        }
+        result.add(new CacheRegionStatsDTO("queries", statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(), null));
+        return result;
+    }
+
+    /**
+     * Сбросить кэш справочников и результатов запросов
+     */
+    public void evictAll() {
+        Cache cache = sessionFactory.getCache();
+        for (Class<?> entity : REFERENCE_ENTITIES) {
+            cache.evictEntityData(entity);
+        }
+        cache.evictQueryRegions();
+    }
+}
@@ -1,6 +1,5 @@
 package ru.isands.test.estore.service;
 
-import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
@@ -11,12 +10,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.isands.test.estore.analytics.AnalyticsCache;
+import ru.isands.test.estore.analytics.PurchaseAnalyticsService;
+import ru.isands.test.estore.analytics.PurchaseColumnStore;
 import ru.isands.test.estore.dao.entity.Shop;
 import ru.isands.test.estore.dao.repo.ShopRepository;
+import ru.isands.test.estore.dto.BatchResult;
 import ru.isands.test.estore.dto.ShopDto;
 import ru.isands.test.estore.exeption.CsvProcessingException;
 import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.Batches;
+import ru.isands.test.estore.util.CsvRows;
 
+import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,24 +30,38 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Service
 public class ShopService {
 
     private final ShopRepository shopRepository;
+    private final EntityManager entityManager;
+    private final PurchaseTypeService purchaseTypeService;
+    private final PurchaseAnalyticsService purchaseAnalyticsService;
+    private final AnalyticsCache analyticsCache;
 
     @Value("${cvs.max.size.mb: 32}")
     private long maxFileSize;
 
+    @Value("${batch.max.ids: 500}")
+    private int maxBatchIds;
+
     @Autowired
-    public ShopService(ShopRepository shopRepository) {
+    public ShopService(ShopRepository shopRepository, PurchaseTypeService purchaseTypeService, PurchaseAnalyticsService purchaseAnalyticsService, AnalyticsCache analyticsCache, EntityManager entityManager) {
         this.shopRepository = shopRepository;
+        this.purchaseTypeService = purchaseTypeService;
+        this.purchaseAnalyticsService = purchaseAnalyticsService;
+        this.analyticsCache = analyticsCache;
+        this.entityManager = entityManager;
     }
 
     /**
      * Получить все магазины с постраничным выводом
      */
+    @Transactional(readOnly = true)
     public Page<Shop> getAllShops(Pageable pageable) {
         return shopRepository.findAll(pageable);
     }
@@ -49,10 +69,28 @@ public class ShopService {
     /**
      * Получить магазин по ID
      */
+    @Transactional(readOnly = true)
     public Shop getShopById(Long id) {
         return shopRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Shop not found for ID: " + id));
     }
 
+    /**
+     * Получить магазины по ID; отсутствующие ID пропускаются, найденные берутся из кэша второго уровня, остальные загружаются одним запросом
+     */
+    @Transactional(readOnly = true)
+    public List<Shop> getShopsByIds(Collection<Long> ids) {
+        return Batches.multiLoad(entityManager, Shop.class, ids);
+    }
+
+    /**
+     * Получить магазины по списку ID в порядке запроса с перечнем ненайденных ID
+     */
+    @Transactional(readOnly = true)
+    public BatchResult<Shop> getShopBatch(Collection<Long> ids) {
+        List<Long> distinct = Batches.distinctIds(ids, maxBatchIds);
+        return Batches.result(distinct, getShopsByIds(distinct), Shop::getId);
+    }
+
     /**
      * Создать новый магазин
      */
@@ -66,7 +104,9 @@ public class ShopService {
     public Shop updateShop(Long id, Shop shop) {
         if (shopRepository.existsById(id)) {
             shop.setId(id);
-            return shopRepository.save(shop);
+            Shop savedShop = shopRepository.save(shop);
+            analyticsCache.invalidate(AnalyticsCache.shop(id));
+            return savedShop;
         }
         throw new ResourceNotFoundException("Shop not found for ID: " + id);
     }
@@ -77,6 +117,7 @@ public class ShopService {
     public void deleteShop(Long id) {
         if (shopRepository.existsById(id)) {
             shopRepository.deleteById(id);
+            analyticsCache.invalidate(AnalyticsCache.shop(id));
         }
     }
 
@@ -84,6 +125,22 @@ public class ShopService {
      * Вывод суммы денежных средств, полученной магазином через оплату "Наличныме"
      */
     public List<ShopDto> getShopsByPurchaseType(Long id, String purchaseType) {
+        return analyticsCache.get(AnalyticsCache.shop(id), Arrays.asList("byPurchaseType", id, purchaseType),
+                () -> findShopsByPurchaseType(id, purchaseType));
+    }
+
+    private List<ShopDto> findShopsByPurchaseType(Long id, String purchaseType) {
+        if (purchaseAnalyticsService.isReady()) {
+            long[] total = purchaseAnalyticsService.aggregate(PurchaseColumnStore.Dimension.SHOP, new PurchaseColumnStore.Filter()
+                    .in(PurchaseColumnStore.Dimension.SHOP, Collections.singletonList(id))
+                    .in(PurchaseColumnStore.Dimension.PURCHASE_TYPE, purchaseTypeService.getPurchaseTypeIdsByName(purchaseType)))
+                    .get(id);
+            if (total == null) {
+                return Collections.emptyList();
+            }
+            Shop shop = getShopById(id);
+            return Collections.singletonList(new ShopDto(shop.getId(), shop.getName(), shop.getAddress(), purchaseType, total[1]));
+        }
         return shopRepository.findShopsByPurchaseType(id, purchaseType);
     }
 
@@ -113,9 +170,7 @@ public class ShopService {
     private void processCsv(InputStream inputStream, String encoding) throws IOException {
         try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(inputStream, encoding))
                 .withSkipLines(1)
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(';')
-                        .build())
+                .withCSVParser(CsvRows.parser())
                 .build()) {
             List<Shop> shops = new ArrayList<>();
             String[] values;
@@ -132,6 +187,7 @@ public class ShopService {
                 }
             }
             shopRepository.saveAll(shops);
+            analyticsCache.invalidateAll();
         } catch (CsvValidationException e) {
             throw new CsvProcessingException("Ошибка обработки строки CSV: " + e.getMessage());
         }
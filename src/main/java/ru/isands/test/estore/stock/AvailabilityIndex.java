@@ -0,0 +1,89 @@
+package ru.isands.test.estore.stock;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Битовая карта наличия товаров: для каждого магазина массив слов, бит с номером ID товара
+ * установлен, если остаток больше нуля. Чтение без блокировок, запись под монитором индекса.
+ */
+public class AvailabilityIndex {
+
+    /**
+     * Максимальный ID магазина, хранимый в индексе
+     */
+    public static final long MAX_SHOP_ID = (1 << 16) - 1;
+
+    /**
+     * Максимальный ID товара, хранимый в индексе (8 МБ на магазин)
+     */
+    public static final long MAX_ITEM_ID = (1 << 26) - 1;
+
+    private volatile AtomicLongArray[] shops = new AtomicLongArray[0];
+
+    /**
+     * Помещается ли пара в индекс; для остальных пар наличие проверяется запросом к БД
+     */
+    public static boolean supports(long shopId, long itemId) {
+        return shopId >= 0 && shopId <= MAX_SHOP_ID && itemId >= 0 && itemId <= MAX_ITEM_ID;
+    }
+
+    public boolean isAvailable(long shopId, long itemId) {
+        AtomicLongArray[] current = shops;
+        if (shopId < 0 || shopId >= current.length || itemId < 0) {
+            return false;
+        }
+        AtomicLongArray words = current[(int) shopId];
+        int word = (int) (itemId >>> 6);
+        if (words == null || word >= words.length()) {
+            return false;
+        }
+        return (words.get(word) & (1L << itemId)) != 0;
+    }
+
+    public synchronized void set(long shopId, long itemId, boolean available) {
+        if (!supports(shopId, itemId)) {
+            return;
+        }
+        int word = (int) (itemId >>> 6);
+        AtomicLongArray words = available ? ensureCapacity((int) shopId, word) : existing((int) shopId, word);
+        if (words == null) {
+            return;
+        }
+        long bit = 1L << itemId;
+        long value = words.get(word);
+        words.set(word, available ? value | bit : value & ~bit);
+    }
+
+    private AtomicLongArray existing(int shopId, int word) {
+        AtomicLongArray[] current = shops;
+        if (shopId >= current.length || current[shopId] == null || word >= current[shopId].length()) {
+            return null;
+        }
+        return current[shopId];
+    }
+
+    private AtomicLongArray ensureCapacity(int shopId, int word) {
+        AtomicLongArray[] current = shops;
+        if (shopId >= current.length) {
+            current = Arrays.copyOf(current, (int) Math.min(MAX_SHOP_ID + 1, Math.max(shopId + 1, current.length * 2L)));
+        }
+        AtomicLongArray words = current[shopId];
+        if (words == null || word >= words.length()) {
+            int length = (int) Math.min((MAX_ITEM_ID >>> 6) + 1, Math.max(word + 1, words == null ? 16 : words.length() * 2L));
+            AtomicLongArray grown = new AtomicLongArray(length);
+            if (words != null) {
+                for (int i = 0; i < words.length(); i++) {
+                    grown.set(i, words.get(i));
+                }
+            }
+            if (current == shops) {
+                current = current.clone();
+            }
+            current[shopId] = grown;
+            words = grown;
+        }
+        shops = current;
+        return words;
+    }
+}
@@ -0,0 +1,134 @@
+package ru.isands.test.estore.stock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.isands.test.estore.dao.repo.ElectroShopRepository;
+import ru.isands.test.estore.datasource.ReadRouting;
+import ru.isands.test.estore.util.TransactionHooks;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Проверка наличия товара в магазине по индексу в памяти.
+ * Индекс строится из store_eshop при старте и периодически перестраивается,
+ * между перестроениями его обновляют операции с остатками после фиксации транзакции.
+ * Изменения, пришедшие во время перестроения, повторяются поверх прочитанных строк, которые могут быть старше их.
+ * Пока индекс не построен, наличие проверяется запросом к БД.
+ */
+@Service
+public class AvailabilityIndexService {
+
+    private final ElectroShopRepository electroShopRepository;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Object updateLock = new Object();
+
+    @Value("${availability.index.enabled: true}")
+    private boolean enabled;
+
+    private volatile AvailabilityIndex index;
+    private List<Change> pending;
+
+    @Autowired
+    public AvailabilityIndexService(ElectroShopRepository electroShopRepository, DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.electroShopRepository = electroShopRepository;
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(10_000);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Есть ли товар в магазине
+     */
+    public boolean isAvailable(Long shopId, Long itemId) {
+        AvailabilityIndex current = index;
+        if (current != null && AvailabilityIndex.supports(shopId, itemId)) {
+            return current.isAvailable(shopId, itemId);
+        }
+        return electroShopRepository.isItemAvailable(shopId, itemId);
+    }
+
+    /**
+     * Учесть новый остаток после фиксации текущей транзакции
+     */
+    public void onCountChanged(Long shopId, Long itemId, int count) {
+        if (shopId == null || itemId == null) {
+            return;
+        }
+        Change change = new Change(shopId, itemId, count > 0);
+        TransactionHooks.afterCommit(() -> {
+            synchronized (updateLock) {
+                AvailabilityIndex current = index;
+                if (current != null) {
+                    change.applyTo(current);
+                }
+                if (pending != null) {
+                    pending.add(change);
+                }
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Перестроить индекс по store_eshop; исправляет расхождения от конкурирующих обновлений
+     */
+    @Scheduled(initialDelayString = "${availability.index.rebuild.ms: 300000}", fixedDelayString = "${availability.index.rebuild.ms: 300000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        AvailabilityIndex next = new AvailabilityIndex();
+        synchronized (updateLock) {
+            pending = new ArrayList<>();
+        }
+        try {
+            ReadRouting.runOnPrimary(() -> readOnlyTransaction.executeWithoutResult(status -> streamingJdbcTemplate.query(
+                    "SELECT shop_id, electro_item_id FROM store_eshop " +
+                            "WHERE count > 0 AND shop_id IS NOT NULL AND electro_item_id IS NOT NULL",
+                    (RowCallbackHandler) rs -> next.set(rs.getLong(1), rs.getLong(2), true))));
+            synchronized (updateLock) {
+                for (Change change : pending) {
+                    change.applyTo(next);
+                }
+                index = next;
+                pending = null;
+            }
+        } finally {
+            synchronized (updateLock) {
+                pending = null;
+            }
+        }
+    }
+
+    private static final class Change {
+        final long shopId;
+        final long itemId;
+        final boolean available;
+
+        Change(long shopId, long itemId, boolean available) {
+            this.shopId = shopId;
+            this.itemId = itemId;
+            this.available = available;
+        }
+
+        void applyTo(AvailabilityIndex index) {
+            index.set(shopId, itemId, available);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.isands.test.estore.stock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.isands.test.estore.dao.entity.StockLedgerCheckpoint;
+import ru.isands.test.estore.dao.repo.StockLedgerCheckpointRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Хранилище журнала остатков в таблице store_eshop; общее количество товара в store_electro_item
+ * изменяется в той же транзакции
+ */
+@Component
+public class JdbcStockLedgerStore implements StockLedgerStore {
+
+    private static final int LEDGER_ID = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StockLedgerCheckpointRepository checkpointRepository;
+
+    @Autowired
+    public JdbcStockLedgerStore(JdbcTemplate jdbcTemplate, StockLedgerCheckpointRepository checkpointRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    @Override
+    public void loadCounts(CountConsumer consumer) {
+        jdbcTemplate.query("SELECT shop_id, electro_item_id, count FROM store_eshop " +
+                        "WHERE shop_id IS NOT NULL AND electro_item_id IS NOT NULL",
+                (RowCallbackHandler) rs -> consumer.accept(rs.getLong(1), rs.getLong(2), rs.getInt(3)));
+    }
+
+    @Override
+    public long loadCheckpoint() {
+        return checkpointRepository.findById(LEDGER_ID)
+                .map(StockLedgerCheckpoint::getSegment)
+                .orElse(0L);
+    }
+
+    @Override
+    @Transactional
+    public void apply(Map<Long, Integer> deltas, long checkpoint) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(deltas).entrySet()) {
+            rows.add(new Object[]{entry.getValue(), StockLedger.shopId(entry.getKey()), StockLedger.itemId(entry.getKey())});
+        }
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE store_eshop SET count = count + ?, version = version + 1 " +
+                "WHERE shop_id = ? AND electro_item_id = ?", rows);
+
+        // Изменения строк, удаленных до сброса, не попадают в общее количество: оно уже пересчитано при удалении
+        Map<Long, Integer> itemDeltas = new TreeMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i] != 0) {
+                itemDeltas.merge((Long) rows.get(i)[2], (Integer) rows.get(i)[0], Integer::sum);
+            }
+        }
+
+        List<Object[]> itemRows = new ArrayList<>(itemDeltas.size());
+        for (Map.Entry<Long, Integer> entry : itemDeltas.entrySet()) {
+            if (entry.getValue() != 0) {
+                itemRows.add(new Object[]{entry.getValue(), entry.getKey()});
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE store_electro_item SET count = count + ? WHERE id = ?", itemRows);
+
+        StockLedgerCheckpoint ledgerCheckpoint = new StockLedgerCheckpoint();
+        ledgerCheckpoint.setId(LEDGER_ID);
+        ledgerCheckpoint.setSegment(checkpoint);
+        checkpointRepository.save(ledgerCheckpoint);
+    }
+}
@@ -0,0 +1,159 @@
+package ru.isands.test.estore.stock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Локальный журнал изменений остатков, разбитый на сегменты.
+ * Запись: ключ (8 байт), изменение (4 байта), CRC32 первых 12 байт (4 байта).
+ * Недописанный или поврежденный хвост сегмента при чтении отбрасывается.
+ */
+public class StockJournal implements Closeable {
+
+    /**
+     * Изменение, обнуляющее все предыдущие записи по ключу (связь удалена)
+     */
+    public static final int DROP = Integer.MIN_VALUE;
+
+    static final int RECORD_SIZE = 16;
+
+    private static final String PREFIX = "stock-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path dir;
+    private final boolean fsync;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private long segment;
+    private FileChannel channel;
+
+    public StockJournal(Path dir, boolean fsync) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.fsync = fsync;
+    }
+
+    /**
+     * Номера сегментов, лежащих в каталоге журнала, по возрастанию
+     */
+    public List<Long> segments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException ignored) {
+                    // посторонний файл
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Прочитать все целые записи сегмента
+     */
+    public void read(long segment, RecordConsumer consumer) throws IOException {
+        try (FileChannel in = FileChannel.open(path(segment), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+            CRC32 check = new CRC32();
+            boolean eof = false;
+            while (!eof) {
+                eof = in.read(buffer) < 0;
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    long key = buffer.getLong();
+                    int delta = buffer.getInt();
+                    int sum = buffer.getInt();
+                    check.reset();
+                    check.update(buffer.array(), buffer.position() - RECORD_SIZE, RECORD_SIZE - 4);
+                    if ((int) check.getValue() != sum) {
+                        return;
+                    }
+                    consumer.accept(key, delta);
+                }
+                buffer.compact();
+            }
+        }
+    }
+
+    /**
+     * Начать запись в новый сегмент с указанным номером
+     */
+    public synchronized void open(long segment) throws IOException {
+        this.segment = segment;
+        this.channel = FileChannel.open(path(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Дописать изменение в текущий сегмент
+     */
+    public synchronized void append(long key, int delta) throws IOException {
+        record.clear();
+        record.putLong(key).putInt(delta);
+        crc.reset();
+        crc.update(record.array(), 0, RECORD_SIZE - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Закрыть текущий сегмент и открыть следующий
+     *
+     * @return номер закрытого сегмента
+     */
+    public synchronized long rotate() throws IOException {
+        long closed = segment;
+        channel.force(false);
+        channel.close();
+        open(closed + 1);
+        return closed;
+    }
+
+    /**
+     * Удалить сегменты с номером не больше указанного
+     */
+    public void deleteUpTo(long segment) throws IOException {
+        for (Long existing : segments()) {
+            if (existing <= segment) {
+                Files.deleteIfExists(path(existing));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private Path path(long segment) {
+        return dir.resolve(PREFIX + segment + SUFFIX);
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long key, int delta);
+    }
+}
@@ -0,0 +1,415 @@
+package ru.isands.test.estore.stock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Остатки товаров в магазинах в памяти.
+ * Ключи распределены по сегментам с собственными блокировками, каждое изменение
+ * сначала пишется в журнал, затем применяется в памяти и копится до сброса в хранилище.
+ * Резерв под незафиксированную покупку только уменьшает остаток в памяти и попадает в журнал при подтверждении,
+ * поэтому после сбоя до фиксации покупки он просто исчезает.
+ * Инвариант: остаток в памяти равен остатку в хранилище плюс несброшенные изменения минус резервы.
+ */
+public class StockLedger implements Closeable {
+
+    private final StockLedgerStore store;
+    private final StockJournal journal;
+    private final Stripe[] stripes;
+    private final Object flushLock = new Object();
+
+    public StockLedger(StockLedgerStore store, StockJournal journal, int stripeCount) {
+        this.store = store;
+        this.journal = journal;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Ключ связи товар-магазин
+     */
+    public static long key(long shopId, long itemId) {
+        if (shopId < 0 || shopId > Integer.MAX_VALUE || itemId < 0 || itemId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Идентификатор вне допустимого диапазона: магазин " + shopId + ", товар " + itemId);
+        }
+        return shopId << 32 | itemId;
+    }
+
+    public static long shopId(long key) {
+        return key >>> 32;
+    }
+
+    public static long itemId(long key) {
+        return key & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Загрузить остатки из хранилища и доиграть несброшенные сегменты журнала
+     */
+    public void recover() throws IOException {
+        store.loadCounts((shopId, itemId, count) -> {
+            long key = key(shopId, itemId);
+            stripe(key).cells.put(key, new Cell(count));
+        });
+        long checkpoint = store.loadCheckpoint();
+        long last = checkpoint;
+        for (long segment : journal.segments()) {
+            last = Math.max(last, segment);
+            if (segment > checkpoint) {
+                journal.read(segment, this::replay);
+            }
+        }
+        journal.deleteUpTo(checkpoint);
+        journal.open(last + 1);
+    }
+
+    /**
+     * Текущий остаток или -1, если связь неизвестна
+     */
+    public int count(long shopId, long itemId) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            return cell == null ? -1 : cell.count;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Списать единицу товара
+     *
+     * @return оставшееся количество или -1, если товара нет в наличии
+     */
+    public int tryDecrement(long shopId, long itemId) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            if (cell == null || cell.count <= 0) {
+                return -1;
+            }
+            write(stripe, key, cell, -1);
+            return cell.count;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Зарезервировать единицу товара без записи в журнал
+     *
+     * @return оставшееся количество или -1, если товара нет в наличии
+     */
+    public int tryReserve(long shopId, long itemId) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            if (cell == null || cell.count <= 0) {
+                return -1;
+            }
+            cell.count--;
+            cell.reserved++;
+            return cell.count;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Превратить резерв в списание: записать его в журнал и в несброшенные изменения.
+     * Резерв удаленной связи отбрасывается.
+     */
+    public void confirm(long shopId, long itemId) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            if (cell != null && cell.reserved > 0) {
+                cell.reserved--;
+                cell.count++;
+                write(stripe, key, cell, -1);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Снять резерв и вернуть единицу в остаток
+     */
+    public void cancel(long shopId, long itemId) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            if (cell != null && cell.reserved > 0) {
+                cell.reserved--;
+                cell.count++;
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Изменить остаток на величину delta
+     *
+     * @return новое количество или -1, если связь неизвестна
+     */
+    public int adjust(long shopId, long itemId, int delta) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            if (cell == null) {
+                return -1;
+            }
+            if (delta != 0) {
+                write(stripe, key, cell, delta);
+            }
+            return cell.count;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Установить остаток; действующие резервы списываются из нового остатка при подтверждении
+     *
+     * @return false, если связь неизвестна
+     */
+    public boolean set(long shopId, long itemId, int count) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            if (cell == null) {
+                return false;
+            }
+            if (cell.count + cell.reserved != count) {
+                write(stripe, key, cell, count - cell.count - cell.reserved);
+            }
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Добавить связь, уже записанную в хранилище, или установить остаток существующей
+     */
+    public void register(long shopId, long itemId, int count) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            Cell cell = stripe.cells.get(key);
+            if (cell == null) {
+                stripe.cells.put(key, new Cell(count));
+            } else if (cell.count + cell.reserved != count) {
+                write(stripe, key, cell, count - cell.count - cell.reserved);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Удалить связь вместе с несброшенными изменениями
+     */
+    public void remove(long shopId, long itemId) {
+        long key = key(shopId, itemId);
+        Stripe stripe = stripe(key);
+        stripe.lock();
+        try {
+            if (stripe.cells.containsKey(key)) {
+                appendJournal(key, StockJournal.DROP);
+                stripe.cells.remove(key);
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Сбросить накопленные изменения в хранилище
+     *
+     * @return количество связей, остаток которых изменился
+     */
+    public int flush() throws IOException {
+        synchronized (flushLock) {
+            long segment;
+            Map<Long, Integer> deltas;
+            lockAll();
+            try {
+                if (!hasDirty()) {
+                    return 0;
+                }
+                segment = journal.rotate();
+                deltas = drain();
+            } finally {
+                unlockAll();
+            }
+            try {
+                store.apply(deltas, segment);
+            } catch (RuntimeException e) {
+                if (!committed(segment)) {
+                    restore(deltas);
+                }
+                throw e;
+            }
+            journal.deleteUpTo(segment);
+            return deltas.size();
+        }
+    }
+
+    /**
+     * Закрыть журнал без сброса изменений; несброшенные изменения будут доиграны при следующем запуске
+     */
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private void replay(long key, int delta) {
+        Stripe stripe = stripe(key);
+        Cell cell = stripe.cells.get(key);
+        if (cell == null) {
+            return;
+        }
+        if (delta == StockJournal.DROP) {
+            cell.count -= cell.pending;
+            cell.pending = 0;
+            return;
+        }
+        cell.count += delta;
+        cell.pending += delta;
+        markDirty(stripe, key, cell);
+    }
+
+    private void write(Stripe stripe, long key, Cell cell, int delta) {
+        appendJournal(key, delta);
+        cell.count += delta;
+        cell.pending += delta;
+        markDirty(stripe, key, cell);
+    }
+
+    private void appendJournal(long key, int delta) {
+        try {
+            journal.append(key, delta);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать журнал остатков", e);
+        }
+    }
+
+    private void markDirty(Stripe stripe, long key, Cell cell) {
+        if (!cell.dirty) {
+            cell.dirty = true;
+            stripe.dirty.add(key);
+        }
+    }
+
+    private boolean hasDirty() {
+        for (Stripe stripe : stripes) {
+            if (!stripe.dirty.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<Long, Integer> drain() {
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            for (Long key : stripe.dirty) {
+                Cell cell = stripe.cells.get(key);
+                if (cell != null && cell.dirty) {
+                    if (cell.pending != 0) {
+                        deltas.put(key, cell.pending);
+                    }
+                    cell.pending = 0;
+                    cell.dirty = false;
+                }
+            }
+            stripe.dirty.clear();
+        }
+        return deltas;
+    }
+
+    private void restore(Map<Long, Integer> deltas) {
+        for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+            long key = entry.getKey();
+            Stripe stripe = stripe(key);
+            stripe.lock();
+            try {
+                Cell cell = stripe.cells.get(key);
+                if (cell != null) {
+                    cell.pending += entry.getValue();
+                    markDirty(stripe, key, cell);
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    private boolean committed(long segment) {
+        try {
+            return store.loadCheckpoint() >= segment;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    private Stripe stripe(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe extends ReentrantLock {
+        final Map<Long, Cell> cells = new HashMap<>();
+        final List<Long> dirty = new ArrayList<>();
+    }
+
+    private static final class Cell {
+        int count;
+        int pending;
+        int reserved;
+        boolean dirty;
+
+        Cell(int count) {
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.isands.test.estore.stock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.isands.test.estore.exeption.ResourceNotFoundException;
+import ru.isands.test.estore.util.TransactionHooks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * Режим высокой пропускной способности для остатков: списания обслуживаются журналом
+ * остатков в памяти, а store_eshop обновляется пакетно в фоне.
+ * Выключен по умолчанию (stock.ledger.enabled).
+ */
+@Service
+public class StockLedgerService {
+
+    private final StockLedgerStore stockLedgerStore;
+
+    @Value("${stock.ledger.enabled: false}")
+    private boolean enabled;
+
+    @Value("${stock.ledger.stripes: 64}")
+    private int stripes;
+
+    @Value("${stock.ledger.journal.dir: ./stock-journal}")
+    private String journalDir;
+
+    @Value("${stock.ledger.journal.fsync: false}")
+    private boolean fsync;
+
+    private volatile StockLedger ledger;
+
+    @Autowired
+    public StockLedgerService(StockLedgerStore stockLedgerStore) {
+        this.stockLedgerStore = stockLedgerStore;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        StockLedger stockLedger = new StockLedger(stockLedgerStore, new StockJournal(Paths.get(journalDir), fsync), stripes);
+        stockLedger.recover();
+        ledger = stockLedger;
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (ledger != null) {
+            try {
+                ledger.flush();
+            } finally {
+                ledger.close();
+            }
+        }
+    }
+
+    /**
+     * Сбросить накопленные изменения остатков в store_eshop
+     */
+    @Scheduled(fixedDelayString = "${stock.ledger.flush.ms: 200}")
+    public void flush() {
+        if (ledger == null) {
+            return;
+        }
+        try {
+            ledger.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка сброса журнала остатков", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return ledger != null;
+    }
+
+    /**
+     * Текущий остаток товара в магазине или -1, если связь неизвестна
+     */
+    public int getCount(Long shopId, Long itemId) {
+        return ledger.count(shopId, itemId);
+    }
+
+    /**
+     * Зарезервировать единицу товара в магазине до завершения текущей транзакции.
+     * Списание пишется в журнал только после фиксации, при откате или сбое до фиксации резерв снимается.
+     * Сбой между фиксацией и записью в журнал оставляет остаток на единицу больше, но не меньше фактического.
+     */
+    public void reserve(Long shopId, Long itemId) {
+        StockLedger stockLedger = ledger;
+        if (stockLedger.tryReserve(shopId, itemId) < 0) {
+            throw new ResourceNotFoundException("Товар с ID: " + itemId + " не доступен в магазине с ID: " + shopId);
+        }
+        TransactionHooks.afterCompletion(() -> stockLedger.confirm(shopId, itemId), () -> stockLedger.cancel(shopId, itemId));
+    }
+
+    /**
+     * Установить остаток товара в магазине. Вызывается после фиксации, поэтому не бросает исключение:
+     * наличие связи проверяется в транзакции через getCount, а связь, удаленная после проверки, пропускается.
+     *
+     * @return false, если связь неизвестна
+     */
+    public boolean setCount(Long shopId, Long itemId, int count) {
+        return ledger.set(shopId, itemId, count);
+    }
+
+    /**
+     * Добавить связь, записанную в store_eshop
+     */
+    public void register(Long shopId, Long itemId, int count) {
+        ledger.register(shopId, itemId, count);
+    }
+
+    /**
+     * Удалить связь
+     */
+    public void remove(Long shopId, Long itemId) {
+        ledger.remove(shopId, itemId);
+    }
+}
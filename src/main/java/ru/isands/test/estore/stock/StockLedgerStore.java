@@ -0,0 +1,32 @@
+package ru.isands.test.estore.stock;
+
+import java.util.Map;
+
+/**
+ * Постоянное хранилище остатков, в которое журнал остатков сбрасывает накопленные изменения
+ */
+public interface StockLedgerStore {
+
+    /**
+     * Передать остатки всех связей товар-магазин
+     */
+    void loadCounts(CountConsumer consumer);
+
+    /**
+     * Номер последнего сегмента журнала, изменения которого уже записаны в хранилище
+     */
+    long loadCheckpoint();
+
+    /**
+     * Атомарно применить изменения остатков и запомнить номер сегмента журнала
+     *
+     * @param deltas     изменения по ключу {@link StockLedger#key(long, long)}
+     * @param checkpoint номер сегмента, все изменения которого входят в deltas
+     */
+    void apply(Map<Long, Integer> deltas, long checkpoint);
+
+    @FunctionalInterface
+    interface CountConsumer {
+        void accept(long shopId, long itemId, int count);
+    }
+}
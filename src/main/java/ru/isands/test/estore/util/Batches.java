@@ -0,0 +1,84 @@
+package ru.isands.test.estore.util;
+
+import org.hibernate.Session;
+import ru.isands.test.estore.dto.BatchResult;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Получение объектов по списку ID одним запросом вместо запроса на каждый ID
+ */
+public final class Batches {
+
+    private Batches() {
+    }
+
+    /**
+     * Различные ID в порядке запроса; пустой список, пустые ID и больше maxIds различных ID отклоняются
+     */
+    public static List<Long> distinctIds(Collection<Long> ids, int maxIds) {
+        if (ids == null || ids.isEmpty()) {
+            throw new RequestLimitExceededException("Список ID пуст");
+        }
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (id == null) {
+                throw new RequestLimitExceededException("Список ID содержит пустое значение");
+            }
+            distinct.add(id);
+        }
+        if (distinct.size() > maxIds) {
+            throw new RequestLimitExceededException("Запрошено " + distinct.size() + " ID, допустимо не больше " + maxIds);
+        }
+        return new ArrayList<>(distinct);
+    }
+
+    /**
+     * Загрузить сущности по ID: найденные в кэше второго уровня берутся из него, остальные одним запросом IN.
+     * Вызывается в транзакции; отсутствующие ID пропускаются
+     */
+    public static <T> List<T> multiLoad(EntityManager entityManager, Class<T> type, Collection<Long> ids) {
+        List<T> result = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return result;
+        }
+        for (T value : entityManager.unwrap(Session.class).byMultipleIds(type).multiLoad(new ArrayList<>(ids))) {
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Найденные объекты в порядке ids и список ненайденных ID
+     */
+    public static <T> BatchResult<T> result(List<Long> ids, Collection<T> found, Function<T, Long> id) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T value : found) {
+            if (value != null) {
+                byId.put(id.apply(value), value);
+            }
+        }
+        List<T> content = new ArrayList<>(byId.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long value : ids) {
+            T item = byId.get(value);
+            if (item != null) {
+                content.add(item);
+            } else {
+                missingIds.add(value);
+            }
+        }
+        return new BatchResult<>(content, missingIds);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.isands.test.estore.util;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import ru.isands.test.estore.exeption.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Чтение строк импорта .csv целиком, чтобы связанные сущности загружались одним запросом на таблицу, а не на строку
+ */
+public final class CsvRows {
+
+    private CsvRows() {
+    }
+
+    /**
+     * Разбор строк файлов импорта: разделитель ";", кавычки '"', экранирование '\'; выгрузка .csv пишет с теми же символами
+     */
+    public static CSVParser parser() {
+        return new CSVParserBuilder()
+                .withSeparator(';')
+                .withQuoteChar('"')
+                .withEscapeChar('\\')
+                .build();
+    }
+
+    /**
+     * Прочитать все оставшиеся строки
+     */
+    public static List<String[]> readAll(CSVReader csvReader) throws IOException, CsvValidationException {
+        List<String[]> rows = new ArrayList<>();
+        String[] values;
+        while ((values = csvReader.readNext()) != null) {
+            rows.add(values);
+        }
+        return rows;
+    }
+
+    /**
+     * Различные ID из колонки; нечисловые значения пропускаются и приводят к ошибке при разборе своей строки
+     */
+    public static Set<Long> ids(Collection<String[]> rows, int column) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (String[] values : rows) {
+            if (column < values.length) {
+                try {
+                    ids.add(Long.valueOf(values[column]));
+                } catch (NumberFormatException ignored) {
+                    // строка будет отклонена при разборе
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Загруженная сущность по ID или ResourceNotFoundException, как при поиске по одному ID
+     */
+    public static <T> T require(Map<Long, T> values, Long id, String entity) {
+        T value = values.get(id);
+        if (value == null) {
+            throw new ResourceNotFoundException(entity + " not found for ID: " + id);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.isands.test.estore.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import ru.isands.test.estore.dto.CursorPage;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Курсоры постраничного вывода по ключу: непрозрачная строка из значений ключа сортировки последней строки
+ */
+public final class Cursors {
+
+    private static final String SEPARATOR = ",";
+
+    private Cursors() {
+    }
+
+    /**
+     * Закодировать значения ключа последней строки страницы
+     */
+    public static String encode(long... keys) {
+        StringBuilder value = new StringBuilder();
+        for (long key : keys) {
+            if (value.length() > 0) {
+                value.append(SEPARATOR);
+            }
+            value.append(key);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Разобрать курсор из keys значений; null для первой страницы
+     */
+    public static long[] decode(String cursor, int keys) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(SEPARATOR);
+            if (parts.length != keys) {
+                throw new IllegalArgumentException();
+            }
+            long[] values = new long[keys];
+            for (int i = 0; i < keys; i++) {
+                values[i] = Long.parseLong(parts[i]);
+            }
+            return values;
+        } catch (IllegalArgumentException e) {
+            throw new RequestLimitExceededException("Некорректный курсор: " + cursor);
+        }
+    }
+
+    /**
+     * Запрос size + 1 строк: лишняя строка показывает, что следующая страница есть
+     */
+    public static Pageable limit(int size, int maxSize) {
+        if (size < 1 || size > maxSize) {
+            throw new RequestLimitExceededException("Недопустимый размер страницы: size = " + size + ", должен быть от 1 до " + maxSize);
+        }
+        return PageRequest.of(0, size + 1);
+    }
+
+    /**
+     * Страница из не более чем size + 1 строк; курсор следующей страницы строится по последней возвращаемой строке
+     */
+    public static <T> CursorPage<T> page(List<T> rows, int size, Function<T, String> cursor) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, size)) : rows;
+        return new CursorPage<>(content, size, hasNext, hasNext ? cursor.apply(content.get(size - 1)) : null);
+    }
+}
@@ -0,0 +1,25 @@
+package ru.isands.test.estore.util;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Преобразования дат покупок
+ */
+public final class DateUtils {
+
+    private DateUtils() {
+    }
+
+    /**
+     * День даты в часовом поясе приложения; совпадает с CAST(... AS date) для колонок timestamp
+     */
+    public static LocalDate toLocalDate(Date date) {
+        if (date instanceof Timestamp) {
+            return ((Timestamp) date).toLocalDateTime().toLocalDate();
+        }
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
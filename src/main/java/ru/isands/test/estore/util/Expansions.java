@@ -0,0 +1,69 @@
+package ru.isands.test.estore.util;
+
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Разбор параметра expand списков и подстановка связанных объектов
+ */
+public final class Expansions {
+
+    private Expansions() {
+    }
+
+    /**
+     * Проверить запрошенные связи по списку допустимых
+     */
+    public static Set<String> parse(List<String> expand, String... allowed) {
+        Set<String> result = new HashSet<>();
+        if (expand == null) {
+            return result;
+        }
+        List<String> names = Arrays.asList(allowed);
+        for (String name : expand) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!names.contains(trimmed)) {
+                throw new RequestLimitExceededException("Неизвестное значение expand: " + trimmed + ", допустимые: " + names);
+            }
+            result.add(trimmed);
+        }
+        return result;
+    }
+
+    /**
+     * Различные непустые ID строк
+     */
+    public static <T> Set<Long> ids(Collection<T> rows, Function<T, Long> id) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (T row : rows) {
+            Long value = id.apply(row);
+            if (value != null) {
+                ids.add(value);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Объекты по ID
+     */
+    public static <T> Map<Long, T> byId(Collection<T> values, Function<T, Long> id) {
+        Map<Long, T> result = new HashMap<>();
+        for (T value : values) {
+            result.put(id.apply(value), value);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+package ru.isands.test.estore.util;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.isands.test.estore.datasource.ReadRouting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Структура в памяти, которая строится по снимку БД и дополняется покупками после фиксации их транзакций.
+ * Построение идет в одной транзакции REPEATABLE READ только для чтения на основной БД. Покупки, зафиксированные
+ * во время построения, копятся отдельно и добавляются к новой структуре, если их нет в снимке.
+ * Структура актуальна, пока после ее построения не запрошено перестроение.
+ *
+ * @param <S> структура в памяти
+ * @param <F> данные одной покупки
+ */
+public class SnapshotRebuilder<S, F> {
+
+    private static final int VISIBILITY_CHUNK = 1000;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final Function<F, Long> purchaseId;
+    private final BiConsumer<S, F> apply;
+    private final Object updateLock = new Object();
+
+    private volatile S current;
+    private volatile long requestedVersion = 1;
+    private volatile long builtVersion;
+    private List<F> pending;
+
+    /**
+     * @param purchaseId ID покупки для проверки, попала ли она в снимок
+     * @param apply      добавление покупки к структуре; вызывается под общей блокировкой обновлений
+     */
+    public SnapshotRebuilder(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             Function<F, Long> purchaseId, BiConsumer<S, F> apply) {
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.purchaseId = purchaseId;
+        this.apply = apply;
+    }
+
+    /**
+     * Последняя построенная структура, в том числе устаревшая, или null до первого построения
+     */
+    public S current() {
+        return current;
+    }
+
+    /**
+     * Построенная структура, если после построения не запрошено перестроение, иначе null
+     */
+    public S ready() {
+        return requestedVersion == builtVersion ? current : null;
+    }
+
+    public boolean isStale() {
+        return requestedVersion != builtVersion;
+    }
+
+    /**
+     * Добавить покупку после фиксации текущей транзакции
+     */
+    public void add(F fact) {
+        TransactionHooks.afterCommit(() -> {
+            synchronized (updateLock) {
+                S structure = current;
+                if (structure != null) {
+                    apply.accept(structure, fact);
+                }
+                if (pending != null) {
+                    pending.add(fact);
+                }
+            }
+        });
+    }
+
+    /**
+     * Пометить структуру устаревшей после фиксации текущей транзакции
+     */
+    public void requestRebuild() {
+        TransactionHooks.afterCommit(() -> {
+            synchronized (updateLock) {
+                requestedVersion++;
+            }
+        });
+    }
+
+    /**
+     * Построить новую структуру в снимке БД и заменить ею текущую
+     *
+     * @param loader построение структуры запросами к БД; выполняется внутри транзакции снимка
+     */
+    public synchronized void rebuild(Supplier<S> loader) {
+        long version = requestedVersion;
+        synchronized (updateLock) {
+            pending = new ArrayList<>();
+        }
+        try {
+            ReadRouting.runOnPrimary(() -> snapshotTransaction.executeWithoutResult(status -> {
+                S next = loader.get();
+                synchronized (updateLock) {
+                    Set<Long> visible = visiblePurchases(pending);
+                    for (F fact : pending) {
+                        if (!visible.contains(purchaseId.apply(fact))) {
+                            apply.accept(next, fact);
+                        }
+                    }
+                    current = next;
+                    builtVersion = version;
+                    pending = null;
+                }
+            }));
+        } finally {
+            synchronized (updateLock) {
+                pending = null;
+            }
+        }
+    }
+
+    private Set<Long> visiblePurchases(List<F> facts) {
+        Set<Long> visible = new HashSet<>();
+        for (int from = 0; from < facts.size(); from += VISIBILITY_CHUNK) {
+            List<Long> ids = new ArrayList<>();
+            for (F fact : facts.subList(from, Math.min(facts.size(), from + VISIBILITY_CHUNK))) {
+                ids.add(purchaseId.apply(fact));
+            }
+            visible.addAll(namedJdbcTemplate.queryForList("SELECT id FROM store_purchase WHERE id IN (:ids)",
+                    Collections.singletonMap("ids", ids), Long.class));
+        }
+        return visible;
+    }
+}
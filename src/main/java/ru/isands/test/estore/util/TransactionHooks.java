@@ -0,0 +1,64 @@
+package ru.isands.test.estore.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Действия, привязанные к завершению текущей транзакции.
+ * Вне транзакции действия выполняются сразу.
+ */
+public final class TransactionHooks {
+
+    private TransactionHooks() {
+    }
+
+    /**
+     * Выполнить действие после успешной фиксации транзакции
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Выполнить onCommit после фиксации транзакции, а onRollback - при любом другом исходе.
+     * Вне транзакции onCommit выполняется сразу.
+     */
+    public static void afterCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                (status == STATUS_COMMITTED ? onCommit : onRollback).run();
+            }
+        });
+    }
+
+    /**
+     * Выполнить действие после отката транзакции
+     */
+    public static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
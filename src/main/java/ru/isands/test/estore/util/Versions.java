@@ -0,0 +1,26 @@
+package ru.isands.test.estore.util;
+
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+/**
+ * Проверка версии, которую клиент прислал вместе с изменениями записи.
+ * Изменения переносятся на загруженную сущность, поэтому ее версию Hibernate проверяет сам,
+ * а версия клиента сравнивается здесь; клиенты, не передающие версию, обновляют запись без проверки.
+ */
+public final class Versions {
+
+    private Versions() {
+    }
+
+    /**
+     * Проверить, что клиент менял ту же версию записи, что загружена сейчас
+     *
+     * @param expected версия из запроса или null, если клиент ее не передал
+     * @param actual   версия загруженной записи
+     */
+    public static void check(Class<?> entityClass, Object id, Long expected, Long actual) {
+        if (expected != null && !expected.equals(actual)) {
+            throw new ObjectOptimisticLockingFailureException(entityClass, id);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+-- GIN-индекс полнотекстового поиска электротоваров (/estore/api/electroItem/search).
+-- Выражение индекса совпадает с вектором в ElectroItemSearchService.VECTOR_SQL, поэтому планировщик использует индекс,
+-- а до его создания поиск работает последовательным чтением.
+-- CONCURRENTLY не блокирует запись в store_electro_item, но не выполняется внутри транзакции, поэтому файл
+-- не входит в schema-postgresql.sql и применяется отдельно после первого запуска, когда Hibernate уже создал таблицу:
+--   psql -h localhost -U root -d estore -f electro-item-search-index.sql
+-- Если построение прервалось, индекс остается невалидным: удалите его через DROP INDEX CONCURRENTLY и запустите файл снова.
+
+-- Колонку search_vector и индекс по ней с тем же именем создавали прежние версии при старте приложения
+ALTER TABLE store_electro_item DROP COLUMN IF EXISTS search_vector;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS store_electro_item_search_idx ON store_electro_item USING gin (
+    (setweight(to_tsvector('russian', coalesce(name, '')), 'A') ||
+     setweight(to_tsvector('russian', coalesce(description, '')), 'B'))
+);
@@ -0,0 +1,62 @@
+-- store_purchase секционирована по месяцам purchase_date.
+-- Скрипт выполняется до Hibernate: создает секционированную таблицу или переносит в нее данные
+-- из несекционированной таблицы прежних версий. Секции на новые месяцы создает PurchasePartitionService.
+
+CREATE SEQUENCE IF NOT EXISTS store_purchase_id_seq;
+
+DO $$
+DECLARE
+    kind "char";
+    month timestamp;
+BEGIN
+    SELECT relkind INTO kind FROM pg_class WHERE oid = to_regclass('store_purchase');
+    IF kind = 'p' THEN
+        RETURN;
+    END IF;
+
+    IF kind = 'r' THEN
+        ALTER SEQUENCE store_purchase_id_seq OWNED BY NONE;
+        ALTER TABLE store_purchase RENAME TO store_purchase_unpartitioned;
+        ALTER INDEX IF EXISTS store_purchase_pkey RENAME TO store_purchase_unpartitioned_pkey;
+        ALTER INDEX IF EXISTS store_purchase_date_idx RENAME TO store_purchase_unpartitioned_date_idx;
+        ALTER INDEX IF EXISTS store_purchase_employee_date_idx RENAME TO store_purchase_unpartitioned_employee_date_idx;
+    END IF;
+
+    CREATE TABLE store_purchase (
+        id            bigint    NOT NULL DEFAULT nextval('store_purchase_id_seq'),
+        elecro_id     bigint    NOT NULL,
+        employee_id   bigint    NOT NULL,
+        shop_id       bigint    NOT NULL,
+        type_id       bigint    NOT NULL,
+        purchase_date timestamp NOT NULL,
+        price         bigint,
+        CONSTRAINT store_purchase_pkey PRIMARY KEY (id, purchase_date)
+    ) PARTITION BY RANGE (purchase_date);
+    ALTER SEQUENCE store_purchase_id_seq OWNED BY store_purchase.id;
+
+    IF kind = 'r' THEN
+        FOR month IN SELECT DISTINCT date_trunc('month', purchase_date) FROM store_purchase_unpartitioned LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF store_purchase FOR VALUES FROM (%L) TO (%L)',
+                    'store_purchase_p' || to_char(month, 'YYYYMM'), month, month + interval '1 month');
+        END LOOP;
+        INSERT INTO store_purchase (id, elecro_id, employee_id, shop_id, type_id, purchase_date, price)
+            SELECT p.id, p.elecro_id, p.employee_id, p.shop_id, p.type_id, p.purchase_date, i.price
+            FROM store_purchase_unpartitioned p LEFT JOIN store_electro_item i ON i.id = p.elecro_id;
+        PERFORM setval('store_purchase_id_seq', GREATEST((SELECT MAX(id) FROM store_purchase), 1));
+        DROP TABLE store_purchase_unpartitioned;
+    END IF;
+END
+$$;
+
+-- Цена продажи в покупке: покупки прежних версий получают текущую цену товара, других данных о цене у них нет
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = 'store_purchase' AND column_name = 'price') THEN
+        ALTER TABLE store_purchase ADD COLUMN price bigint;
+        UPDATE store_purchase p SET price = i.price FROM store_electro_item i WHERE i.id = p.elecro_id;
+    END IF;
+END
+$$;
+
+-- Индекс (purchase_date, id) для постраничного вывода по ключу заменяет индекс по purchase_date прежних версий
+DROP INDEX IF EXISTS store_purchase_date_idx;
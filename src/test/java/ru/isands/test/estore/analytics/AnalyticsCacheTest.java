@@ -0,0 +1,98 @@
+package ru.isands.test.estore.analytics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Кэш аналитики: ключи по областям, сброс области или всего кэша и сброс только после фиксации
+ */
+class AnalyticsCacheTest {
+
+    private AnalyticsCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new AnalyticsCache(new SimpleMeterRegistry(), 100, 600_000);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void resultIsLoadedOncePerKey() {
+        assertEquals(1, load(AnalyticsCache.shop(1L), "cash"));
+        assertEquals(1, load(AnalyticsCache.shop(1L), "cash"));
+        assertEquals(2, load(AnalyticsCache.shop(1L), "card"));
+        assertEquals(3, load(AnalyticsCache.shop(2L), "cash"));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void nullResultIsCached() {
+        assertNull(cache.get(AnalyticsCache.positionName("Консультант"), Collections.singletonList("smartWatches"), () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get(AnalyticsCache.positionName("Консультант"), Collections.singletonList("smartWatches"), () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void invalidatingScopeReloadsOnlyThatScope() {
+        load(AnalyticsCache.shop(1L), "cash");
+        load(AnalyticsCache.shop(2L), "cash");
+        load(AnalyticsCache.position(1L), "totalSales");
+
+        cache.invalidate(AnalyticsCache.shop(1L));
+
+        assertEquals(4, load(AnalyticsCache.shop(1L), "cash"));
+        assertEquals(2, load(AnalyticsCache.shop(2L), "cash"));
+        assertEquals(3, load(AnalyticsCache.position(1L), "totalSales"));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void invalidateAllReloadsEveryScope() {
+        load(AnalyticsCache.shop(1L), "cash");
+        load(AnalyticsCache.position(1L), "totalSales");
+
+        cache.invalidateAll();
+
+        assertEquals(3, load(AnalyticsCache.shop(1L), "cash"));
+        assertEquals(4, load(AnalyticsCache.position(1L), "totalSales"));
+    }
+
+    @Test
+    void invalidationWaitsForCommit() {
+        load(AnalyticsCache.shop(1L), "cash");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate(AnalyticsCache.shop(1L));
+            cache.invalidateAll();
+            assertEquals(1, load(AnalyticsCache.shop(1L), "cash"));
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(2, load(AnalyticsCache.shop(1L), "cash"));
+    }
+
+    private int load(String scope, String query) {
+        return cache.get(scope, Arrays.asList(query, 2024), loads::incrementAndGet);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.isands.test.estore.analytics;
+
+import org.junit.jupiter.api.Test;
+import ru.isands.test.estore.dto.BestEmployeeDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Рейтинг сотрудников совпадает с полной сортировкой продаж за период
+ */
+class EmployeeLeaderboardTest {
+
+    private static final long CONSULTANT = 1L;
+    private static final long MANAGER = 2L;
+
+    @Test
+    void ranksEmployeesOfPositionSinceDay() {
+        EmployeeLeaderboard leaderboard = new EmployeeLeaderboard();
+        Map<Long, EmployeeLeaderboard.EmployeeInfo> employees = new HashMap<>();
+        employees.put(10L, info(CONSULTANT));
+        employees.put(11L, info(CONSULTANT));
+        employees.put(12L, info(CONSULTANT));
+        employees.put(20L, info(MANAGER));
+        leaderboard.setEmployees(employees);
+
+        leaderboard.add(10L, 100, 1, 500);
+        leaderboard.add(10L, 101, 2, 300);
+        leaderboard.add(11L, 99, 50, 10_000);
+        leaderboard.add(11L, 101, 3, 200);
+        leaderboard.add(12L, 102, 1, 800);
+        leaderboard.add(20L, 101, 9, 9_000);
+        leaderboard.add(30L, 101, 9, 9_000);
+
+        List<BestEmployeeDTO> bySales = leaderboard.rank(CONSULTANT, 100, EmployeeLeaderboard.BY_TOTAL_SALES, 0, 10);
+        assertEquals(Arrays.asList(10L, 12L, 11L), ids(bySales));
+        assertEquals(3L, bySales.get(0).getItemsSold());
+        assertEquals(800L, bySales.get(0).getTotalSales());
+
+        List<BestEmployeeDTO> byItems = leaderboard.rank(CONSULTANT, 100, EmployeeLeaderboard.BY_ITEMS_SOLD, 0, 10);
+        assertEquals(Arrays.asList(10L, 11L, 12L), ids(byItems));
+
+        assertEquals(Arrays.asList(11L, 10L, 12L), ids(leaderboard.rank(CONSULTANT, 0, EmployeeLeaderboard.BY_ITEMS_SOLD, 0, 10)));
+        assertTrue(leaderboard.rank(CONSULTANT, 103, EmployeeLeaderboard.BY_TOTAL_SALES, 0, 10).isEmpty());
+    }
+
+    @Test
+    void equalSalesAreOrderedById() {
+        EmployeeLeaderboard leaderboard = new EmployeeLeaderboard();
+        Map<Long, EmployeeLeaderboard.EmployeeInfo> employees = new HashMap<>();
+        for (long id = 5; id > 0; id--) {
+            employees.put(id, info(CONSULTANT));
+            leaderboard.add(id, 1, 1, 100);
+        }
+        leaderboard.setEmployees(employees);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), ids(leaderboard.rank(CONSULTANT, 0, EmployeeLeaderboard.BY_TOTAL_SALES, 0, 10)));
+        assertEquals(Arrays.asList(3L, 4L), ids(leaderboard.rank(CONSULTANT, 0, EmployeeLeaderboard.BY_TOTAL_SALES, 2, 2)));
+    }
+
+    @Test
+    void pageMatchesFullSort() {
+        Random random = new Random(31);
+        List<BestEmployeeDTO> ranked = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            ranked.add(new BestEmployeeDTO(id, "Имя", "Фамилия", "Консультант", (long) random.nextInt(20), (long) random.nextInt(50) * 100));
+        }
+        List<BestEmployeeDTO> sorted = new ArrayList<>(ranked);
+        sorted.sort(EmployeeLeaderboard.BY_TOTAL_SALES);
+
+        for (int offset : new int[]{0, 1, 37, 190, 199}) {
+            for (int limit : new int[]{1, 10, 25}) {
+                List<BestEmployeeDTO> expected = sorted.subList(offset, Math.min(sorted.size(), offset + limit));
+                assertEquals(ids(expected), ids(EmployeeLeaderboard.page(ranked, EmployeeLeaderboard.BY_TOTAL_SALES, offset, limit)));
+            }
+        }
+        assertTrue(EmployeeLeaderboard.page(ranked, EmployeeLeaderboard.BY_TOTAL_SALES, 200, 10).isEmpty());
+    }
+
+    private static EmployeeLeaderboard.EmployeeInfo info(long positionId) {
+        return new EmployeeLeaderboard.EmployeeInfo("Имя", "Фамилия", positionId, "Должность " + positionId);
+    }
+
+    private static List<Long> ids(List<BestEmployeeDTO> employees) {
+        return employees.stream().map(BestEmployeeDTO::getEmployeeId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,167 @@
+package ru.isands.test.estore.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.isands.test.estore.analytics.PurchaseColumnStore.Dimension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Агрегаты колоночного хранилища совпадают с группировкой исходных покупок
+ */
+class PurchaseColumnStoreTest {
+
+    private static final int DAY = 0;
+    private static final int PRICE = 1;
+    private static final long START_DAY = 19_700;
+
+    private final List<long[]> rows = new ArrayList<>();
+    private final PurchaseColumnStore store = new PurchaseColumnStore();
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(34);
+        // несколько блоков, чтобы агрегат делился между задачами fork-join, и неполный последний блок
+        int count = PurchaseColumnStore.CHUNK_SIZE * 2 + 12_345;
+        for (int i = 0; i < count; i++) {
+            long[] row = new long[Dimension.values().length + 2];
+            row[2 + Dimension.SHOP.ordinal()] = 1 + random.nextInt(6);
+            row[2 + Dimension.EMPLOYEE.ordinal()] = 100 + random.nextInt(40);
+            row[2 + Dimension.ITEM.ordinal()] = 1000 + random.nextInt(300);
+            row[2 + Dimension.ELECTRO_TYPE.ordinal()] = 1 + random.nextInt(5);
+            row[2 + Dimension.PURCHASE_TYPE.ordinal()] = 1 + random.nextInt(2);
+            row[DAY] = START_DAY + random.nextInt(365);
+            row[PRICE] = random.nextInt(10) == 0 ? 0 : 100 + random.nextInt(100_000);
+            rows.add(row);
+            store.append(row[2 + Dimension.SHOP.ordinal()], row[2 + Dimension.EMPLOYEE.ordinal()], row[2 + Dimension.ITEM.ordinal()],
+                    row[2 + Dimension.ELECTRO_TYPE.ordinal()], row[2 + Dimension.PURCHASE_TYPE.ordinal()], row[DAY], row[PRICE]);
+        }
+    }
+
+    @Test
+    void groupsEveryDimensionWithoutFilter() {
+        assertEquals(PurchaseColumnStore.CHUNK_SIZE * 2 + 12_345, store.size());
+        for (Dimension dimension : Dimension.values()) {
+            assertAggregate(dimension, new HashMap<>(), Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    void appliesDayRange() {
+        assertAggregate(Dimension.SHOP, new HashMap<>(), START_DAY + 30, START_DAY + 59);
+        assertAggregate(Dimension.EMPLOYEE, new HashMap<>(), START_DAY + 200, Long.MAX_VALUE);
+        assertAggregate(Dimension.ELECTRO_TYPE, new HashMap<>(), START_DAY + 400, Long.MAX_VALUE);
+    }
+
+    @Test
+    void appliesIdFilters() {
+        Map<Dimension, Collection<Long>> filters = new HashMap<>();
+        filters.put(Dimension.SHOP, Arrays.asList(2L, 5L));
+        filters.put(Dimension.ELECTRO_TYPE, Collections.singleton(3L));
+        assertAggregate(Dimension.EMPLOYEE, filters, START_DAY + 10, START_DAY + 100);
+
+        filters = new HashMap<>();
+        filters.put(Dimension.EMPLOYEE, Arrays.asList(101L, 117L, 139L, 999L));
+        assertAggregate(Dimension.ITEM, filters, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertAggregate(Dimension.EMPLOYEE, filters, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Test
+    void unknownIdsMatchNothing() {
+        Map<Dimension, Collection<Long>> filters = new HashMap<>();
+        filters.put(Dimension.SHOP, Collections.singleton(42L));
+        assertTrue(aggregate(Dimension.SHOP, filters, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+
+        filters.put(Dimension.SHOP, Collections.emptyList());
+        assertTrue(aggregate(Dimension.PURCHASE_TYPE, filters, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void emptyStoreHasNoGroups() {
+        assertTrue(new PurchaseColumnStore().aggregate(Dimension.SHOP, new PurchaseColumnStore.Filter(), pool).isEmpty());
+    }
+
+    @Test
+    void aggregatesSeeConsistentPrefixDuringAppends() throws InterruptedException {
+        PurchaseColumnStore growing = new PurchaseColumnStore();
+        int total = PurchaseColumnStore.CHUNK_SIZE + 5000;
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                growing.append(1 + i % 7, 1 + i % 11, 1 + i % 13, 1, 1, START_DAY, 1);
+            }
+            done.set(true);
+        });
+        writer.start();
+        long previous = 0;
+        while (!done.get()) {
+            long seen = 0;
+            for (long[] totals : growing.aggregate(Dimension.ITEM, new PurchaseColumnStore.Filter(), pool).values()) {
+                assertEquals(totals[0], totals[1]);
+                seen += totals[0];
+            }
+            assertTrue(seen >= previous);
+            previous = seen;
+        }
+        writer.join();
+
+        long[] all = growing.aggregate(Dimension.PURCHASE_TYPE, new PurchaseColumnStore.Filter(), pool).get(1L);
+        assertArrayEquals(new long[]{total, total}, all);
+    }
+
+    private Map<Long, long[]> aggregate(Dimension groupBy, Map<Dimension, Collection<Long>> filters, long fromDay, long toDay) {
+        PurchaseColumnStore.Filter filter = new PurchaseColumnStore.Filter();
+        if (fromDay != Long.MIN_VALUE) {
+            filter.from(fromDay);
+        }
+        if (toDay != Long.MAX_VALUE) {
+            filter.to(toDay);
+        }
+        for (Map.Entry<Dimension, Collection<Long>> entry : filters.entrySet()) {
+            filter.in(entry.getKey(), entry.getValue());
+        }
+        return store.aggregate(groupBy, filter, pool);
+    }
+
+    private void assertAggregate(Dimension groupBy, Map<Dimension, Collection<Long>> filters, long fromDay, long toDay) {
+        Map<Long, long[]> expected = new TreeMap<>();
+        row:
+        for (long[] row : rows) {
+            if (row[DAY] < fromDay || row[DAY] > toDay) {
+                continue;
+            }
+            for (Map.Entry<Dimension, Collection<Long>> filter : filters.entrySet()) {
+                Set<Long> allowed = new HashSet<>(filter.getValue());
+                if (!allowed.contains(row[2 + filter.getKey().ordinal()])) {
+                    continue row;
+                }
+            }
+            long[] totals = expected.computeIfAbsent(row[2 + groupBy.ordinal()], k -> new long[2]);
+            totals[0]++;
+            totals[1] += row[PRICE];
+        }
+
+        Map<Long, long[]> actual = new TreeMap<>(aggregate(groupBy, filters, fromDay, toDay));
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, long[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+}
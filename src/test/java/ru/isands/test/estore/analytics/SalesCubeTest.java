@@ -0,0 +1,178 @@
+package ru.isands.test.estore.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.isands.test.estore.analytics.SalesCube.Dimension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ответы куба продаж совпадают с группировкой исходных продаж
+ */
+class SalesCubeTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    private final List<long[]> facts = new ArrayList<>();
+    private SalesCube cube;
+
+    @BeforeEach
+    void setUp() {
+        cube = new SalesCube(Arrays.asList(
+                Arrays.asList(Dimension.SHOP, Dimension.ELECTRO_TYPE, Dimension.DAY),
+                Arrays.asList(Dimension.SHOP, Dimension.MONTH),
+                Collections.singletonList(Dimension.PURCHASE_TYPE),
+                Arrays.asList(Dimension.ITEM, Dimension.MONTH)));
+        Random random = new Random(40);
+        for (int i = 0; i < 2000; i++) {
+            long[] fact = new long[Dimension.values().length];
+            fact[Dimension.SHOP.ordinal()] = 1 + random.nextInt(4);
+            fact[Dimension.ELECTRO_TYPE.ordinal()] = 1 + random.nextInt(3);
+            fact[Dimension.ITEM.ordinal()] = 1 + random.nextInt(20);
+            fact[Dimension.POSITION.ordinal()] = 1 + random.nextInt(2);
+            fact[Dimension.PURCHASE_TYPE.ordinal()] = 1 + random.nextInt(2);
+            fact[Dimension.DAY.ordinal()] = START.toEpochDay() + random.nextInt(120);
+            long count = 1 + random.nextInt(3);
+            long revenue = count * (100 + random.nextInt(900));
+            cube.add(fact, count, revenue);
+            long[] row = Arrays.copyOf(fact, fact.length + 2);
+            row[fact.length] = count;
+            row[fact.length + 1] = revenue;
+            facts.add(row);
+        }
+    }
+
+    @Test
+    void wholeMonthsUseMonthCuboid() {
+        SalesCube.Query query = new SalesCube.Query(Arrays.asList(Dimension.SHOP, Dimension.MONTH), Collections.emptyMap(),
+                LocalDate.of(2024, 2, 1), LocalDate.of(2024, 3, 31));
+
+        SalesCube.Cuboid cuboid = cube.find(query);
+        assertEquals(Arrays.asList(Dimension.SHOP, Dimension.MONTH), cuboid.dimensions());
+        assertAnswer(query, cuboid);
+    }
+
+    @Test
+    void partialMonthUsesDayCuboid() {
+        SalesCube.Query query = new SalesCube.Query(Collections.singletonList(Dimension.MONTH), Collections.emptyMap(),
+                LocalDate.of(2024, 1, 15), LocalDate.of(2024, 3, 10));
+
+        SalesCube.Cuboid cuboid = cube.find(query);
+        assertEquals(Arrays.asList(Dimension.SHOP, Dimension.ELECTRO_TYPE, Dimension.DAY), cuboid.dimensions());
+        assertAnswer(query, cuboid);
+    }
+
+    @Test
+    void filtersAndGroupsByDay() {
+        Map<Dimension, Set<Long>> filters = new HashMap<>();
+        filters.put(Dimension.SHOP, new HashSet<>(Arrays.asList(1L, 3L)));
+        filters.put(Dimension.ELECTRO_TYPE, Collections.singleton(2L));
+        SalesCube.Query query = new SalesCube.Query(Collections.singletonList(Dimension.DAY), filters,
+                LocalDate.of(2024, 2, 10), LocalDate.of(2024, 2, 20));
+
+        assertAnswer(query, cube.find(query));
+    }
+
+    @Test
+    void smallestCoveringCuboidIsChosen() {
+        SalesCube.Query query = new SalesCube.Query(Collections.singletonList(Dimension.PURCHASE_TYPE), Collections.emptyMap(), null, null);
+
+        SalesCube.Cuboid cuboid = cube.find(query);
+        assertEquals(Collections.singletonList(Dimension.PURCHASE_TYPE), cuboid.dimensions());
+        assertAnswer(query, cuboid);
+    }
+
+    @Test
+    void itemCuboidAnswersItemQueries() {
+        SalesCube.Query query = new SalesCube.Query(Collections.singletonList(Dimension.MONTH),
+                Collections.singletonMap(Dimension.ITEM, new HashSet<>(Arrays.asList(3L, 7L))), LocalDate.of(2024, 2, 1), null);
+
+        SalesCube.Cuboid cuboid = cube.find(query);
+        assertEquals(Arrays.asList(Dimension.ITEM, Dimension.MONTH), cuboid.dimensions());
+        assertAnswer(query, cuboid);
+    }
+
+    @Test
+    void uncoveredQueryHasNoCuboid() {
+        assertNull(cube.find(new SalesCube.Query(Collections.singletonList(Dimension.POSITION), Collections.emptyMap(), null, null)));
+        assertNull(cube.find(new SalesCube.Query(Collections.singletonList(Dimension.PURCHASE_TYPE), Collections.emptyMap(),
+                LocalDate.of(2024, 2, 1), null)));
+        assertNull(cube.find(new SalesCube.Query(Collections.singletonList(Dimension.ITEM), Collections.emptyMap(),
+                LocalDate.of(2024, 2, 10), null)));
+    }
+
+    @Test
+    void itemQueriesFallBackToPurchases() {
+        Map<Dimension, Set<Long>> filters = new HashMap<>();
+        filters.put(Dimension.ITEM, Collections.singleton(5L));
+        String sql = SalesCubeService.groupingSql(Collections.singletonList(Dimension.POSITION), filters, true, true);
+
+        assertTrue(sql.contains("FROM store_purchase p"), sql);
+        assertTrue(sql.contains("SUM(p.price)"), sql);
+        assertTrue(sql.contains("p.elecro_id IN (:f0)"), sql);
+        assertTrue(sql.contains("JOIN employee e ON e.id_ = p.employee_id"), sql);
+        assertTrue(sql.contains("p.purchase_date < :toExclusive"), sql);
+
+        String daily = SalesCubeService.groupingSql(Arrays.asList(Dimension.SHOP, Dimension.DAY), Collections.emptyMap(), true, false);
+        assertTrue(daily.contains("FROM store_sales_daily r"), daily);
+        assertFalse(SalesCubeService.fromDaily(Collections.emptyList(), Collections.singleton(Dimension.ITEM)));
+    }
+
+    @Test
+    void dimensionNamesIgnoreCaseAndUnderscores() {
+        assertEquals(Dimension.ELECTRO_TYPE, Dimension.of("electroType"));
+        assertEquals(Dimension.ELECTRO_TYPE, Dimension.of(" electro_type "));
+        assertEquals(Dimension.PURCHASE_TYPE, Dimension.of("PURCHASE_TYPE"));
+        assertEquals(Dimension.ITEM, Dimension.of("item"));
+        assertThrows(IllegalArgumentException.class, () -> Dimension.of("employee"));
+    }
+
+    private void assertAnswer(SalesCube.Query query, SalesCube.Cuboid cuboid) {
+        Map<SalesCube.Key, long[]> expected = new TreeMap<>();
+        long fromDay = query.from() == null ? Long.MIN_VALUE : query.from().toEpochDay();
+        long toDay = query.to() == null ? Long.MAX_VALUE : query.to().toEpochDay();
+        fact:
+        for (long[] fact : facts) {
+            long day = fact[Dimension.DAY.ordinal()];
+            if (day < fromDay || day > toDay) {
+                continue;
+            }
+            for (Map.Entry<Dimension, Set<Long>> filter : query.filters().entrySet()) {
+                if (!filter.getValue().contains(fact[filter.getKey().ordinal()])) {
+                    continue fact;
+                }
+            }
+            long[] key = new long[query.groupBy().size()];
+            for (int i = 0; i < key.length; i++) {
+                Dimension dimension = query.groupBy().get(i);
+                key[i] = dimension == Dimension.MONTH ? SalesCube.monthOf(day) : fact[dimension.ordinal()];
+            }
+            long[] totals = expected.computeIfAbsent(new SalesCube.Key(key), k -> new long[2]);
+            totals[0] += fact[fact.length - 2];
+            totals[1] += fact[fact.length - 1];
+        }
+
+        Map<SalesCube.Key, long[]> actual = new TreeMap<>(cuboid.answer(query));
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<SalesCube.Key, long[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.isands.test.estore.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Счетчик в скользящем окне: суммы по окну, сброс устаревших корзин и значения в пределах 40 бит
+ */
+class SlidingWindowCounterTest {
+
+    @Test
+    void sumsOnlyBucketsInsideWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(10);
+        counter.add(100, 1, 10);
+        counter.add(101, 2, 20);
+        counter.add(101, 3, 30);
+        counter.add(105, 4, 40);
+
+        assertEquals(10, counter.count(105, 10));
+        assertEquals(100, counter.revenue(105, 10));
+        assertEquals(9, counter.count(105, 5));
+        assertEquals(4, counter.count(105, 1));
+        assertEquals(0, counter.count(104, 3));
+        assertEquals(6, counter.count(101, 100));
+    }
+
+    @Test
+    void reusedBucketDropsOldValue() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(4);
+        counter.add(1, 5, 500);
+        counter.add(2, 1, 100);
+
+        counter.add(5, 2, 200);
+
+        assertEquals(2, counter.count(5, 1));
+        assertEquals(200, counter.revenue(5, 1));
+        assertEquals(3, counter.count(5, 4));
+        assertEquals(0, counter.count(1, 1));
+        assertEquals(1, counter.count(2, 1));
+        assertEquals(0, counter.count(9, 4));
+    }
+
+    @Test
+    void keepsValuesUpToFortyBits() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60);
+        long large = (1L << 39) + 12345;
+        counter.add(7, 1, large);
+        counter.add(7, 1, 1000);
+
+        assertEquals(large + 1000, counter.revenue(7, 1));
+        assertEquals(2, counter.count(7, 1));
+    }
+
+    @Test
+    void stampSurvivesBucketNumbersAboveTwentyFourBits() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60);
+        long bucket = (1L << 24) * 3 + 17;
+        counter.add(bucket - 1, 1, 10);
+        counter.add(bucket, 2, 20);
+
+        assertEquals(3, counter.count(bucket, 2));
+        assertEquals(30, counter.revenue(bucket, 2));
+        assertEquals(0, counter.count(bucket + 60, 1));
+        assertEquals(0, counter.count(bucket + 60 - 1, 1));
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(8);
+        int threads = 8;
+        int perThread = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    counter.add(1000 + i % 4, 1, 3);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * perThread, counter.count(1003, 4));
+        assertEquals(3L * threads * perThread, counter.revenue(1003, 4));
+    }
+}
@@ -0,0 +1,176 @@
+package ru.isands.test.estore.dao.repo;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import ru.isands.test.estore.dao.entity.ElectroEmployee;
+import ru.isands.test.estore.dao.entity.ElectroEmployeePK;
+import ru.isands.test.estore.dao.entity.ElectroItem;
+import ru.isands.test.estore.dao.entity.ElectroType;
+import ru.isands.test.estore.dao.entity.Employee;
+import ru.isands.test.estore.dao.entity.PositionType;
+import ru.isands.test.estore.dao.entity.Purchase;
+import ru.isands.test.estore.dao.entity.PurchaseType;
+import ru.isands.test.estore.dao.entity.Shop;
+import ru.isands.test.estore.dto.PurchaseRowDTO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Количество SQL-запросов при чтении связей: списки и карточки не должны порождать запрос на строку
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.sql.init.mode=never",
+        "spring.jpa.database=h2",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class AssociationFetchTest {
+
+    private static final int ROWS = 10;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private ElectroEmployeeRepository electroEmployeeRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    private Statistics statistics;
+    private Long purchaseId;
+    private final List<Long> employeeIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ElectroType electroType = electroType();
+        PurchaseType purchaseType = purchaseType();
+        for (int i = 0; i < ROWS; i++) {
+            Shop shop = shop(i);
+            PositionType position = position(i);
+
+            Employee employee = new Employee();
+            employee.setLastName("Иванов");
+            employee.setFirstName("Иван");
+            employee.setPatronymic("Иванович");
+            employee.setBirthDate(new Date());
+            employee.setPosition(position);
+            employee.setShop(shop);
+            entityManager.persist(employee);
+            employeeIds.add(employee.getId());
+
+            ElectroItem electroItem = new ElectroItem();
+            electroItem.setName("Товар " + i);
+            electroItem.setEType(electroType);
+            electroItem.setPrice(100L);
+            electroItem.setCount(1);
+            entityManager.persist(electroItem);
+
+            ElectroEmployee electroEmployee = new ElectroEmployee();
+            electroEmployee.setId(new ElectroEmployeePK(electroType.getId(), employee.getId()));
+            electroEmployee.setEmployee(employee);
+            electroEmployee.setElectroType(electroType);
+            entityManager.persist(electroEmployee);
+
+            Purchase purchase = new Purchase();
+            purchase.setElectroItem(electroItem);
+            purchase.setEmployee(employee);
+            purchase.setShop(shop);
+            purchase.setPurchaseType(purchaseType);
+            purchase.setPurchaseDate(new Date());
+            purchaseId = entityManager.persist(purchase).getId();
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void purchaseRowsPageUsesRowAndCountQueries() {
+        Page<PurchaseRowDTO> page = purchaseRepository.findRows(PageRequest.of(0, ROWS - 1));
+
+        assertEquals(ROWS - 1, page.getNumberOfElements());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void purchaseDetailLoadsAssociationsInOneQuery() {
+        Purchase purchase = purchaseRepository.findWithAssociationsById(purchaseId).orElseThrow(IllegalStateException::new);
+
+        purchase.getElectroItem().getEType().getName();
+        purchase.getEmployee().getPosition().getName();
+        purchase.getEmployee().getShop().getName();
+        purchase.getShop().getName();
+        purchase.getPurchaseType().getName();
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void electroEmployeePageLoadsAssociationsWithRows() {
+        Page<ElectroEmployee> page = electroEmployeeRepository.findAll(PageRequest.of(0, ROWS - 1));
+
+        for (ElectroEmployee electroEmployee : page) {
+            electroEmployee.getEmployee().getPosition().getName();
+            electroEmployee.getEmployee().getShop().getName();
+            electroEmployee.getElectroType().getName();
+        }
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void lazyAssociationsOfEntityListAreBatchFetched() {
+        List<Employee> employees = employeeRepository.findAllById(employeeIds);
+
+        for (Employee employee : employees) {
+            employee.getPosition().getName();
+            employee.getShop().getName();
+        }
+        assertEquals(ROWS, employees.size());
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    private ElectroType electroType() {
+        ElectroType electroType = new ElectroType();
+        electroType.setName("Смартфоны");
+        return entityManager.persist(electroType);
+    }
+
+    private PurchaseType purchaseType() {
+        PurchaseType purchaseType = new PurchaseType();
+        purchaseType.setName("Наличные");
+        return entityManager.persist(purchaseType);
+    }
+
+    private Shop shop(int i) {
+        Shop shop = new Shop();
+        shop.setName("Магазин " + i);
+        return entityManager.persist(shop);
+    }
+
+    private PositionType position(int i) {
+        PositionType position = new PositionType();
+        position.setName("Должность " + i);
+        return entityManager.persist(position);
+    }
+}
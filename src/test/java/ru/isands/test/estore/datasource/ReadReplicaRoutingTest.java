@@ -0,0 +1,102 @@
+package ru.isands.test.estore.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Транзакции только для чтения идут на реплику, пока она отвечает и не отстает, и на основную БД в остальных случаях
+ */
+class ReadReplicaRoutingTest {
+
+    private static final long MAX_LAG_MS = 5000;
+
+    private ReplicaLagMonitor replicaLagMonitor;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate writeTransaction;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        replicaLagMonitor = new ReplicaLagMonitor(replica, MAX_LAG_MS, new SimpleMeterRegistry());
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReadReplicaRoutingDataSource(primary, replica, replicaLagMonitor));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void readOnlyTransactionUsesAvailableReplica() {
+        replicaLagMonitor.update(0, null);
+
+        assertEquals("replica", readOnly());
+        assertEquals("primary", writeTransaction.execute(status -> server()));
+        assertEquals("primary", server());
+    }
+
+    @Test
+    void laggingReplicaFallsBackToPrimary() {
+        replicaLagMonitor.update(MAX_LAG_MS + 1, null);
+        assertFalse(replicaLagMonitor.isAvailable());
+        assertEquals("primary", readOnly());
+
+        replicaLagMonitor.update(MAX_LAG_MS, null);
+        assertTrue(replicaLagMonitor.isAvailable());
+        assertEquals("replica", readOnly());
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToPrimary() {
+        replicaLagMonitor.update(0, null);
+        // в H2 нет pg_is_in_recovery, проверка завершается ошибкой, как при недоступной реплике
+        replicaLagMonitor.check();
+
+        assertFalse(replicaLagMonitor.isAvailable());
+        assertEquals("primary", readOnly());
+    }
+
+    @Test
+    void onPrimaryOverridesReplica() {
+        replicaLagMonitor.update(0, null);
+
+        assertEquals("primary", ReadRouting.onPrimary(this::readOnly));
+        assertEquals("primary", ReadRouting.onPrimary(() -> {
+            ReadRouting.onPrimary(this::readOnly);
+            return readOnly();
+        }));
+        assertEquals("replica", readOnly());
+    }
+
+    private String readOnly() {
+        return readOnlyTransaction.execute(status -> server());
+    }
+
+    private String server() {
+        return jdbcTemplate.queryForObject("SELECT name FROM server", String.class);
+    }
+
+    private static DataSource database(String name) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:routing_" + name + ";DB_CLOSE_DELAY=-1", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS server (name VARCHAR(20))");
+        jdbcTemplate.update("DELETE FROM server");
+        jdbcTemplate.update("INSERT INTO server VALUES (?)", name);
+        return dataSource;
+    }
+}
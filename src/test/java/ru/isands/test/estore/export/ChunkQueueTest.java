@@ -0,0 +1,78 @@
+package ru.isands.test.estore.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Очередь блоков передает байты писателя читателю без потерь и с ошибкой писателя
+ */
+class ChunkQueueTest {
+
+    @Test
+    void readerGetsAllBytesInOrder() throws Exception {
+        byte[] data = new byte[100_003];
+        new Random(44).nextBytes(data);
+        ChunkQueue queue = new ChunkQueue(2, 1024);
+        AtomicReference<Throwable> writerFailure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try (OutputStream out = queue.output()) {
+                Random random = new Random(1);
+                int offset = 0;
+                while (offset < data.length) {
+                    if (random.nextInt(4) == 0) {
+                        out.write(data[offset++]);
+                    } else {
+                        int length = Math.min(data.length - offset, random.nextInt(3000));
+                        out.write(data, offset, length);
+                        offset += length;
+                    }
+                }
+            } catch (Throwable e) {
+                writerFailure.set(e);
+            }
+        });
+        writer.start();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        queue.drainTo(received);
+        writer.join();
+
+        assertNull(writerFailure.get());
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    void emptyOutputEndsQueue() throws Exception {
+        ChunkQueue queue = new ChunkQueue(1, 16);
+        queue.output().close();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        queue.drainTo(received);
+        assertEquals(0, received.size());
+    }
+
+    @Test
+    void writerFailureReachesReader() throws Exception {
+        ChunkQueue queue = new ChunkQueue(4, 4);
+        OutputStream out = queue.output();
+        out.write(new byte[]{1, 2, 3, 4, 5});
+        IllegalStateException failure = new IllegalStateException("таблица недоступна");
+        queue.fail(failure);
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        IOException e = assertThrows(IOException.class, () -> queue.drainTo(received));
+        assertSame(failure, e.getCause());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, received.toByteArray());
+    }
+}
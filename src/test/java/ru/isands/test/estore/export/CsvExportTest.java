@@ -0,0 +1,71 @@
+package ru.isands.test.estore.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.isands.test.estore.util.CsvRows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Выгрузка .csv читается парсером импорта без искажений кавычек, обратных слэшей и разделителей
+ */
+class CsvExportTest {
+
+    private static final String[] DESCRIPTIONS = {
+            "Диагональ 55\"",
+            "C:\\drivers\\",
+            "кабель \\\"HDMI\\\"; 2 м",
+            "две\nстроки",
+            "\\"
+    };
+
+    @Test
+    void textSurvivesExportAndImport() throws Exception {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:csv;DB_CLOSE_DELAY=-1", true);
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE store_electro_item (id BIGINT, name VARCHAR(150), etype_id BIGINT, price BIGINT, " +
+                        "count INT, archive BOOLEAN, description VARCHAR(1000))");
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO store_electro_item VALUES (?, ?, 1, 100, 1, false, ?)")) {
+                for (int i = 0; i < DESCRIPTIONS.length; i++) {
+                    insert.setLong(1, i + 1);
+                    insert.setString(2, "Товар " + i);
+                    insert.setString(3, DESCRIPTIONS[i]);
+                    insert.executeUpdate();
+                }
+            }
+        }
+        ExportService exportService = new ExportService(dataSource, new DataSourceTransactionManager(dataSource), new ObjectMapper());
+        ExportRequest request = exportService.prepare("electroItem", "csv", "UTF-8", null, null, null, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.write(request, out);
+        dataSource.destroy();
+
+        List<String[]> rows;
+        try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8))
+                .withSkipLines(1)
+                .withCSVParser(CsvRows.parser())
+                .build()) {
+            rows = CsvRows.readAll(csvReader);
+        }
+
+        assertEquals(DESCRIPTIONS.length, rows.size());
+        for (int i = 0; i < DESCRIPTIONS.length; i++) {
+            assertEquals(DESCRIPTIONS[i], rows.get(i)[6]);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.isands.test.estore.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Повтор при конфликте версий: число попыток, задержка и счетчики
+ */
+class OptimisticRetryAspectTest {
+
+    private static final String OPERATION = "PurchaseService.createPurchase(..)";
+
+    private SimpleMeterRegistry meterRegistry;
+    private OptimisticRetryAspect aspect;
+    private ProceedingJoinPoint joinPoint;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        aspect = new OptimisticRetryAspect(meterRegistry);
+        ReflectionTestUtils.setField(aspect, "maxAttempts", 3);
+        ReflectionTestUtils.setField(aspect, "backoffMs", 1L);
+        ReflectionTestUtils.setField(aspect, "maxBackoffMs", 2L);
+        joinPoint = mock(ProceedingJoinPoint.class);
+        Signature signature = mock(Signature.class);
+        when(signature.toShortString()).thenReturn(OPERATION);
+        when(joinPoint.getSignature()).thenReturn(signature);
+    }
+
+    @Test
+    void conflictIsRetriedUntilSuccess() throws Throwable {
+        when(joinPoint.proceed())
+                .thenThrow(new OptimisticLockingFailureException("stale"))
+                .thenThrow(new OptimisticLockingFailureException("stale"))
+                .thenReturn("ok");
+
+        assertEquals("ok", aspect.retry(joinPoint));
+        verify(joinPoint, times(3)).proceed();
+        assertEquals(2, count("estore.optimistic.conflicts"));
+        assertEquals(2, count("estore.optimistic.retries"));
+        assertEquals(0, count("estore.optimistic.exhausted"));
+    }
+
+    @Test
+    void conflictIsRethrownAfterLastAttempt() throws Throwable {
+        OptimisticLockingFailureException conflict = new OptimisticLockingFailureException("stale");
+        when(joinPoint.proceed()).thenThrow(conflict);
+
+        assertSame(conflict, assertThrows(OptimisticLockingFailureException.class, () -> aspect.retry(joinPoint)));
+        verify(joinPoint, times(3)).proceed();
+        assertEquals(3, count("estore.optimistic.conflicts"));
+        assertEquals(2, count("estore.optimistic.retries"));
+        assertEquals(1, count("estore.optimistic.exhausted"));
+    }
+
+    @Test
+    void otherErrorsAreNotRetried() throws Throwable {
+        when(joinPoint.proceed()).thenThrow(new IllegalStateException("broken"));
+
+        assertThrows(IllegalStateException.class, () -> aspect.retry(joinPoint));
+        verify(joinPoint, times(1)).proceed();
+        assertEquals(0, count("estore.optimistic.conflicts"));
+    }
+
+    @Test
+    void backoffGrowsExponentiallyUpToLimit() {
+        ReflectionTestUtils.setField(aspect, "backoffMs", 20L);
+        ReflectionTestUtils.setField(aspect, "maxBackoffMs", 200L);
+        long[] ceilings = {20, 40, 80, 160, 200, 200, 200};
+        for (int attempt = 1; attempt <= ceilings.length; attempt++) {
+            long max = 0;
+            for (int i = 0; i < 2000; i++) {
+                long backoff = aspect.backoff(attempt);
+                assertTrue(backoff >= 0 && backoff <= ceilings[attempt - 1], "attempt " + attempt + ": " + backoff);
+                max = Math.max(max, backoff);
+            }
+            assertTrue(max > ceilings[attempt - 1] / 2, "attempt " + attempt + ": " + max);
+        }
+        ReflectionTestUtils.setField(aspect, "backoffMs", 0L);
+        assertEquals(0, aspect.backoff(5));
+    }
+
+    private double count(String name) {
+        Counter counter = meterRegistry.find(name).tag("operation", OPERATION).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,90 @@
+package ru.isands.test.estore.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Разбор поисковой строки в tsquery, фильтры поиска и детерминированный отбор кандидатов
+ */
+class ElectroItemSearchServiceTest {
+
+    @Test
+    void wordsBecomeRequiredPrefixes() {
+        assertEquals("смарт:* & часы:*", ElectroItemSearchService.toTsQuery("Смарт-часы"));
+        assertEquals("iphone:* & 15:* & pro:*", ElectroItemSearchService.toTsQuery("  iPhone 15, PRO! "));
+        assertEquals("a:* & b:*", ElectroItemSearchService.toTsQuery("a & b"));
+    }
+
+    @Test
+    void operatorsAndQuotesAreNotPassedThrough() {
+        String tsQuery = ElectroItemSearchService.toTsQuery("ноутбук' | !планшет & (телефон):*");
+
+        assertEquals("ноутбук:* & планшет:* & телефон:*", tsQuery);
+        assertFalse(tsQuery.contains("'"));
+        assertFalse(tsQuery.contains("|"));
+    }
+
+    @Test
+    void termsAreCapped() {
+        String tsQuery = ElectroItemSearchService.toTsQuery("a b c d e f g h i j k");
+
+        assertEquals(8, tsQuery.split(" & ").length);
+        assertTrue(tsQuery.endsWith("h:*"));
+    }
+
+    @Test
+    void emptyQueryIsRejected() {
+        assertThrows(RequestLimitExceededException.class, () -> ElectroItemSearchService.toTsQuery(null));
+        assertThrows(RequestLimitExceededException.class, () -> ElectroItemSearchService.toTsQuery(" ,.-!? "));
+    }
+
+    @Test
+    void filtersAreAddedOnlyWhenGiven() {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = ElectroItemSearchService.searchSql(null, null, params);
+
+        assertFalse(sql.contains("etype_id IN"));
+        assertFalse(sql.contains("archive ="));
+        assertFalse(params.hasValue("electroTypeIds"));
+
+        sql = ElectroItemSearchService.searchSql(Collections.emptyList(), null, params);
+        assertFalse(sql.contains("etype_id IN"));
+
+        sql = ElectroItemSearchService.searchSql(Arrays.asList(1L, 2L), false, params);
+        assertTrue(sql.contains("AND etype_id IN (:electroTypeIds)"));
+        assertTrue(sql.contains("AND archive = :archive"));
+        assertEquals(Arrays.asList(1L, 2L), params.getValue("electroTypeIds"));
+        assertEquals(false, params.getValue("archive"));
+    }
+
+    @Test
+    void candidatesAreCutInIdOrder() {
+        String sql = ElectroItemSearchService.searchSql(null, true, new MapSqlParameterSource());
+
+        int candidates = sql.indexOf("LIMIT :candidates");
+        assertTrue(candidates > 0);
+        assertTrue(sql.lastIndexOf("ORDER BY id", candidates) > sql.indexOf("WHERE"));
+        assertTrue(sql.indexOf("ORDER BY ts_rank") > candidates);
+    }
+
+    @Test
+    void pagingIsValidated() {
+        ElectroItemSearchService service = new ElectroItemSearchService(new JdbcTemplate());
+        ReflectionTestUtils.setField(service, "maxLimit", 100);
+
+        assertThrows(RequestLimitExceededException.class, () -> service.search("часы", null, null, 0, 0));
+        assertThrows(RequestLimitExceededException.class, () -> service.search("часы", null, null, 101, 0));
+        assertThrows(RequestLimitExceededException.class, () -> service.search("часы", null, null, 10, -1));
+    }
+}
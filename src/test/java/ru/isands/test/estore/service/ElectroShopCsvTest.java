@@ -0,0 +1,54 @@
+package ru.isands.test.estore.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.isands.test.estore.dao.entity.ElectroShopPK;
+import ru.isands.test.estore.export.ExportRequest;
+import ru.isands.test.estore.export.ExportService;
+import ru.isands.test.estore.util.CsvRows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Выгрузка ElectroShop читается импортом с теми же ключами связей
+ */
+class ElectroShopCsvTest {
+
+    @Test
+    void exportedRowsImportWithSameKeys() throws Exception {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:eshop;DB_CLOSE_DELAY=-1", true);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE store_eshop (shop_id BIGINT, electro_item_id BIGINT, count INT)");
+            statement.execute("INSERT INTO store_eshop VALUES (1, 20, 5), (3, 40, 7)");
+        }
+        ExportService exportService = new ExportService(dataSource, new DataSourceTransactionManager(dataSource), new ObjectMapper());
+        ExportRequest request = exportService.prepare("electroShop", "csv", "UTF-8", null, null, null, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, exportService.write(request, out));
+        dataSource.destroy();
+
+        List<String[]> rows;
+        try (CSVReader csvReader = new CSVReaderBuilder(new InputStreamReader(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8))
+                .withSkipLines(1)
+                .withCSVParser(CsvRows.parser())
+                .build()) {
+            rows = CsvRows.readAll(csvReader);
+        }
+
+        assertEquals(2, rows.size());
+        assertEquals(new ElectroShopPK(20L, 1L), ElectroShopService.csvId(rows.get(0)));
+        assertEquals(new ElectroShopPK(40L, 3L), ElectroShopService.csvId(rows.get(1)));
+    }
+}
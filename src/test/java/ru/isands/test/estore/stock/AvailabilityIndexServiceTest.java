@@ -0,0 +1,113 @@
+package ru.isands.test.estore.stock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.isands.test.estore.dao.repo.ElectroShopRepository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Изменения остатков, зафиксированные во время перестроения индекса, не затираются строками, прочитанными раньше
+ */
+class AvailabilityIndexServiceTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private JdbcTemplate jdbcTemplate;
+    private AvailabilityIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:availability_" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE eshop (shop_id BIGINT, electro_item_id BIGINT, count INT)");
+        jdbcTemplate.execute("CREATE ALIAS ON_SCAN FOR \"" + ScanHook.class.getName() + ".scanned\"");
+        jdbcTemplate.execute("CREATE VIEW store_eshop AS SELECT shop_id, electro_item_id, count FROM eshop " +
+                "WHERE ON_SCAN(shop_id, electro_item_id)");
+        jdbcTemplate.update("INSERT INTO eshop VALUES (1, 1, 5), (1, 2, 0), (2, 1, 3)");
+        service = new AvailabilityIndexService(Mockito.mock(ElectroShopRepository.class), dataSource,
+                new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(service, "enabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ScanHook.onScan = null;
+    }
+
+    @Test
+    void rebuildBuildsFromPositiveCounts() {
+        service.rebuild();
+
+        assertTrue(service.isAvailable(1L, 1L));
+        assertFalse(service.isAvailable(1L, 2L));
+        assertTrue(service.isAvailable(2L, 1L));
+    }
+
+    @Test
+    void changesDuringRebuildWinOverScannedRows() {
+        service.rebuild();
+        ScanHook.onScan = () -> inOtherThread(() -> {
+            jdbcTemplate.update("UPDATE eshop SET count = 0 WHERE shop_id = 1 AND electro_item_id = 1");
+            service.onCountChanged(1L, 1L, 0);
+            jdbcTemplate.update("UPDATE eshop SET count = 4 WHERE shop_id = 1 AND electro_item_id = 2");
+            service.onCountChanged(1L, 2L, 4);
+        });
+
+        service.rebuild();
+
+        assertFalse(service.isAvailable(1L, 1L));
+        assertTrue(service.isAvailable(1L, 2L));
+        assertTrue(service.isAvailable(2L, 1L));
+    }
+
+    @Test
+    void changesAfterRebuildUpdateIndex() {
+        service.rebuild();
+
+        service.onCountChanged(2L, 1L, 0);
+        service.onCountChanged(3L, 9L, 1);
+        service.onCountChanged(null, 9L, 1);
+
+        assertFalse(service.isAvailable(2L, 1L));
+        assertTrue(service.isAvailable(3L, 9L));
+    }
+
+    private static void inOtherThread(Runnable action) {
+        Thread thread = new Thread(action);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Функция H2, через которую представление store_eshop выполняет действие при чтении первой строки
+     */
+    public static final class ScanHook {
+
+        static volatile Runnable onScan;
+
+        public static boolean scanned(Long shopId, Long itemId) {
+            Runnable action = onScan;
+            onScan = null;
+            if (action != null) {
+                action.run();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.isands.test.estore.stock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Битовая карта наличия: переходы остатка через ноль, рост по магазинам и товарам и параллельные обновления одного слова
+ */
+class AvailabilityIndexTest {
+
+    @Test
+    void followsTransitionsThroughZero() {
+        AvailabilityIndex index = new AvailabilityIndex();
+        assertFalse(index.isAvailable(1, 5));
+
+        index.set(1, 5, true);
+        assertTrue(index.isAvailable(1, 5));
+        assertFalse(index.isAvailable(1, 4));
+        assertFalse(index.isAvailable(1, 6));
+        assertFalse(index.isAvailable(2, 5));
+
+        index.set(1, 5, true);
+        assertTrue(index.isAvailable(1, 5));
+
+        index.set(1, 5, false);
+        assertFalse(index.isAvailable(1, 5));
+
+        index.set(1, 5, false);
+        index.set(7, 100_000, false);
+        assertFalse(index.isAvailable(1, 5));
+        assertFalse(index.isAvailable(7, 100_000));
+
+        index.set(1, 5, true);
+        assertTrue(index.isAvailable(1, 5));
+    }
+
+    @Test
+    void growsWithoutLosingBits() {
+        AvailabilityIndex index = new AvailabilityIndex();
+        index.set(0, 0, true);
+        index.set(0, 63, true);
+        index.set(3, 64, true);
+
+        index.set(0, 1_000_000, true);
+        index.set(5000, 7, true);
+
+        assertTrue(index.isAvailable(0, 0));
+        assertTrue(index.isAvailable(0, 63));
+        assertTrue(index.isAvailable(3, 64));
+        assertTrue(index.isAvailable(0, 1_000_000));
+        assertTrue(index.isAvailable(5000, 7));
+        assertFalse(index.isAvailable(0, 1_000_001));
+        assertFalse(index.isAvailable(4999, 7));
+    }
+
+    @Test
+    void idsOutsideIndexAreIgnored() {
+        AvailabilityIndex index = new AvailabilityIndex();
+        assertFalse(AvailabilityIndex.supports(AvailabilityIndex.MAX_SHOP_ID + 1, 1));
+        assertFalse(AvailabilityIndex.supports(1, AvailabilityIndex.MAX_ITEM_ID + 1));
+        assertFalse(AvailabilityIndex.supports(-1, 1));
+        assertTrue(AvailabilityIndex.supports(AvailabilityIndex.MAX_SHOP_ID, AvailabilityIndex.MAX_ITEM_ID));
+
+        index.set(AvailabilityIndex.MAX_SHOP_ID + 1, 1, true);
+        index.set(1, AvailabilityIndex.MAX_ITEM_ID + 1, true);
+        index.set(-1, 1, true);
+
+        assertFalse(index.isAvailable(AvailabilityIndex.MAX_SHOP_ID + 1, 1));
+        assertFalse(index.isAvailable(1, AvailabilityIndex.MAX_ITEM_ID + 1));
+        assertFalse(index.isAvailable(-1, 1));
+        assertFalse(index.isAvailable(1, -1));
+    }
+
+    @Test
+    void concurrentUpdatesOfOneWordAreNotLost() throws InterruptedException {
+        AvailabilityIndex index = new AvailabilityIndex();
+        int threads = 8;
+        int rounds = 2000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                // потоки делят слова карты: товары offset, offset + 8, ... лежат в одних 64-битных словах
+                for (int i = 0; i < rounds; i++) {
+                    for (long item = offset; item < 256; item += threads) {
+                        index.set(1 + i % 3, item, i % 2 == 0);
+                    }
+                }
+                for (long item = offset; item < 256; item += threads) {
+                    index.set(1, item, item % 3 != 0);
+                    index.set(2, item, item % 5 == 0);
+                    index.set(3, item, true);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (long item = 0; item < 256; item++) {
+            assertEquals(item % 3 != 0, index.isAvailable(1, item), "товар " + item);
+            assertEquals(item % 5 == 0, index.isAvailable(2, item), "товар " + item);
+            assertTrue(index.isAvailable(3, item), "товар " + item);
+        }
+    }
+}
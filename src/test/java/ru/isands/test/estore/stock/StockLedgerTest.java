@@ -0,0 +1,309 @@
+package ru.isands.test.estore.stock;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockLedgerTest {
+
+    private static final int SHOPS = 4;
+    private static final int ITEMS = 8;
+    private static final int INITIAL = 500;
+
+    @TempDir
+    Path journalDir;
+
+    @Test
+    void concurrentDecrementsNeverOversell() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 1000);
+        StockLedger ledger = open(store);
+
+        AtomicInteger sold = new AtomicInteger();
+        runConcurrently(16, () -> {
+            for (int i = 0; i < 200; i++) {
+                if (ledger.tryDecrement(1, 1) >= 0) {
+                    sold.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(1000, sold.get());
+        assertEquals(0, ledger.count(1, 1));
+        ledger.flush();
+        assertEquals(0, store.count(1, 1));
+        ledger.close();
+    }
+
+    @Test
+    void unflushedChangesSurviveCrash() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 10);
+        store.put(2, 1, 10);
+        StockLedger ledger = open(store);
+        ledger.tryDecrement(1, 1);
+        ledger.flush();
+        ledger.tryDecrement(1, 1);
+        ledger.set(2, 1, 3);
+        ledger.close();
+
+        StockLedger recovered = open(store);
+        assertEquals(8, recovered.count(1, 1));
+        assertEquals(3, recovered.count(2, 1));
+        recovered.flush();
+        assertEquals(8, store.count(1, 1));
+        assertEquals(3, store.count(2, 1));
+        recovered.close();
+    }
+
+    @Test
+    void crashAfterStoreCommitDoesNotApplyTwice() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 10);
+        StockLedger ledger = open(store);
+        ledger.tryDecrement(1, 1);
+        ledger.tryDecrement(1, 1);
+        store.crashAfterApply = true;
+        assertThrows(IllegalStateException.class, ledger::flush);
+        ledger.close();
+
+        store.crashAfterApply = false;
+        StockLedger recovered = open(store);
+        assertEquals(8, recovered.count(1, 1));
+        recovered.flush();
+        assertEquals(8, store.count(1, 1));
+        recovered.close();
+    }
+
+    @Test
+    void failedFlushIsRetried() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 10);
+        StockLedger ledger = open(store);
+        ledger.tryDecrement(1, 1);
+        store.failBeforeApply = true;
+        assertThrows(IllegalStateException.class, ledger::flush);
+        store.failBeforeApply = false;
+        ledger.tryDecrement(1, 1);
+        ledger.flush();
+        assertEquals(8, store.count(1, 1));
+        ledger.close();
+    }
+
+    @Test
+    void uncommittedReservationIsNotReplayedAfterCrash() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 10);
+        StockLedger ledger = open(store);
+        ledger.tryReserve(1, 1);
+        ledger.confirm(1, 1);
+        ledger.tryReserve(1, 1);
+        assertEquals(8, ledger.count(1, 1));
+        // процесс падает до фиксации второй покупки: журнал не закрыт и не сброшен
+
+        StockLedger recovered = open(store);
+        assertEquals(9, recovered.count(1, 1));
+        recovered.flush();
+        assertEquals(9, store.count(1, 1));
+        recovered.close();
+    }
+
+    @Test
+    void reservationHoldsStockUntilConfirmedOrCancelled() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 1);
+        StockLedger ledger = open(store);
+        assertEquals(0, ledger.tryReserve(1, 1));
+        assertEquals(-1, ledger.tryReserve(1, 1));
+        assertEquals(0, ledger.flush());
+
+        ledger.cancel(1, 1);
+        assertEquals(1, ledger.count(1, 1));
+        assertEquals(0, ledger.tryReserve(1, 1));
+        ledger.confirm(1, 1);
+        ledger.confirm(1, 1);
+        assertEquals(0, ledger.count(1, 1));
+        ledger.flush();
+        assertEquals(0, store.count(1, 1));
+        ledger.close();
+    }
+
+    @Test
+    void setCountsReservationsAgainstNewCount() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 10);
+        store.put(2, 1, 10);
+        StockLedger ledger = open(store);
+        ledger.tryReserve(1, 1);
+        ledger.tryReserve(2, 1);
+        ledger.set(1, 1, 5);
+        ledger.set(2, 1, 5);
+        assertEquals(4, ledger.count(1, 1));
+
+        ledger.confirm(1, 1);
+        ledger.cancel(2, 1);
+        ledger.flush();
+        assertEquals(4, ledger.count(1, 1));
+        assertEquals(4, store.count(1, 1));
+        assertEquals(5, ledger.count(2, 1));
+        assertEquals(5, store.count(2, 1));
+        ledger.close();
+    }
+
+    @Test
+    void removedLinkDropsJournaledChanges() throws Exception {
+        MemoryStore store = new MemoryStore();
+        store.put(1, 1, 10);
+        StockLedger ledger = open(store);
+        ledger.tryDecrement(1, 1);
+        ledger.remove(1, 1);
+        store.put(1, 1, 5);
+        ledger.register(1, 1, 5);
+        ledger.tryDecrement(1, 1);
+        ledger.close();
+
+        StockLedger recovered = open(store);
+        assertEquals(4, recovered.count(1, 1));
+        recovered.close();
+    }
+
+    @Test
+    void concurrentLoadWithRandomCrashesKeepsCounts() throws Exception {
+        MemoryStore store = new MemoryStore();
+        for (int shop = 1; shop <= SHOPS; shop++) {
+            for (int item = 1; item <= ITEMS; item++) {
+                store.put(shop, item, INITIAL);
+            }
+        }
+        Map<Long, AtomicLong> sold = new ConcurrentHashMap<>();
+
+        for (int round = 0; round < 5; round++) {
+            StockLedger ledger = open(store);
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread flusher = new Thread(() -> {
+                while (running.get()) {
+                    try {
+                        ledger.flush();
+                    } catch (IOException | IllegalStateException ignored) {
+                        // смоделированный сбой хранилища
+                    }
+                }
+            });
+            store.crashAfterApplyEvery = 7;
+            flusher.start();
+            runConcurrently(8, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 300; i++) {
+                    int shop = 1 + random.nextInt(SHOPS);
+                    int item = 1 + random.nextInt(ITEMS);
+                    if (ledger.tryDecrement(shop, item) >= 0) {
+                        sold.computeIfAbsent(StockLedger.key(shop, item), k -> new AtomicLong()).incrementAndGet();
+                    }
+                }
+            });
+            running.set(false);
+            flusher.join();
+            store.crashAfterApplyEvery = 0;
+            ledger.close();
+        }
+
+        StockLedger recovered = open(store);
+        recovered.flush();
+        for (int shop = 1; shop <= SHOPS; shop++) {
+            for (int item = 1; item <= ITEMS; item++) {
+                AtomicLong itemSold = sold.get(StockLedger.key(shop, item));
+                int expected = INITIAL - (itemSold == null ? 0 : (int) itemSold.get());
+                assertTrue(expected >= 0);
+                assertEquals(expected, recovered.count(shop, item));
+                assertEquals(expected, store.count(shop, item));
+            }
+        }
+        recovered.close();
+    }
+
+    private StockLedger open(MemoryStore store) throws IOException {
+        StockLedger ledger = new StockLedger(store, new StockJournal(journalDir, false), 8);
+        ledger.recover();
+        return ledger;
+    }
+
+    private static void runConcurrently(int threads, Runnable task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Хранилище в памяти; умеет падать до и после фиксации изменений
+     */
+    private static class MemoryStore implements StockLedgerStore {
+
+        private final Map<Long, Integer> counts = new HashMap<>();
+        private long checkpoint;
+        private int applies;
+        volatile boolean failBeforeApply;
+        volatile boolean crashAfterApply;
+        volatile int crashAfterApplyEvery;
+
+        synchronized void put(long shopId, long itemId, int count) {
+            counts.put(StockLedger.key(shopId, itemId), count);
+        }
+
+        synchronized int count(long shopId, long itemId) {
+            return counts.get(StockLedger.key(shopId, itemId));
+        }
+
+        @Override
+        public synchronized void loadCounts(CountConsumer consumer) {
+            counts.forEach((key, count) -> consumer.accept(StockLedger.shopId(key), StockLedger.itemId(key), count));
+        }
+
+        @Override
+        public synchronized long loadCheckpoint() {
+            return checkpoint;
+        }
+
+        @Override
+        public synchronized void apply(Map<Long, Integer> deltas, long checkpoint) {
+            if (failBeforeApply) {
+                throw new IllegalStateException("store unavailable");
+            }
+            deltas.forEach((key, delta) -> counts.computeIfPresent(key, (k, count) -> count + delta));
+            this.checkpoint = checkpoint;
+            applies++;
+            if (crashAfterApply || (crashAfterApplyEvery > 0 && applies % crashAfterApplyEvery == 0)) {
+                throw new IllegalStateException("connection lost after commit");
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.isands.test.estore.util;
+
+import org.junit.jupiter.api.Test;
+import ru.isands.test.estore.dto.CursorPage;
+import ru.isands.test.estore.exeption.RequestLimitExceededException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Курсоры кодируются и разбираются без потерь, а переход по ним обходит все строки ровно один раз
+ */
+class CursorsTest {
+
+    @Test
+    void decodeReturnsEncodedKeys() {
+        long[] keys = {Long.MIN_VALUE, -1, 0, 42, Long.MAX_VALUE};
+        assertArrayEquals(keys, Cursors.decode(Cursors.encode(keys), keys.length));
+        assertArrayEquals(new long[]{7}, Cursors.decode(Cursors.encode(7), 1));
+        assertNull(Cursors.decode(null, 2));
+        assertNull(Cursors.decode("", 2));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThrows(RequestLimitExceededException.class, () -> Cursors.decode(Cursors.encode(1, 2), 1));
+        assertThrows(RequestLimitExceededException.class, () -> Cursors.decode(Cursors.encode(1), 2));
+        assertThrows(RequestLimitExceededException.class, () -> Cursors.decode("не base64", 1));
+        String text = Base64.getUrlEncoder().withoutPadding().encodeToString("1,x".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(RequestLimitExceededException.class, () -> Cursors.decode(text, 2));
+    }
+
+    @Test
+    void pageSizeIsLimited() {
+        assertEquals(11, Cursors.limit(10, 100).getPageSize());
+        assertThrows(RequestLimitExceededException.class, () -> Cursors.limit(0, 100));
+        assertThrows(RequestLimitExceededException.class, () -> Cursors.limit(101, 100));
+    }
+
+    @Test
+    void seekVisitsEveryRowOnce() {
+        Random random = new Random(44);
+        List<long[]> rows = new ArrayList<>();
+        for (long id = 1; id <= 250; id++) {
+            rows.add(new long[]{random.nextInt(20), id});
+        }
+        Comparator<long[]> order = Comparator.<long[]>comparingLong(row -> -row[0]).thenComparingLong(row -> row[1]);
+        rows.sort(order);
+
+        List<long[]> visited = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            long[] after = Cursors.decode(cursor, 2);
+            List<long[]> fetched = rows.stream()
+                    .filter(row -> after == null || row[0] < after[0] || (row[0] == after[0] && row[1] > after[1]))
+                    .limit(Cursors.limit(30, 100).getPageSize())
+                    .collect(Collectors.toList());
+            CursorPage<long[]> page = Cursors.page(fetched, 30, row -> Cursors.encode(row[0], row[1]));
+            assertTrue(page.getContent().size() <= 30);
+            assertEquals(page.isHasNext(), page.getNextCursor() != null);
+            visited.addAll(page.getContent());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(9, pages);
+        assertEquals(rows.size(), visited.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), visited.get(i));
+        }
+    }
+
+    @Test
+    void lastFullPageHasNoNextCursor() {
+        List<Long> rows = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            rows.add(id);
+        }
+        CursorPage<Long> page = Cursors.page(rows, 5, id -> Cursors.encode(id));
+        assertFalse(page.isHasNext());
+        assertNull(page.getNextCursor());
+        assertEquals(5, page.getContent().size());
+    }
+}
@@ -0,0 +1,114 @@
+package ru.isands.test.estore.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Перестроение по снимку: покупки, зафиксированные во время построения, учитываются ровно один раз
+ */
+class SnapshotRebuilderTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private JdbcTemplate jdbcTemplate;
+    private SnapshotRebuilder<List<Long>, Long> rebuilder;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:snapshot_" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE store_purchase (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.update("INSERT INTO store_purchase VALUES (1), (2)");
+        rebuilder = new SnapshotRebuilder<>(jdbcTemplate, new DataSourceTransactionManager(dataSource), id -> id, List::add);
+    }
+
+    @Test
+    void purchasesCommittedDuringRebuildAreCountedOnce() {
+        rebuilder.rebuild(() -> {
+            List<Long> ids = new ArrayList<>(jdbcTemplate.queryForList("SELECT id FROM store_purchase ORDER BY id", Long.class));
+            inOtherThread(() -> {
+                // покупка 2 уже в снимке, ее уведомление после фиксации пришло с опозданием
+                rebuilder.add(2L);
+                jdbcTemplate.update("INSERT INTO store_purchase VALUES (3)");
+                rebuilder.add(3L);
+            });
+            return ids;
+        });
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), rebuilder.ready());
+    }
+
+    @Test
+    void requestedRebuildMakesStructureStale() {
+        rebuilder.rebuild(this::loadIds);
+        rebuilder.add(5L);
+        assertEquals(Arrays.asList(1L, 2L, 5L), rebuilder.ready());
+
+        rebuilder.requestRebuild();
+        assertTrue(rebuilder.isStale());
+        assertNull(rebuilder.ready());
+        assertEquals(Arrays.asList(1L, 2L, 5L), rebuilder.current());
+
+        rebuilder.rebuild(this::loadIds);
+        assertFalse(rebuilder.isStale());
+        assertEquals(Arrays.asList(1L, 2L), rebuilder.ready());
+    }
+
+    @Test
+    void failedRebuildKeepsPreviousStructure() {
+        rebuilder.rebuild(this::loadIds);
+        List<Long> built = rebuilder.current();
+        rebuilder.requestRebuild();
+
+        assertThrows(IllegalStateException.class, () -> rebuilder.rebuild(() -> {
+            throw new IllegalStateException("сбой построения");
+        }));
+        rebuilder.add(7L);
+
+        assertSame(built, rebuilder.current());
+        assertEquals(Arrays.asList(1L, 2L, 7L), built);
+        assertTrue(rebuilder.isStale());
+    }
+
+    private List<Long> loadIds() {
+        return new ArrayList<>(jdbcTemplate.queryForList("SELECT id FROM store_purchase ORDER BY id", Long.class));
+    }
+
+    private static void inOtherThread(Runnable action) {
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Thread thread = new Thread(() -> {
+            try {
+                action.run();
+            } catch (Throwable e) {
+                errors.add(e);
+            }
+        });
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.get(0));
+        }
+    }
+}